@@ -0,0 +1,79 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLCodec;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.LEAPACLCodec;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.StringACLCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures encoding and decoding of an ACL message with the binary LEAP codec and the string based FIPA codec.
+ *
+ * The StringACLCodec writes agent identifiers as URIs, which its own parser does not accept, so the string decoding
+ * benchmark parses the same message with agent identifiers in the FIPA notation instead.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ACLCodecBenchmark {
+
+    private static final String CHARSET = "UTF-8";
+
+    @Param({"1", "10"})
+    public int receivers;
+
+    private ACLMessage message;
+
+    private ByteArrayOutputStream leapBuffer;
+    private DataOutputStream leapOutput;
+    private byte[] leapEncoded;
+
+    private StringACLCodec stringCodec;
+    private byte[] stringEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws URISyntaxException, IOException {
+        this.message = ACLMessages.request(this.receivers);
+
+        this.leapBuffer = new ByteArrayOutputStream();
+        this.leapOutput = new DataOutputStream(this.leapBuffer);
+        LEAPACLCodec.serializeACL(this.message, this.leapOutput);
+        this.leapEncoded = this.leapBuffer.toByteArray();
+
+        this.stringCodec = new StringACLCodec();
+        this.stringEncoded = ACLMessages.requestString(this.receivers).getBytes(CHARSET);
+    }
+
+    @Benchmark
+    public int leapSerialize() throws IOException {
+        this.leapBuffer.reset();
+        LEAPACLCodec.serializeACL(this.message, this.leapOutput);
+        return this.leapBuffer.size();
+    }
+
+    @Benchmark
+    public ACLMessage leapDeserialize() throws IOException, URISyntaxException {
+        return LEAPACLCodec.deserializeACL(new DataInputStream(new ByteArrayInputStream(this.leapEncoded)));
+    }
+
+    @Benchmark
+    public byte[] stringEncode() {
+        return this.stringCodec.encode(this.message, CHARSET);
+    }
+
+    @Benchmark
+    public ACLMessage stringDecode() throws ACLCodec.CodecException {
+        return this.stringCodec.decode(this.stringEncoded, CHARSET);
+    }
+}
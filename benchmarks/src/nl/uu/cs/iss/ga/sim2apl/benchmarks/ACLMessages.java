@@ -0,0 +1,58 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.Performative;
+
+import java.net.URISyntaxException;
+import java.util.UUID;
+
+/**
+ * Messages used by the messaging and codec benchmarks
+ */
+final class ACLMessages {
+
+    private ACLMessages() {}
+
+    static AgentID agentID(long id) throws URISyntaxException {
+        return new AgentID(new UUID(0, id), "127.0.0.1", 44444);
+    }
+
+    /**
+     * @return A request with the slots that are typically set in agent conversations
+     */
+    static ACLMessage request(int nReceivers) throws URISyntaxException {
+        ACLMessage message = new ACLMessage(Performative.REQUEST);
+        message.setSender(agentID(0));
+        for(int i = 1; i <= nReceivers; i++) {
+            message.addReceiver(agentID(i));
+        }
+        message.setContent("(action (agent-identifier :name seller) (sell book :price 10))");
+        message.setLanguage("fipa-sl");
+        message.setOntology("book-trading");
+        message.setProtocol("fipa-request");
+        message.setConversationId("conversation-1");
+        message.setReplyWith("request-1");
+        return message;
+    }
+
+    /**
+     * @return The same request as <code>request(nReceivers)</code>, in the FIPA string representation with agent
+     * identifiers in the <code>(agent-identifier :name ...)</code> notation that is accepted by the ACLParser
+     */
+    static String requestString(int nReceivers) {
+        StringBuilder receivers = new StringBuilder();
+        for(int i = 1; i <= nReceivers; i++) {
+            receivers.append(" (agent-identifier :name agent-").append(i).append("@127.0.0.1)");
+        }
+        return "(REQUEST\n" +
+                " :sender (agent-identifier :name agent-0@127.0.0.1)\n" +
+                " :receiver (set" + receivers + ")\n" +
+                " :content \"(action (agent-identifier :name seller) (sell book :price 10))\"\n" +
+                " :language fipa-sl\n" +
+                " :ontology book-trading\n" +
+                " :protocol fipa-request\n" +
+                " :conversation-id conversation-1\n" +
+                " :reply-with request-1 )";
+    }
+}
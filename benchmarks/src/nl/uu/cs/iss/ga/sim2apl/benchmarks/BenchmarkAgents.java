@@ -0,0 +1,53 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.PlanToAgentInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+import nl.uu.cs.iss.ga.sim2apl.core.logging.NullLogger;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+
+/**
+ * Agent building blocks and platform setup shared by the benchmarks
+ */
+final class BenchmarkAgents {
+
+    private BenchmarkAgents() {}
+
+    /** A trigger that is not matched by any plan scheme */
+    static final Trigger TRIGGER = new Trigger() {};
+
+    /**
+     * Create a platform with the default messenger that does not log anything, so logging does not influence the
+     * measurements
+     */
+    static Platform newPlatform(TickExecutor<String> executor) {
+        Platform platform = Platform.newPlatform(executor, null);
+        platform.setLogger(new NullLogger());
+        return platform;
+    }
+
+    /** A plan that is never finished, and produces an action each time it is executed */
+    static final class PerpetualPlan extends Plan<String> {
+        private final String action;
+
+        PerpetualPlan(int id) {
+            this.action = "action-" + id;
+        }
+
+        @Override
+        public String execute(PlanToAgentInterface<String> planInterface) {
+            return this.action;
+        }
+    }
+
+    /** A plan scheme that is never applicable, so every trigger is matched against all plan schemes of an agent */
+    static final class NonMatchingPlanScheme implements PlanScheme<String> {
+        @Override
+        public Plan<String> instantiate(Trigger trigger, AgentContextInterface<String> contextInterface) {
+            return Plan.UNINSTANTIATED();
+        }
+    }
+}
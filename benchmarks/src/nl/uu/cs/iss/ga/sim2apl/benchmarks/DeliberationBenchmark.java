@@ -0,0 +1,69 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.ForkJoinTickExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single deliberation cycle of one agent with many plan schemes and plans. Each cycle, the agent receives
+ * a number of external triggers that are matched against all of its plan schemes, and executes all of its plans.
+ *
+ * The ForkJoinTickExecutor is used, since it does not enqueue the agent again when it reschedules itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeliberationBenchmark {
+
+    @Param({"10", "100"})
+    public int planSchemes;
+
+    @Param({"10", "100"})
+    public int plans;
+
+    @Param({"1", "10"})
+    public int triggers;
+
+    private ForkJoinTickExecutor<String> executor;
+    private Agent<String> agent;
+    private DeliberationRunnable<String> runnable;
+
+    @Setup(Level.Trial)
+    public void setUp() throws URISyntaxException {
+        this.executor = new ForkJoinTickExecutor<>(1);
+        Platform platform = BenchmarkAgents.newPlatform(this.executor);
+
+        AgentArguments<String> arguments = new AgentArguments<>();
+        for(int i = 0; i < this.planSchemes; i++) {
+            arguments.addExternalTriggerPlanScheme(new BenchmarkAgents.NonMatchingPlanScheme());
+        }
+        for(int i = 0; i < this.plans; i++) {
+            arguments.addInitialPlan(new BenchmarkAgents.PerpetualPlan(i));
+        }
+        this.agent = new Agent<>(platform, arguments);
+        this.runnable = new DeliberationRunnable<>(this.agent, platform);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public DeliberationResult<String> call() {
+        for(int i = 0; i < this.triggers; i++) {
+            this.agent.addExternalTrigger(BenchmarkAgents.TRIGGER);
+        }
+        return this.runnable.call();
+    }
+}
@@ -0,0 +1,60 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.MessageTemplate;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.Performative;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures matching a message against templates of increasing complexity. The message matches all templates, so all
+ * of their sub-expressions are evaluated.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageTemplateBenchmark {
+
+    @Param({"performative", "conversation", "compound", "custom"})
+    public String template;
+
+    private MessageTemplate messageTemplate;
+    private ACLMessage message;
+
+    @Setup(Level.Trial)
+    public void setUp() throws URISyntaxException {
+        this.message = ACLMessages.request(1);
+        switch (this.template) {
+            case "performative":
+                this.messageTemplate = MessageTemplate.MatchPerformative(Performative.REQUEST.index());
+                break;
+            case "conversation":
+                this.messageTemplate = MessageTemplate.MatchConversationId("conversation-1");
+                break;
+            case "compound":
+                this.messageTemplate = MessageTemplate.and(
+                        MessageTemplate.and(
+                                MessageTemplate.MatchPerformative(Performative.REQUEST.index()),
+                                MessageTemplate.MatchSender(ACLMessages.agentID(0))),
+                        MessageTemplate.or(
+                                MessageTemplate.MatchOntology("book-trading"),
+                                MessageTemplate.not(MessageTemplate.MatchProtocol("fipa-request"))));
+                break;
+            case "custom":
+                this.messageTemplate = MessageTemplate.MatchCustom(ACLMessages.request(1), true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown template " + this.template);
+        }
+    }
+
+    @Benchmark
+    public boolean match() {
+        return this.messageTemplate.match(this.message);
+    }
+}
@@ -0,0 +1,118 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.MessageReceiverNotFoundException;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.Performative;
+import nl.uu.cs.iss.ga.sim2apl.core.logging.MessageLogPolicy;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.Messenger;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.DefaultBlockingTickExecutor;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fan-out of one message to many receivers through <code>DefaultMessenger.deliverMessage</code>, either
+ * as a broadcast (a message without receivers) or with all receivers listed explicitly.
+ *
+ * Broadcasts are appended to the broadcast log of the messenger, which the receivers read when they drain their
+ * messages. Each invocation therefore also lets every receiver drain its messages, as it would in its next
+ * deliberation cycle, so both variants include the work of getting the message to all receivers. The receiving
+ * agents only count the messages they receive, and do not keep a message log, which would grow without bounds
+ * during the benchmark. After each iteration, the number of received messages is checked.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessengerBenchmark {
+
+    @Param({"10", "1000"})
+    public int receivers;
+
+    @Param({"true", "false"})
+    public boolean broadcast;
+
+    private TickExecutor<String> executor;
+    private Messenger<MessageInterface, String> messenger;
+    private ACLMessage message;
+    private final List<CountingAgent> agents = new ArrayList<>();
+    private long invocations;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() throws URISyntaxException {
+        this.executor = new DefaultBlockingTickExecutor<>(1);
+        Platform platform = BenchmarkAgents.newPlatform(this.executor);
+        this.messenger = platform.getMessenger();
+
+        this.message = new ACLMessage(Performative.INFORM);
+        this.message.setContent("benchmark");
+        for(int i = 0; i < this.receivers; i++) {
+            CountingAgent agent = new CountingAgent(platform);
+            this.agents.add(agent);
+            if(!this.broadcast) this.message.addReceiver(agent.getAID());
+        }
+    }
+
+    /** Advance the tick, so the broadcast log discards the broadcasts of earlier iterations */
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        this.executor.doTick();
+        this.invocations = 0;
+        for(CountingAgent agent : this.agents) agent.received = 0;
+    }
+
+    /** Verify every receiver received the message once for each invocation */
+    @TearDown(Level.Iteration)
+    public void checkDeliveries() {
+        for(CountingAgent agent : this.agents) {
+            if(agent.received != this.invocations) {
+                throw new IllegalStateException("Agent " + agent.getAID() + " received " + agent.received +
+                        " messages instead of " + this.invocations);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        this.executor.shutdown();
+    }
+
+    @Benchmark
+    public void deliverMessage() throws MessageReceiverNotFoundException {
+        this.messenger.deliverMessage(this.message);
+        for(int i = 0; i < this.agents.size(); i++) {
+            this.agents.get(i).readMessages();
+        }
+        this.invocations++;
+    }
+
+    /** An agent that only counts the messages it receives */
+    private static final class CountingAgent extends Agent<String> {
+        private long received = 0;
+
+        CountingAgent(Platform platform) throws URISyntaxException {
+            super(platform, new AgentArguments<String>().setMessageLogPolicy(MessageLogPolicy.OFF));
+        }
+
+        @Override
+        public void receiveMessage(MessageInterface message) {
+            this.received++;
+        }
+
+        /** Count the broadcasts the agent has not yet read from the broadcast log */
+        void readMessages() {
+            this.received += drainMessages().size();
+        }
+    }
+}
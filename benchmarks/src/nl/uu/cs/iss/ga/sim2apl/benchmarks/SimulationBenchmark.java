@@ -0,0 +1,59 @@
+package nl.uu.cs.iss.ga.sim2apl.benchmarks;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentArguments;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.DefaultBlockingTickExecutor;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.DefaultSimulationEngine;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.ForkJoinTickExecutor;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URISyntaxException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full run of the DefaultSimulationEngine. Since the engine shuts down the tick executor when the
+ * simulation finishes, the platform and agents are created again before every run, which is not measured.
+ *
+ * Every agent has a single plan that produces an action each tick, so all agents are active during all ticks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class SimulationBenchmark {
+
+    private static final int TICKS = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int agents;
+
+    @Param({"default", "forkjoin"})
+    public String executor;
+
+    private Platform platform;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws URISyntaxException {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        TickExecutor<String> tickExecutor = "forkjoin".equals(this.executor) ?
+                new ForkJoinTickExecutor<>(nThreads, new Random(42)) :
+                new DefaultBlockingTickExecutor<>(nThreads, new Random(42));
+        this.platform = BenchmarkAgents.newPlatform(tickExecutor);
+
+        for(int i = 0; i < this.agents; i++) {
+            AgentArguments<String> arguments = new AgentArguments<>();
+            arguments.addInitialPlan(new BenchmarkAgents.PerpetualPlan(i));
+            new Agent<>(this.platform, arguments, ACLMessages.agentID(i));
+        }
+    }
+
+    @Benchmark
+    public boolean run() {
+        return new DefaultSimulationEngine<String>(this.platform, TICKS).start();
+    }
+}
@@ -8,6 +8,7 @@ import nl.uu.cs.iss.ga.sim2apl.core.fipa.FIPAAgentState;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageLog;
 import nl.uu.cs.iss.ga.sim2apl.core.logging.MessageLogContext;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.BroadcastLog;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeBase;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor;
@@ -39,6 +40,11 @@ public class Agent<T> implements AgentInterface{
 	private final List<AgentDeathListener> deathListeners;
 	
 	private final ConcurrentLinkedQueue<MessageInterface> messageQueue;
+
+	/** Log of the broadcasts of the messenger, which is read when the messages are drained, or null if the 
+	 * messenger does not use one. The cursor is the sequence number of the next broadcast to read. */
+	private BroadcastLog broadcastLog;
+	private long broadcastCursor;
 	
 	/** The messageHistory contains the history of messages send and received by the Agent
 	 */
@@ -54,7 +60,19 @@ public class Agent<T> implements AgentInterface{
 	private final List<Goal> goals;
 	
 	/** The current internal and external  triggers. */
-	private final List<Trigger> internalTriggers, externalTriggers;
+	private List<Trigger> internalTriggers, externalTriggers;
+	
+	/** The triggers that were obtained during the last deliberation cycle. These lists are swapped with the lists of
+	 * current triggers when the triggers are obtained, so no new list is needed for each deliberation cycle. */
+	private List<Trigger> internalTriggerBuffer, externalTriggerBuffer;
+	
+	/** Lock for the external triggers. The list of external triggers itself cannot be used as lock, as it is swapped. */
+	private final Object externalTriggerLock = new Object();
+	
+	/** Reusable buffers for the messages, goals and plans that are processed by the deliberation steps. */
+	private final List<MessageInterface> messageBuffer;
+	private final List<Goal> goalBuffer;
+	private final List<nl.uu.cs.iss.ga.sim2apl.core.plan.Plan<T>> planBuffer;
 	
 	/** The current trigger interceptors. */
 	private final List<TriggerInterceptor<T>> internalTriggerInterceptors, externalTriggerInterceptors, messageInterceptors, goalInterceptors;
@@ -76,6 +94,9 @@ public class Agent<T> implements AgentInterface{
 	
 	/** Whether the agent is forced to stop, is finished, or is sleeping. */
 	private boolean forciblyStop, finished;
+
+	/** The tick until which the agent sleeps, or -1 if the agent only sleeps when it has nothing to do. */
+	private volatile long wakeUpTick = -1;
 	
 	/** Interface that exposes the context container of this agent. Is given to goals for checking whether they are achieved. */
 	private final AgentContextInterface<T> contextInterface;
@@ -90,6 +111,11 @@ public class Agent<T> implements AgentInterface{
 		this.goals = new ArrayList<>();
 		this.internalTriggers = new ArrayList<>();
 		this.externalTriggers = new ArrayList<>();
+		this.internalTriggerBuffer = new ArrayList<>();
+		this.externalTriggerBuffer = new ArrayList<>();
+		this.messageBuffer = new ArrayList<>();
+		this.goalBuffer = new ArrayList<>();
+		this.planBuffer = new ArrayList<>();
 		this.internalTriggerInterceptors = new ArrayList<>();
 		this.externalTriggerInterceptors = new ArrayList<>();
 		this.messageInterceptors = new ArrayList<>();
@@ -97,8 +123,8 @@ public class Agent<T> implements AgentInterface{
 		this.planSchemeBase = args.createPlanSchemeBase();
 		this.plans = new ArrayList<>();
 		this.downPlans = new ArrayList<>();
-		this.senseReasonCycle = Collections.unmodifiableList(args.createSenseReasonCycle(this));
-		this.actCycle = Collections.unmodifiableList(args.createActCycle(this));
+		this.senseReasonCycle = List.copyOf(args.createSenseReasonCycle(this));
+		this.actCycle = List.copyOf(args.createActCycle(this));
 		this.contextInterface = new AgentContextInterface<>(this);
 
 		this.messageQueue = new ConcurrentLinkedQueue<>();
@@ -108,7 +134,10 @@ public class Agent<T> implements AgentInterface{
 		this.plans.addAll(args.getInitialPlans());
 		this.downPlans.addAll(args.getShutdownPlans());
 		
-		this.messageContext = new MessageLogContext();
+		this.messageContext = new MessageLogContext(args.getMessageLogPolicy(), () -> {
+			Platform platform = this.platform;
+			return platform == null ? 0 : platform.getTickExecutor().getCurrentTick();
+		});
 		this.contextContainer.addContext(messageContext);
 		
 		p.register(this);
@@ -146,33 +175,50 @@ public class Agent<T> implements AgentInterface{
 		this.messageContext.addReceivedMessage(message);
 		this.checkWhetherToReschedule();
     }
+
+	/** Receive a number of messages at once. The agent is woken up only once, if it was sleeping. */
+	public void receiveMessages(Collection<? extends MessageInterface> messages) {
+		if(messages.isEmpty()) return;
+		this.messageQueue.addAll(messages);
+		for(MessageInterface message : messages) {
+			this.messageContext.addReceivedMessage(message);
+		}
+		this.checkWhetherToReschedule();
+	}
 	
 	@SuppressWarnings("unchecked")
 	public <X extends MessageInterface> MessageLog sendMessage(X message)
 			throws MessageReceiverNotFoundException, PlatformNotFoundException {
-		message.addUserDefinedParameter("X-messageID", UUID.randomUUID().toString());
-		this.getPlatform().getMessenger().deliverMessage(message);
-		return this.messageContext.addSentMessage(message);
+		X stamped = (X) message.withMessageID(this.getPlatform().getMessageIDGenerator().nextMessageID());
+		this.getPlatform().getMessenger().deliverMessage(stamped);
+		return this.messageContext.addSentMessage(stamped);
 	}
 	
 	@SuppressWarnings("unchecked")
 	public <X extends MessageInterface> MessageLog sendMessage(AgentID receiver, X message)
 			throws MessageReceiverNotFoundException, PlatformNotFoundException {
-		message.addUserDefinedParameter("X-messageID", UUID.randomUUID().toString());
-		this.getPlatform().getMessenger().deliverMessage(receiver, message);
-		return this.messageContext.addSentMessage(message);
+		X stamped = (X) message.withMessageID(this.getPlatform().getMessageIDGenerator().nextMessageID());
+		this.getPlatform().getMessenger().deliverMessage(receiver, stamped);
+		return this.messageContext.addSentMessage(stamped);
 	}
 	
+	/** Obtain and remove the received messages, followed by the broadcasts that were not read yet. */
 	public List<MessageInterface> getAllMessages() {
 		List<MessageInterface> messages= new ArrayList<>();
 		while (!this.messageQueue.isEmpty()) {
 			messages.add(this.messageQueue.remove());
 		}
+		readBroadcasts(messages);
 		return messages;
 	}
 	
+	/** Obtain the received messages and the broadcasts that were not read yet, without removing them. */
 	public List<MessageInterface> peekAllMessages() {
-		return new ArrayList<>(messageQueue);
+		List<MessageInterface> messages = new ArrayList<>(messageQueue);
+		if(hasUnreadBroadcasts()){
+			this.broadcastLog.read(this.broadcastCursor, messages);
+		}
+		return messages;
 	}
 	
 	@Override
@@ -188,6 +234,9 @@ public class Agent<T> implements AgentInterface{
 				}
 			} 
 		}
+
+		// A sleeping agent will not run its deliberation cycle again, so the scheduler can forget about it
+		if(this.rescheduler != null) this.rescheduler.release();
 	}
 	
 	/** Add a listener that listens for the death of this agent. */
@@ -230,6 +279,7 @@ public class Agent<T> implements AgentInterface{
 		}
 		if (!this.State.isActive()) {
 				this.State = FIPAAgentState.ACTIVE;
+				this.wakeUpTick = -1;
 				this.rescheduler.wakeUp();
 				Platform.getLogger().log(Agent.class, Level.FINER, "Agent " + getAID().getName() + " woken up");
 		}
@@ -241,7 +291,7 @@ public class Agent<T> implements AgentInterface{
 
 	/** Put an external event in this agent. Will be processed the next deliberation cycle. */
 	public final void addExternalTrigger(final Trigger trigger){
-		synchronized(this.externalTriggers){ 
+		synchronized(this.externalTriggerLock){ 
 			this.externalTriggers.add(trigger);
 			checkWhetherToReschedule();
 		}
@@ -358,17 +408,81 @@ public class Agent<T> implements AgentInterface{
 	/** Obtain and remove the current external triggers. This will return a new 
 	 * list of triggers. */
 	public final List<Trigger> getAndRemoveExternalTriggers(){ 
-		synchronized(this.externalTriggers){
+		synchronized(this.externalTriggerLock){
 			if(this.externalTriggers.isEmpty()) return Collections.emptyList();
 			else {
 				List<Trigger> snapshot = new ArrayList<>(this.externalTriggers);
 				this.externalTriggers.clear();
 				return snapshot;
 			} 
-			// TODO: if I used snapshot = this.externalTriggers; this.externalTriggers = new ArrayList<>(); then some triggers were lost.
-			// 		 Is this because the lock is bound to address that this.externaltriggers points to, and not to the field this.externalTriggers?
 		}
 	}
+	
+	/** Obtain and remove the current external triggers without creating a new list. The returned list 
+	 * is a buffer of the agent that is reused by the next call, hence it is only valid until then. Meant 
+	 * for the deliberation steps of this agent. */
+	public final List<Trigger> swapExternalTriggers(){
+		// Swapping the lists is only safe because the lock is not the list itself, which would change 
+		// while other threads wait for it. 
+		synchronized(this.externalTriggerLock){
+			List<Trigger> triggers = this.externalTriggers;
+			this.externalTriggerBuffer.clear();
+			this.externalTriggers = this.externalTriggerBuffer;
+			this.externalTriggerBuffer = triggers;
+			return triggers;
+		}
+	}
+	
+	/** Obtain and remove the current internal triggers without creating a new list. The returned list 
+	 * is a buffer of the agent that is reused by the next call, hence it is only valid until then. Meant 
+	 * for the deliberation steps of this agent. */
+	public final List<Trigger> swapInternalTriggers(){
+		List<Trigger> triggers = this.internalTriggers;
+		this.internalTriggerBuffer.clear();
+		this.internalTriggers = this.internalTriggerBuffer;
+		this.internalTriggerBuffer = triggers;
+		return triggers;
+	}
+	
+	/** Obtain and remove the received messages without creating a new list. The returned list is a 
+	 * buffer of the agent that is reused by the next call, hence it is only valid until then. Meant 
+	 * for the deliberation steps of this agent. */
+	public final List<MessageInterface> drainMessages(){
+		this.messageBuffer.clear();
+		MessageInterface message;
+		while((message = this.messageQueue.poll()) != null){
+			this.messageBuffer.add(message);
+		}
+		readBroadcasts(this.messageBuffer);
+		return this.messageBuffer;
+	}
+
+	/** Add the broadcasts that were not read yet to the given messages, and mark them as read. */
+	private void readBroadcasts(final List<MessageInterface> messages){
+		if(hasUnreadBroadcasts()){
+			int queued = messages.size();
+			this.broadcastCursor = this.broadcastLog.read(this.broadcastCursor, messages);
+			for(int i = queued; i < messages.size(); i++){
+				this.messageContext.addReceivedMessage(messages.get(i));
+			}
+		}
+	}
+
+	/** Read the broadcasts of the given log from now on, when the messages of this agent are drained. */
+	public final void setBroadcastLog(final BroadcastLog broadcastLog){
+		this.broadcastLog = broadcastLog;
+		this.broadcastCursor = broadcastLog == null ? 0 : broadcastLog.end();
+	}
+
+	/** Notify the agent that a broadcast was added to its broadcast log, which wakes the agent up if it was sleeping. 
+	 * Called by the log for agents that went to sleep after reading all broadcasts. */
+	public final void broadcastReceived(){
+		checkWhetherToReschedule();
+	}
+
+	private boolean hasUnreadBroadcasts(){
+		return this.broadcastLog != null && this.broadcastCursor < this.broadcastLog.end();
+	}
 	// get internal triggers, no need to synchronize as only the deliberation thread 
 	// can add new internal triggers, which is the same thread as the one that calls this method.
 	/** Obtain and remove the current internal triggers. This will return a new 
@@ -392,12 +506,19 @@ public class Agent<T> implements AgentInterface{
 //		}
 	}
 	
+	/** Obtain the current goals in a buffer of the agent that is reused by the next call, hence the 
+	 * returned list is only valid until then. Meant for the deliberation steps of this agent. */
+	public final List<Goal> snapshotGoals(){
+		return copyInto(this.goals, this.goalBuffer);
+	}
+	
 	/** Remove all goals that are achieved given the contexts of the agent. */
 	public final void clearAchievedGoals(){
 //		synchronized (this.goals) {
 			if (!this.goals.isEmpty()) {
-				List<Goal> snapshot = new ArrayList<>(this.goals);
-				for (Goal goal : snapshot) {
+				List<Goal> snapshot = snapshotGoals();
+				for (int i = 0; i < snapshot.size(); i++) {
+					Goal goal = snapshot.get(i);
 					if (goal != null && goal.isAchieved(this.contextInterface)) {
 						this.goals.remove(goal);
 					}
@@ -433,22 +554,27 @@ public class Agent<T> implements AgentInterface{
 
 	/** Get the goal interceptors. */
 	public final Iterator<nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor<T>> getGoalInterceptors(){
-		return this.goalInterceptors.iterator();
+		return iterator(this.goalInterceptors);
 	}
 	
 	/** Get the external trigger interceptors. */
 	public final Iterator<nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor<T>> getExternalTriggerInterceptors(){
-		return this.externalTriggerInterceptors.iterator();
+		return iterator(this.externalTriggerInterceptors);
 	}
 	
 	/** Get the internal trigger interceptors. */
 	public final Iterator<nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor<T>> getInternalTriggerInterceptors(){
-		return this.internalTriggerInterceptors.iterator();
+		return iterator(this.internalTriggerInterceptors);
 	}
 	
 	/** Get the message interceptors. */
 	public final Iterator<nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor<T>> getMessageInterceptors(){
-		return this.messageInterceptors.iterator();
+		return iterator(this.messageInterceptors);
+	}
+	
+	/** Most agents have no interceptors, in which case the shared empty iterator is returned. */
+	private static <X> Iterator<X> iterator(final List<X> interceptors){
+		return interceptors.isEmpty() ? Collections.emptyIterator() : interceptors.iterator();
 	}
 
 	/** Remove a goal interceptor. */
@@ -481,7 +607,7 @@ public class Agent<T> implements AgentInterface{
 	 */
 	public final boolean tryApplication(final Trigger trigger, final nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T> planScheme){
 		Plan<T> result = planScheme.instantiate(trigger, this.contextInterface);
-		if(result != null && !result.equals(Plan.UNINSTANTIATED())){
+		if(result != null && !Plan.isUninstantiated(result)){
 			adoptPlan(result);
 			return true;
 		} else return false;
@@ -495,6 +621,22 @@ public class Agent<T> implements AgentInterface{
 //		}
 	}
 	
+	/** Obtain the current instantiated plans in a buffer of the agent that is reused by the next call, 
+	 * hence the returned list is only valid until then. Meant for the deliberation steps of this agent. */
+	public final List<nl.uu.cs.iss.ga.sim2apl.core.plan.Plan<T>> snapshotPlans(){
+		return copyInto(this.plans, this.planBuffer);
+	}
+	
+	/** Replace the contents of the buffer with the contents of the source list. Unlike <code>addAll</code>, 
+	 * this does not create a temporary array. */
+	private static <X> List<X> copyInto(final List<X> source, final List<X> buffer){
+		buffer.clear();
+		for(int i = 0; i < source.size(); i++){
+			buffer.add(source.get(i));
+		}
+		return buffer;
+	}
+	
 	public final List<nl.uu.cs.iss.ga.sim2apl.core.plan.Plan<T>> getShutdownPlans(){
 //		synchronized(this.downPlans){
 			if(this.downPlans.isEmpty()) return Collections.emptyList();
@@ -530,6 +672,44 @@ public class Agent<T> implements AgentInterface{
 		return this.forciblyStop || this.finished;
 	}
 	
+	/**
+	 * Let the agent sleep until the given tick once the current deliberation cycle has finished. The agent is not
+	 * executed until that tick, even if it has current plans, goals or internal triggers, unless it receives a message
+	 * or external trigger earlier. The current plan is not finished by calling this method.
+	 *
+	 * @param tick The tick in which the agent should deliberate again
+	 */
+	public final void sleepUntilTick(final long tick){
+		this.wakeUpTick = tick;
+	}
+
+	/**
+	 * Let the agent sleep for the given number of ticks once the current deliberation cycle has finished.
+	 *
+	 * @param ticks Number of ticks after the current tick in which the agent should deliberate again
+	 * @see #sleepUntilTick(long)
+	 */
+	public final void sleepFor(final int ticks){
+		sleepUntilTick(this.platform.getTickExecutor().getCurrentTick() + ticks);
+	}
+
+	/** @return The tick until which the agent sleeps, or -1 if the agent did not request a timed sleep */
+	public final long getWakeUpTick(){
+		return this.wakeUpTick;
+	}
+
+	/**
+	 * Wake up the agent because the tick it requested to sleep until has been reached. The wakeup is ignored if the
+	 * agent was woken up earlier, or requested to sleep until another tick in the meantime.
+	 *
+	 * @param tick The tick the timer of the agent was set for
+	 */
+	public final void timedWakeUp(final long tick){
+		if(this.wakeUpTick == tick && !isDone()){
+			checkWhetherToReschedule();
+		}
+	}
+
 	public final void setSelfRescheduler(final SelfRescheduler<T> rescheduler){
 		this.rescheduler = rescheduler;
 	}
@@ -547,14 +727,29 @@ public class Agent<T> implements AgentInterface{
 //				synchronized (this.goals) {
 //					synchronized (this.plans) {
 						if (!this.State.isActive()) return true;
+						else if (this.wakeUpTick >= 0) {
+							// A timed sleep suspends the current plans, and is only cut short by external input
+							if (this.messageQueue.peek() == null && !hasUnreadBroadcasts() && this.externalTriggers.size() == 0) {
+								this.State = FIPAAgentState.WAITING;
+							} else {
+								this.wakeUpTick = -1;
+							}
+						}
 						else if (this.plans.size() == 0 &&
 								this.externalTriggers.size() == 0 &&
 								this.internalTriggers.size() == 0 &&
 								this.goals.size() == 0 &&
-								this.messageQueue.peek() == null
+								this.messageQueue.peek() == null &&
+								!hasUnreadBroadcasts()
 						) {
 							this.State = FIPAAgentState.WAITING;
 						}
+						if (!this.State.isActive() && this.broadcastLog != null
+								&& !this.broadcastLog.wakeOnNextBroadcast(this, this.broadcastCursor)) {
+							// A broadcast was appended while going to sleep
+							this.State = FIPAAgentState.ACTIVE;
+							this.wakeUpTick = -1;
+						}
 						return !this.State.isActive();
 //					}
 //				}
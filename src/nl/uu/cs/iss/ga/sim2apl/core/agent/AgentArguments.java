@@ -3,13 +3,16 @@ package nl.uu.cs.iss.ga.sim2apl.core.agent;
 import nl.uu.cs.iss.ga.sim2apl.core.defaults.deliberationsteps.*;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationActionStep;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationStep;
+import nl.uu.cs.iss.ga.sim2apl.core.logging.MessageLogPolicy;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeBase;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.FunctionalPlanScheme;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.FunctionalPlanSchemeInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.builtin.TypedPlanScheme;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -20,6 +23,11 @@ public class AgentArguments<T> {
 	private final HashMap<Context, Class<? extends Context>[]> explicitKeyContexts;
 	private final List<Plan<T>> initialPlans;
 	private final List<Plan<T>> downPlans;
+	/** The plan scheme base that is shared by all agents created with these arguments. It is built when the first 
+	 * agent is created, and built again if plan schemes are added afterwards. */
+	private volatile PlanSchemeBase<T> planSchemeBase;
+	/** Which messages the agents keep in their message history. */
+	private MessageLogPolicy messageLogPolicy = MessageLogPolicy.FULL;
 		
 	public AgentArguments(){
 		this.goalPlanSchemes = new ArrayList<>();
@@ -32,9 +40,15 @@ public class AgentArguments<T> {
 		this.downPlans = new ArrayList<>();
 	}
 	
-	/** Builds the plan scheme base. This is intentionally package-only so that a programmer cannot accidentally mess with the plan scheme base. */
+	/** Builds the plan scheme base. This is intentionally package-only so that a programmer cannot accidentally mess with the plan scheme base. 
+	 * As the plan scheme base cannot change, it is built once and shared by all agents that are created with these arguments. */
 	final PlanSchemeBase<T> createPlanSchemeBase(){
-		return new PlanSchemeBase<T>(this.goalPlanSchemes, this.internalTriggerPlanSchemes, this.externalTriggerPlanSchemes, this.messagePlanSchemes);
+		PlanSchemeBase<T> base = this.planSchemeBase;
+		if(base == null){
+			base = new PlanSchemeBase<T>(this.goalPlanSchemes, this.internalTriggerPlanSchemes, this.externalTriggerPlanSchemes, this.messagePlanSchemes);
+			this.planSchemeBase = base;
+		}
+		return base;
 	}
 
 	/** Builds the context container. This is intentionally package-only so that a programmer cannot accidentally mess with the container. */
@@ -56,12 +70,11 @@ public class AgentArguments<T> {
 	 *  For Sim2APL, the ExecutePlans step is moved to the act Cycle*/
 	final List<DeliberationStep> createSenseReasonCycle(final Agent<T> agent){
 		// Produces the default 2APL deliberation cycle.
-		List<DeliberationStep> senseReasonCycle = new ArrayList<>();
-		senseReasonCycle.add(new ApplyGoalPlanSchemes(agent));
-		senseReasonCycle.add(new ApplyExternalTriggerPlanSchemes(agent));
-		senseReasonCycle.add(new ApplyInternalTriggerPlanSchemes(agent));
-		senseReasonCycle.add(new ApplyMessagePlanSchemes(agent));
-		return senseReasonCycle;
+		return List.of(
+				new ApplyGoalPlanSchemes(agent),
+				new ApplyExternalTriggerPlanSchemes(agent),
+				new ApplyInternalTriggerPlanSchemes(agent),
+				new ApplyMessagePlanSchemes(agent));
 	}
 
 	/**
@@ -71,38 +84,57 @@ public class AgentArguments<T> {
 	 * @return
 	 */
 	final List<DeliberationActionStep<T>> createActCycle(final Agent<T> agent) {
-		List<DeliberationActionStep<T>> actCycle = new ArrayList<>();
-		actCycle.add(new ExecutePlans<>(agent));
-		return actCycle;
+		return List.of(new ExecutePlans<>(agent));
+	}
+	
+	/** Returns the policy that determines which messages the agents keep in their message history. */
+	final MessageLogPolicy getMessageLogPolicy(){
+		return this.messageLogPolicy;
 	}
 	
 	/** Returns a list of plans that will be executed upon the agent's first deliberation cycle. */
 	final List<Plan<T>> getInitialPlans(){
-		return new ArrayList<>(this.initialPlans); // Ensure that no further additions will affect the the agent after creation
+		return Collections.unmodifiableList(this.initialPlans); // The agent copies the plans, so further additions will not affect the agent after creation
 	}
 	
 	/** Returns a list of plans that will be executed after the agent's last deliberation cycle. */
 	final List<Plan<T>> getShutdownPlans(){
-		return new ArrayList<>(this.downPlans); // Ensure that no further additions will affect the the agent after creation
+		return Collections.unmodifiableList(this.downPlans); // The agent copies the plans, so further additions will not affect the agent after creation
 	} 
 	
 	// Filling the builder
 	/** Add a plan scheme that processes external triggers. */
-	public final AgentArguments<T> addExternalTriggerPlanScheme(final PlanScheme<T> planScheme){ this.externalTriggerPlanSchemes.add(planScheme); return this; }
+	public final AgentArguments<T> addExternalTriggerPlanScheme(final PlanScheme<T> planScheme){ return addPlanScheme(this.externalTriggerPlanSchemes, planScheme); }
 	/** Add a plan scheme that processes internal triggers. */
-	public final AgentArguments<T> addInternalTriggerPlanScheme(final PlanScheme<T> planScheme){ this.internalTriggerPlanSchemes.add(planScheme); return this; }
+	public final AgentArguments<T> addInternalTriggerPlanScheme(final PlanScheme<T> planScheme){ return addPlanScheme(this.internalTriggerPlanSchemes, planScheme); }
 	/** Add a plan scheme that processes messages. */
-	public final AgentArguments<T> addMessagePlanScheme(final PlanScheme<T> planScheme){ this.messagePlanSchemes.add(planScheme); return this; }
+	public final AgentArguments<T> addMessagePlanScheme(final PlanScheme<T> planScheme){ return addPlanScheme(this.messagePlanSchemes, planScheme); }
 	/** Add a plan scheme that try to achieve goals. */
-	public final AgentArguments<T> addGoalPlanScheme(final PlanScheme<T> planScheme){ this.goalPlanSchemes.add(planScheme); return this; }
+	public final AgentArguments<T> addGoalPlanScheme(final PlanScheme<T> planScheme){ return addPlanScheme(this.goalPlanSchemes, planScheme); }
 	/** Add a plan scheme that processes external triggers. */
-	public final AgentArguments<T> addExternalTriggerPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ this.externalTriggerPlanSchemes.add(new FunctionalPlanScheme<T>(planScheme)); return this; }
+	public final AgentArguments<T> addExternalTriggerPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ return addPlanScheme(this.externalTriggerPlanSchemes, new FunctionalPlanScheme<T>(planScheme)); }
 	/** Add a plan scheme that processes internal triggers. */
-	public final AgentArguments<T> addInternalTriggerPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ this.internalTriggerPlanSchemes.add(new FunctionalPlanScheme<T>(planScheme)); return this; }
+	public final AgentArguments<T> addInternalTriggerPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ return addPlanScheme(this.internalTriggerPlanSchemes, new FunctionalPlanScheme<T>(planScheme)); }
 	/** Add a plan scheme that processes messages. */
-	public final AgentArguments<T> addMessagePlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ this.messagePlanSchemes.add(new FunctionalPlanScheme<T>(planScheme)); return this; }
+	public final AgentArguments<T> addMessagePlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ return addPlanScheme(this.messagePlanSchemes, new FunctionalPlanScheme<T>(planScheme)); }
 	/** Add a plan scheme that try to achieve goals. */
-	public final AgentArguments<T> addGoalPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ this.goalPlanSchemes.add(new FunctionalPlanScheme<T>(planScheme)); return this; }
+	public final AgentArguments<T> addGoalPlanScheme(final FunctionalPlanSchemeInterface<T> planScheme){ return addPlanScheme(this.goalPlanSchemes, new FunctionalPlanScheme<T>(planScheme)); }
+	/** Add a plan scheme that processes external triggers of the provided class only. */
+	public final AgentArguments<T> addExternalTriggerPlanScheme(final Class<? extends Trigger> triggerClass, final PlanScheme<T> planScheme){ return addPlanScheme(this.externalTriggerPlanSchemes, new TypedPlanScheme<T>(triggerClass, planScheme)); }
+	/** Add a plan scheme that processes internal triggers of the provided class only. */
+	public final AgentArguments<T> addInternalTriggerPlanScheme(final Class<? extends Trigger> triggerClass, final PlanScheme<T> planScheme){ return addPlanScheme(this.internalTriggerPlanSchemes, new TypedPlanScheme<T>(triggerClass, planScheme)); }
+	/** Add a plan scheme that processes messages of the provided class only. */
+	public final AgentArguments<T> addMessagePlanScheme(final Class<? extends Trigger> triggerClass, final PlanScheme<T> planScheme){ return addPlanScheme(this.messagePlanSchemes, new TypedPlanScheme<T>(triggerClass, planScheme)); }
+	/** Add a plan scheme that try to achieve goals of the provided class only. */
+	public final AgentArguments<T> addGoalPlanScheme(final Class<? extends Trigger> triggerClass, final PlanScheme<T> planScheme){ return addPlanScheme(this.goalPlanSchemes, new TypedPlanScheme<T>(triggerClass, planScheme)); }
+	/** Add a plan scheme that processes external triggers of the provided class only. */
+	public final AgentArguments<T> addExternalTriggerPlanScheme(final Class<? extends Trigger> triggerClass, final FunctionalPlanSchemeInterface<T> planScheme){ return addExternalTriggerPlanScheme(triggerClass, new FunctionalPlanScheme<T>(planScheme)); }
+	/** Add a plan scheme that processes internal triggers of the provided class only. */
+	public final AgentArguments<T> addInternalTriggerPlanScheme(final Class<? extends Trigger> triggerClass, final FunctionalPlanSchemeInterface<T> planScheme){ return addInternalTriggerPlanScheme(triggerClass, new FunctionalPlanScheme<T>(planScheme)); }
+	/** Add a plan scheme that processes messages of the provided class only. */
+	public final AgentArguments<T> addMessagePlanScheme(final Class<? extends Trigger> triggerClass, final FunctionalPlanSchemeInterface<T> planScheme){ return addMessagePlanScheme(triggerClass, new FunctionalPlanScheme<T>(planScheme)); }
+	/** Add a plan scheme that try to achieve goals of the provided class only. */
+	public final AgentArguments<T> addGoalPlanScheme(final Class<? extends Trigger> triggerClass, final FunctionalPlanSchemeInterface<T> planScheme){ return addGoalPlanScheme(triggerClass, new FunctionalPlanScheme<T>(planScheme)); }
 	/** Add a context that is used for decision making and plan execution. */
 	public final AgentArguments<T> addContext(final Context context){ this.contexts.add(context); return this; }
 	/** Add a context that is used for decision making and plan execution with one or more explicit lookup keys. */
@@ -111,6 +143,16 @@ public class AgentArguments<T> {
 	public final AgentArguments<T> addInitialPlan(final Plan<T> plan){ this.initialPlans.add(plan); return this; }
 	/** Add a plan that will be executed after the last deliberation cycle this agent will participate in. */
 	public final AgentArguments<T> addShutdownPlan(final Plan<T> plan){ this.downPlans.add(plan); return this; }
+	
+	/** Set which messages the agents keep in their message history. By default, all messages are kept. */
+	public final AgentArguments<T> setMessageLogPolicy(final MessageLogPolicy policy){ this.messageLogPolicy = policy; return this; }
+	 
+	/** Add a plan scheme to one of the lists of plan schemes. The plan scheme base has to be built again for the next agent. */
+	private AgentArguments<T> addPlanScheme(final List<PlanScheme<T>> planSchemes, final PlanScheme<T> planScheme){
+		planSchemes.add(planScheme);
+		this.planSchemeBase = null;
+		return this;
+	}
 	 
 	/** Copies the planschemes, contexts and initial plan of another 
 	 * builder into this builder. This can be used to for instance include a 
@@ -121,6 +163,7 @@ public class AgentArguments<T> {
 		this.internalTriggerPlanSchemes.addAll(builder.internalTriggerPlanSchemes);
 		this.messagePlanSchemes.addAll(builder.messagePlanSchemes);
 		this.goalPlanSchemes.addAll(builder.goalPlanSchemes);
+		this.planSchemeBase = null;
 		this.initialPlans.addAll(builder.initialPlans);
 		this.downPlans.addAll(builder.downPlans);
 		this.contexts.addAll(builder.contexts);
@@ -0,0 +1,20 @@
+package nl.uu.cs.iss.ga.sim2apl.core.agent;
+
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+/**
+ * Creates agents in bulk through <code>Platform.createAgents</code>. As agents register themselves with the 
+ * platform they are created on, the factory receives that platform. The factory is called concurrently from the 
+ * threads of the tick executor, so it should be thread safe.
+ */
+@FunctionalInterface
+public interface AgentFactory<A extends Agent<?>> {
+	/**
+	 * Create a single agent.
+	 * @param platform The platform the agent should be created on.
+	 * @param index Index of the agent in the bulk of agents that is created, starting at 0.
+	 * @return The created agent.
+	 * @throws Exception If the agent could not be created.
+	 */
+	A createAgent(Platform platform, int index) throws Exception;
+}
@@ -23,16 +23,26 @@ public class AgentID implements Serializable {
 	private static final long serialVersionUID = 8340622959725062448L;
 
 	private URI name;
-	private List<URL> addresses = new ArrayList<>();
-	private List<AgentID> resolvers = new ArrayList<>();
-	private Properties userDefSlots = new Properties();
+	// Addresses, resolvers and user defined slots are rarely used by local agents, so they are only created when needed
+	private List<URL> addresses;
+	private List<AgentID> resolvers;
+	private Properties userDefSlots;
+
+	/** The user info of the name, which identifies the agent. Decoded once, as it is used by equals and hashCode. */
+	private transient String uuID;
+	/** Compact handle of a local agent, assigned by the platform on registration, or 0 if none is assigned. */
+	private transient int handle = 0;
 
 	public AgentID(URI uri) throws URISyntaxException {
 		this.name = uri;
 	}
 	
 	public AgentID(UUID uuID, String host, int port) throws URISyntaxException {
-		this(new URI(null, uuID.toString(), host, port, null, null, "Agent-" + uuID.toString().substring(9, 13)));
+		this(uuID.toString(), host, port);
+	}
+
+	private AgentID(String uuID, String host, int port) throws URISyntaxException {
+		this(new URI(null, uuID, host, port, null, null, "Agent-" + uuID.substring(9, 13)));
 	}
 
 	public AgentID(String nickname, UUID uuID, String host, int port) throws URISyntaxException {
@@ -65,16 +75,26 @@ public class AgentID implements Serializable {
 		this(UUID.randomUUID(), dummyHost, dummyPort);
 	}
 
+	/**
+	 * Create an ID with the given local name, which is the same as calling setName(localname) on an empty ID, but
+	 * does not generate a random UUID for the name that is replaced.
+	 */
+	public static AgentID createNamed(String localname) throws URISyntaxException {
+		return new AgentID(new URI(null, localname, dummyHost, -1, null, null, null));
+	}
+
 	public URI getName() {
 		return name;
 	}
 
 	public void setName(String localname, String host) throws URISyntaxException {
 		this.name = new URI(null, localname, host, -1, null, null, null);
+		this.uuID = null;
 	}
 
 	public void setName(URI name) {
 		this.name = name;
+		this.uuID = null;
 	}
 
 	public void setName(String localname) throws URISyntaxException {
@@ -82,11 +102,21 @@ public class AgentID implements Serializable {
 	}
 
 	public List<URL> getAddresses() {
+		if (this.addresses == null) {
+			this.addresses = new ArrayList<>();
+		}
 		return addresses;
 	}
 
+	/** @return True if this ID has no addresses, resolvers or user defined slots, so it is identified by its name alone */
+	public boolean isNameOnly() {
+		return (this.addresses == null || this.addresses.isEmpty())
+				&& (this.resolvers == null || this.resolvers.isEmpty())
+				&& (this.userDefSlots == null || this.userDefSlots.isEmpty());
+	}
+
 	public URL getFirstAddress() {
-		return addresses.get(0);
+		return getAddresses().get(0);
 	}
 
 	public String getHost() {
@@ -98,11 +128,32 @@ public class AgentID implements Serializable {
 	}
 	
 	public String getUuID() {
-		return this.getName().getUserInfo();
+		String uuID = this.uuID;
+		if (uuID == null) {
+			uuID = this.getName().getUserInfo();
+			this.uuID = uuID;
+		}
+		return uuID;
+	}
+
+	/**
+	 * Get the compact handle the platform assigned to this ID when the agent was registered. Handles are dense 
+	 * positive integers that are unique among the agents registered with a platform, so they can be used to index 
+	 * local agents. The handle of an agent that is removed from the platform is assigned to the next agent that 
+	 * registers, so an ID that outlived its agent may carry the handle of another agent. 
+	 * @return The handle of the agent, or 0 if this ID was not registered with a platform
+	 */
+	public int getHandle() {
+		return this.handle;
+	}
+
+	/** Set the compact handle of this ID. Only to be used by the platform on which the agent is registered. */
+	public void setHandle(int handle) {
+		this.handle = handle;
 	}
 
 	public String getShortLocalName() {
-		String word = this.getName().getUserInfo().replace("-", "");
+		String word = this.getUuID().replace("-", "");
 		if (word.length() == 5) {
 			return " " + word;
 		} else if (word.length() > 5) {
@@ -117,7 +168,7 @@ public class AgentID implements Serializable {
 	}
 
 	public void addAddress(URL address) {
-		if (!addresses.contains(address)) {
+		if (!getAddresses().contains(address)) {
 			this.addresses.add(address);
 		}
 	}
@@ -127,6 +178,9 @@ public class AgentID implements Serializable {
 	}
 
 	public List<AgentID> getResolvers() {
+		if (this.resolvers == null) {
+			this.resolvers = new ArrayList<>();
+		}
 		return resolvers;
 	}
 
@@ -136,6 +190,9 @@ public class AgentID implements Serializable {
 
 	@Override
 	public boolean equals(Object obj) {
+		if (obj == this) {
+			return true;
+		}
 		if (obj == null) {
 			return false;
 		}
@@ -166,6 +223,8 @@ public class AgentID implements Serializable {
 		AgentID result = null;
 		try {
 			result = new AgentID(this.name);
+			result.uuID = this.uuID;
+			result.handle = this.handle;
 			result.setAddresses(this.addresses);
 			result.setResolvers(this.resolvers);
 		} catch (URISyntaxException e) {
@@ -177,6 +236,9 @@ public class AgentID implements Serializable {
 	}
 
 	public Properties getUserDefSlots() {
+		if (this.userDefSlots == null) {
+			this.userDefSlots = new Properties();
+		}
 		return userDefSlots;
 	}
 
@@ -185,11 +247,11 @@ public class AgentID implements Serializable {
 	}
 
 	public void addUserDefinedSlot(String key, String value) {
-		userDefSlots.setProperty(key, value);
+		getUserDefSlots().setProperty(key, value);
 	}
 
 	public void addResolver(AgentID resolver) {
-		if (!this.resolvers.contains(resolver)) {
+		if (!getResolvers().contains(resolver)) {
 			this.resolvers.add(resolver);
 		}
 	}
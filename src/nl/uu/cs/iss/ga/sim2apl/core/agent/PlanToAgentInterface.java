@@ -62,6 +62,17 @@ public final class PlanToAgentInterface<T> {
 	 * removed from the platform before it can start a new deliberation cycle.
 	 */
 	public final void finished(){ this.agent.finished(); } // The agent is finished with its execution
+
+	/**
+	 * Let the agent sleep until the given tick, once the current deliberation cycle has finished. The agent is
+	 * not executed in the meantime, unless a message or external trigger arrives. Plans that call this method
+	 * should finish themselves if they should not be executed again when the agent wakes up.
+	 */
+	public final void sleepUntilTick(final long tick){ this.agent.sleepUntilTick(tick); }
+
+	/** Let the agent sleep for the given number of ticks, once the current deliberation cycle has finished.
+	 * Sleeping for 1 tick means the agent deliberates again in the next tick. See {@link #sleepUntilTick(long)}. */
+	public final void sleepFor(final int ticks){ this.agent.sleepFor(ticks); }
 	
 	/** Add an interceptor for goals. */
 	public final void adoptGoalInterceptor(final nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor<T> interceptor){
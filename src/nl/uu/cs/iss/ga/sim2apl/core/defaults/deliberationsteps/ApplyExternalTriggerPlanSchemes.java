@@ -5,7 +5,7 @@ import java.util.List;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationStepException;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeIndex;
 
 /**
  * Step that applies the external trigger plan schemes to the external triggers.
@@ -20,9 +20,9 @@ public final class ApplyExternalTriggerPlanSchemes extends DefaultDeliberationSt
 	/** Simply grab the external triggers and relevant plan schemes and try their application. */
 	@Override
 	public final void execute() throws DeliberationStepException{
-		List<Trigger> triggers = super.agent.getAndRemoveExternalTriggers();
+		List<Trigger> triggers = super.agent.swapExternalTriggers();
 		super.applyTriggerInterceptors(triggers, super.agent.getExternalTriggerInterceptors());
-		List<PlanScheme> planSchemes = super.agent.getExternalTriggerPlanSchemes();
+		PlanSchemeIndex planSchemes = super.agent.getPlanSchemeBase().getExternalTriggerPlanSchemeIndex();
 		super.applyPlanSchemes(triggers, planSchemes);
 	}
 }
@@ -5,7 +5,7 @@ import java.util.List;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationStepException;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeIndex;
 
 /**
  * Step that applies the goal plan schemes to the current goals.
@@ -22,9 +22,9 @@ public final class ApplyGoalPlanSchemes extends DefaultDeliberationStep {
 	@Override
 	public final void execute() throws DeliberationStepException{
 		super.agent.clearAchievedGoals();
-		List<? extends Trigger> triggers = super.agent.getGoals();
+		List<? extends Trigger> triggers = super.agent.snapshotGoals();
 		super.applyTriggerInterceptors(triggers, super.agent.getGoalInterceptors());
-		List<PlanScheme> planSchemes = super.agent.getGoalPlanSchemes();
+		PlanSchemeIndex planSchemes = super.agent.getPlanSchemeBase().getGoalPlanSchemeIndex();
 		super.applyPlanSchemes(triggers, planSchemes);
 	}
 } 
\ No newline at end of file
@@ -5,7 +5,7 @@ import java.util.List;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationStepException;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeIndex;
 
 /**
  * Step that applies the internal trigger plan schemes to the internal triggers.
@@ -20,9 +20,9 @@ public final class ApplyInternalTriggerPlanSchemes extends DefaultDeliberationSt
 	/** Simply grab the internal triggers and relevant plan schemes and try their application. */
 	@Override
 	public final void execute() throws DeliberationStepException{
-		List<Trigger> triggers = super.agent.getAndRemoveInternalTriggers();
+		List<Trigger> triggers = super.agent.swapInternalTriggers();
 		super.applyTriggerInterceptors(triggers, super.agent.getInternalTriggerInterceptors()); 
-		List<PlanScheme> planSchemes = super.agent.getInternalTriggerPlanSchemes();
+		PlanSchemeIndex planSchemes = super.agent.getPlanSchemeBase().getInternalTriggerPlanSchemeIndex();
 		super.applyPlanSchemes(triggers, planSchemes);
 	}
 }
\ No newline at end of file
@@ -5,7 +5,7 @@ import java.util.List;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationStepException;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
-import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeIndex;
 
 /**
  * Step that applies the message plan schemes to the messages.
@@ -20,9 +20,9 @@ public final class ApplyMessagePlanSchemes extends DefaultDeliberationStep {
 	/** Simply grab the messages and message plan schemes and try their application. */
 	@Override
 	public final void execute() throws DeliberationStepException{
-		List<MessageInterface> messages = super.agent.getAllMessages(); 
+		List<MessageInterface> messages = super.agent.drainMessages(); 
 		super.applyTriggerInterceptors(messages, super.agent.getMessageInterceptors());
-		List<PlanScheme> planSchemes = super.agent.getMessagePlanSchemes();
+		PlanSchemeIndex planSchemes = super.agent.getPlanSchemeBase().getMessagePlanSchemeIndex();
 		super.applyPlanSchemes(messages, planSchemes);
 	}
 }
\ No newline at end of file
@@ -8,7 +8,9 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Goal;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanSchemeIndex;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 
 /**
  * The default deliberation step adds to the deliberation interface a method to 
@@ -29,22 +31,45 @@ public abstract class DefaultDeliberationStep implements DeliberationStep {
 
 	/** For each of the provided triggers and plan schemes, check whether the plan scheme is triggered by the trigger. If so, then the 
 	 * plan scheme is applied. If the triggers are goals then they will  be skipped if they are 
-	 * already pursued (i.e. a plan is already in existence for that goal). */
+	 * already pursued (i.e. a plan is already in existence for that goal). The lists are traversed by index, as 
+	 * they are the array based buffers of the agent, so no iterators are created. */
 	protected final void applyPlanSchemes(final List<? extends nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger> triggers, final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme> planSchemes){
-		for(nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger trigger : triggers){
+		int attempts = 0;
+		for(int i = 0; i < triggers.size(); i++){
+			nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger trigger = triggers.get(i);
 			// For goals check whether there is not already a plan instantiated for the goal. In this implementation each goal can have
 			// at most one instantiated plan scheme that tries to achieve that goal.
 			// TODO: this is different from 2APL, there it is checked FOR EACH rule whether that rule is already instantiated for
 			// the goal. Hence multiple plan schemes could be instantiated for the same goal. However, this is very rarely used
 			// and highly inefficient.  
 			if(!(trigger instanceof nl.uu.cs.iss.ga.sim2apl.core.agent.Goal && ((nl.uu.cs.iss.ga.sim2apl.core.agent.Goal)trigger).isPursued())){
-				for(PlanScheme planScheme : planSchemes){
-					if(this.agent.tryApplication(trigger, planScheme)){
-						break;
-					}
-				}
+				attempts += applyPlanSchemes(trigger, planSchemes);
+			}
+		}
+		if(attempts > 0) Platform.getMetrics().recordPlanSchemeMatchAttempts(attempts);
+	}
+	
+	/** Same as <code>applyPlanSchemes(List, List)</code>, but each trigger is only offered to the plan schemes 
+	 * of the index that handle the class of the trigger. */
+	protected final void applyPlanSchemes(final List<? extends nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger> triggers, final PlanSchemeIndex planSchemeIndex){
+		int attempts = 0;
+		for(int i = 0; i < triggers.size(); i++){
+			nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger trigger = triggers.get(i);
+			if(!(trigger instanceof nl.uu.cs.iss.ga.sim2apl.core.agent.Goal && ((nl.uu.cs.iss.ga.sim2apl.core.agent.Goal)trigger).isPursued())){
+				attempts += applyPlanSchemes(trigger, planSchemeIndex.getPlanSchemes(trigger));
+			}
+		}
+		if(attempts > 0) Platform.getMetrics().recordPlanSchemeMatchAttempts(attempts);
+	}
+	
+	/** Try the plan schemes in order until one is instantiated for the trigger. Returns the number of attempts. */
+	private int applyPlanSchemes(final nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger trigger, final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme> planSchemes){
+		for(int j = 0; j < planSchemes.size(); j++){
+			if(this.agent.tryApplication(trigger, planSchemes.get(j))){
+				return j + 1;
 			}
 		}
+		return planSchemes.size();
 	}
 	/**
 	 * For each of the provided triggers and trigger interceptors, check whether the interceptor is triggered by the trigger. If so, 
@@ -55,6 +80,7 @@ public abstract class DefaultDeliberationStep implements DeliberationStep {
 	 * @param interceptors
 	 */
 	protected final void applyTriggerInterceptors(final List<? extends nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger> triggers, final Iterator<nl.uu.cs.iss.ga.sim2apl.core.plan.TriggerInterceptor> interceptors){
+		if(triggers.isEmpty()) return;
 		while(interceptors.hasNext()){
 			TriggerInterceptor interceptor = interceptors.next();
 			Iterator<? extends nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger> triggerIterator = triggers.iterator();
@@ -16,6 +16,8 @@ import java.util.List;
  */
 public final class ExecutePlans<T> implements DeliberationActionStep<T> {
 	private final nl.uu.cs.iss.ga.sim2apl.core.agent.Agent<T> agent;
+	/** Buffer for the produced actions, which is reused in each deliberation cycle. */
+	private final ArrayList<T> producedActionList = new ArrayList<>();
 
 	public ExecutePlans(final Agent<T> agent){
 		this.agent = agent;
@@ -23,11 +25,14 @@ public final class ExecutePlans<T> implements DeliberationActionStep<T> {
 	
 	/** This steps executes by going through each of the agent's plans. If the plan is finished 
 	 * after its execution, then it is removed. If an error occurs, then a plan execution error
-	 * will be inserted as an internal trigger. */
+	 * will be inserted as an internal trigger. The returned list is reused by the next execution of this
+	 * step, so it should be consumed before then. */
 	@Override
 	public final List<T> execute() throws DeliberationStepException {
-		ArrayList<T> producedActionList = new ArrayList<>();
-		for(Plan<T> plan : this.agent.getPlans()){
+		this.producedActionList.clear();
+		List<Plan<T>> plans = this.agent.snapshotPlans();
+		for(int i = 0; i < plans.size(); i++){
+			Plan<T> plan = plans.get(i);
 			try {
 				T planAction = this.agent.executePlan(plan);
 				if(planAction != null)
@@ -49,6 +54,6 @@ public final class ExecutePlans<T> implements DeliberationActionStep<T> {
 				this.agent.addInternalTrigger(executionError); // Add the error
 			}
 		}
-		return producedActionList;
+		return this.producedActionList;
 	}
 }
@@ -3,45 +3,213 @@ package nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.BroadcastLog;
 import nl.uu.cs.iss.ga.sim2apl.core.messaging.Messenger;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.PlatformNotFoundException;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
 
 /**
  * The default messenger is a very simple implementation for communication between 
  * agents on the same JVM instance. 
  * 
+ * Messages without receivers are broadcast through a broadcast log, which agents read when they process their 
+ * messages, and agents can subscribe to topics to receive the messages that are published on them. Broadcasts are 
+ * stamped with the current tick of the platform of the registered agents, so the broadcast log discards them by 
+ * itself once they are no longer needed. 
+ * 
  * @author Bas Testerink
  */
 public final class DefaultMessenger<T> implements Messenger<MessageInterface, T> {
 	/** Stores the interfaces to agents to inject messages. */
 	private final ConcurrentHashMap<AgentID, Agent<T>> agents;
 
+	/** Broadcasts, shared by all registered agents. */
+	private final BroadcastLog broadcastLog = new BroadcastLog();
+	/** The current tick of the platform of the registered agents, or null if no agent with a platform registered. */
+	private volatile LongSupplier tickClock;
+
+	/** The IDs of the agents that subscribed to each topic. */
+	private final ConcurrentHashMap<String, Set<AgentID>> topics = new ConcurrentHashMap<>();
+
+	/** Number of bits of a handle that index an agent within a page of the handle table. */
+	private static final int HANDLE_PAGE_BITS = 12;
+	private static final int HANDLE_PAGE_MASK = (1 << HANDLE_PAGE_BITS) - 1;
+
+	/** The agents indexed by the handle their platform assigned to their ID, in pages of 4096 agents. This allows
+	 * receivers whose ID carries a handle to be found without hashing the ID. A page is only allocated once an agent
+	 * with a handle in its range registers. Pages are added under the lock of this messenger, by publishing a copy
+	 * of the array of pages. As the platform reuses the handles of removed agents, the table does not grow beyond
+	 * the largest number of agents that were registered at the same time. */
+	@SuppressWarnings("unchecked")
+	private volatile AtomicReferenceArray<Agent<T>>[] handlePages = new AtomicReferenceArray[0];
+
 	public DefaultMessenger(){
 		this.agents = new ConcurrentHashMap<>();
 	} 
 
+	/** @param expectedAgents Number of agents the messenger is expected to deliver messages to, used to size its map. */
+	public DefaultMessenger(final int expectedAgents){
+		this.agents = new ConcurrentHashMap<>(expectedAgents);
+	}
+
 	/** Store the agent interface. */
 	@Override
 	public final void register(Agent<T> agent){
+		if(this.tickClock == null) setTickClock(agent);
+		agent.setBroadcastLog(this.broadcastLog);
 		this.agents.put(agent.getAID(), agent);
+		int handle = agent.getAID().getHandle();
+		if(handle > 0) putHandle(handle, agent);
+	}
+
+	/** Store the agent interfaces, and add them to the handle table under a single lock. */
+	@Override
+	public final void registerAll(final Collection<? extends Agent<T>> agents){
+		for(Agent<T> agent : agents){
+			if(this.tickClock == null) setTickClock(agent);
+			agent.setBroadcastLog(this.broadcastLog);
+			this.agents.put(agent.getAID(), agent);
+		}
+		synchronized(this){
+			for(Agent<T> agent : agents){
+				int handle = agent.getAID().getHandle();
+				if(handle > 0) putHandle(handle, agent);
+			}
+		}
 	}
 
 	/** Remove the agent interface from the messenger. */
 	@Override
 	public final void deregister(final AgentID agentID){
-		this.agents.remove(agentID);
+		Agent<T> agent = this.agents.remove(agentID);
+		if(agent != null) this.broadcastLog.removeSleeper(agent);
+		if(agent != null && agent.getAID().getHandle() > 0){
+			int handle = agent.getAID().getHandle();
+			AtomicReferenceArray<Agent<T>>[] pages = this.handlePages;
+			if((handle >>> HANDLE_PAGE_BITS) < pages.length && pages[handle >>> HANDLE_PAGE_BITS] != null){
+				// Only clear the entry if the handle was not yet reused for another agent
+				pages[handle >>> HANDLE_PAGE_BITS].compareAndSet(handle & HANDLE_PAGE_MASK, agent, null);
+			}
+		}
+	}
+
+	/** Stamp broadcasts with the current tick of the platform of the agent. */
+	private void setTickClock(final Agent<T> agent){
+		try {
+			Platform platform = agent.getPlatform();
+			if(platform == null || platform.getTickExecutor() == null) return;
+			TickExecutor<?> executor = platform.getTickExecutor();
+			this.tickClock = executor::getCurrentTick;
+		} catch (PlatformNotFoundException e) {
+			// Broadcasts are stamped with tick 0 until an agent with a platform registers
+		}
+	}
+
+	/** Store the agent in the handle table, adding its page if necessary. */
+	@SuppressWarnings("unchecked")
+	private synchronized void putHandle(final int handle, final Agent<T> agent){
+		int page = handle >>> HANDLE_PAGE_BITS;
+		AtomicReferenceArray<Agent<T>>[] pages = this.handlePages;
+		if(page >= pages.length || pages[page] == null){
+			AtomicReferenceArray<Agent<T>>[] grown = Arrays.copyOf(pages, Math.max(pages.length, page + 1));
+			grown[page] = new AtomicReferenceArray<>(1 << HANDLE_PAGE_BITS);
+			this.handlePages = pages = grown;
+		}
+		pages[page].set(handle & HANDLE_PAGE_MASK, agent);
+	}
+
+	/** Find the receiver by the handle of its ID. Returns null if the ID carries no handle of a registered agent. */
+	private Agent<T> findByHandle(final AgentID receiver){
+		int handle = receiver.getHandle();
+		if(handle <= 0) return null;
+		AtomicReferenceArray<Agent<T>>[] pages = this.handlePages;
+		int page = handle >>> HANDLE_PAGE_BITS;
+		if(page >= pages.length || pages[page] == null) return null;
+		Agent<T> agent = pages[page].get(handle & HANDLE_PAGE_MASK);
+		// Handles are only unique per platform, so an ID of another platform may carry the same handle
+		return agent != null && agent.getAID().equals(receiver) ? agent : null;
 	}
 	
 	/** Grab the agent interface of the receiver and add the message in the receiving agent. */
 	public final void sendMessage(final nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID receiver, final MessageInterface message) throws nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.MessageReceiverNotFoundException {
-		Agent<T> agent = this.agents.get(receiver);
+		Agent<T> agent = findReceiver(receiver);
+		agent.receiveMessage(message);
+		Platform.getMetrics().recordMessagesDelivered(1);
+	}
+
+	/** Find the receiver once, and add all messages to it at once. */
+	@Override
+	public void deliverMessages(final AgentID receiver, final List<? extends MessageInterface> messages) throws MessageReceiverNotFoundException {
+		Agent<T> agent = findReceiver(receiver);
+		agent.receiveMessages(messages);
+		Platform.getMetrics().recordMessagesDelivered(messages.size());
+	}
+
+	/**
+	 * Send a message to all registered agents. The message is added to the broadcast log once, and all agents 
+	 * share the same message object, so receivers should not modify it. Agents that are awake read the message in 
+	 * their next deliberation cycle, and sleeping agents are woken up by the log. 
+	 */
+	public void broadcast(final MessageInterface message){
+		LongSupplier tickClock = this.tickClock;
+		this.broadcastLog.append(message, tickClock == null ? 0 : tickClock.getAsLong());
+		Platform.getMetrics().recordMessagesDelivered(this.agents.size());
+	}
+
+	/** Subscribe an agent to the messages that are published on a topic. */
+	public void subscribe(final AgentID agentID, final String topic) throws MessageReceiverNotFoundException {
+		findReceiver(agentID);
+		this.topics.computeIfAbsent(topic, t -> ConcurrentHashMap.newKeySet()).add(agentID);
+	}
+
+	/** Stop delivering the messages that are published on a topic to an agent. */
+	public void unsubscribe(final AgentID agentID, final String topic){
+		Set<AgentID> subscribers = this.topics.get(topic);
+		if(subscribers != null) subscribers.remove(agentID);
+	}
+
+	/**
+	 * Send a message to all agents that subscribed to the topic. All subscribers receive the same message object, 
+	 * so they should not modify it. Subscribers that are no longer registered are unsubscribed. 
+	 * @return The number of agents the message was delivered to
+	 */
+	public int publish(final String topic, final MessageInterface message){
+		Set<AgentID> subscribers = this.topics.get(topic);
+		if(subscribers == null) return 0;
+		int delivered = 0;
+		for(Iterator<AgentID> iterator = subscribers.iterator(); iterator.hasNext(); ){
+			AgentID subscriber = iterator.next();
+			Agent<T> agent = findByHandle(subscriber);
+			if(agent == null) agent = this.agents.get(subscriber);
+			if(agent == null){
+				iterator.remove();
+			} else {
+				agent.receiveMessage(message);
+				delivered++;
+			}
+		}
+		Platform.getMetrics().recordMessagesDelivered(delivered);
+		return delivered;
+	}
+
+	private Agent<T> findReceiver(final AgentID receiver) throws MessageReceiverNotFoundException {
+		Agent<T> agent = findByHandle(receiver);
+		if(agent == null) agent = this.agents.get(receiver);
 		if(agent == null){
 			//TODO send message to sender that receiver is unknown instead of exception
 			throw new MessageReceiverNotFoundException("Trying to send to non-existent agent "+receiver+".");
-		} else {
-			agent.receiveMessage(message);
 		}
+		return agent;
 	}
 
 	@Override
@@ -62,12 +230,10 @@ public final class DefaultMessenger<T> implements Messenger<MessageInterface, T>
 				this.sendMessage(toID, message);
 			}
 		}else {
-			for (AgentID agentID : agents.keySet()) {
-				this.sendMessage(agentID, message);
-			}
+			this.broadcast(message);
 		}
 	}
-	
+
 	@Override
 	public boolean implementsEncoding() {
 		return false;
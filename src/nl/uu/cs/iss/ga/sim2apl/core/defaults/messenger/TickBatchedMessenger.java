@@ -0,0 +1,262 @@
+package nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.Messenger;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TickHookProcessor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * A messenger that delivers messages at tick boundaries instead of immediately. Messages that are sent during a tick
+ * are collected in an outbox of the sending thread, so senders do not contend on the message queues of their
+ * receivers, and a message can not arrive at an agent that is deliberating in the same tick.
+ *
+ * Before the next tick starts, the collected messages are sorted on the handle of their receiver and the handle of
+ * their sender, and are delivered through the wrapped messenger in one pass, grouped by receiver. Handles are assigned
+ * in order of registration, so unlike the UUID of an agent, which is random by default, they are the same in every run
+ * (IDs without a handle, e.g. of agents on other platforms, are ordered on their name). Messages with the same
+ * receiver and sender, including messages without a sender, are ordered on the outbox they were sent from, in order
+ * of the first message of each outbox, and then on the order in which they were sent. A receiver that is asleep is
+ * therefore woken up once, and the order in which an agent receives its messages does not depend on the number of
+ * threads or their timing. Broadcasts (messages without receivers) are delivered after the other messages, ordered
+ * by sender.
+ *
+ * Simulation engines register this messenger as a tick hook processor automatically when it is the messenger of the
+ * platform, and run its hooks after all other tick hook processors. Messages sent by other tick hook processors before
+ * a tick are therefore delivered before that tick starts. As the delivery happens later than the send, a receiver
+ * that is unknown at the time of delivery can not be reported to the sender, and is logged instead.
+ *
+ * @param <T> Type of the actions produced by the agents
+ */
+public final class TickBatchedMessenger<T> implements Messenger<MessageInterface, T>, TickHookProcessor<T> {
+	/** Orders messages on their receiver, with broadcasts last, then on their sender, and then on the order in which
+	 * their outbox was created and they were sent. */
+	private static final Comparator<OutgoingMessage> RECEIVER_ORDER =
+			Comparator.comparingInt((OutgoingMessage m) -> m.receiver == null ? 1 : 0)
+					.thenComparingInt(m -> m.receiverHandle)
+					.thenComparing(m -> m.receiverName, Comparator.nullsFirst(Comparator.naturalOrder()));
+	private static final Comparator<OutgoingMessage> DELIVERY_ORDER = RECEIVER_ORDER
+			.thenComparingInt(m -> m.senderHandle)
+			.thenComparing(m -> m.senderName, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparingInt(m -> m.outbox)
+			.thenComparingLong(m -> m.sequence);
+
+	/** Messenger that delivers the messages to the agents. */
+	private final Messenger<MessageInterface, T> messenger;
+
+	/** The outboxes of all threads that have sent messages through this messenger. The outbox of a thread that has
+	 * terminated is removed once its messages have been delivered. */
+	private final ConcurrentLinkedQueue<Outbox> outboxes = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger nofOutboxes = new AtomicInteger();
+	private final ThreadLocal<Outbox> outbox = ThreadLocal.withInitial(() -> {
+		Outbox outbox = new Outbox(this.nofOutboxes.getAndIncrement());
+		this.outboxes.add(outbox);
+		return outbox;
+	});
+
+	/** Buffer the messages of all outboxes are collected in when they are delivered. */
+	private final List<OutgoingMessage> pending = new ArrayList<>();
+
+	/** Batch messages for a new DefaultMessenger. */
+	public TickBatchedMessenger(){
+		this(new DefaultMessenger<>());
+	}
+
+	/** @param messenger Messenger that delivers the messages to the agents at the end of each tick. */
+	public TickBatchedMessenger(final Messenger<MessageInterface, T> messenger){
+		this.messenger = messenger;
+	}
+
+	/** Register the agent with the wrapped messenger. */
+	@Override
+	public void register(final Agent<T> agent){
+		this.messenger.register(agent);
+	}
+
+	/** Register the agents with the wrapped messenger. */
+	@Override
+	public void registerAll(final Collection<? extends Agent<T>> agents){
+		this.messenger.registerAll(agents);
+	}
+
+	/** Deregister the agent from the wrapped messenger. Messages that are still to be delivered to it are dropped. */
+	@Override
+	public void deregister(final AgentID agentID){
+		this.messenger.deregister(agentID);
+	}
+
+	@Override
+	public void agentDied(final AgentID agentID){
+		this.deregister(agentID);
+	}
+
+	/** Add the message to the outbox of the current thread, to be delivered before the next tick. */
+	@Override
+	public void deliverMessage(final AgentID receiver, final MessageInterface message){
+		this.outbox.get().add(receiver, message);
+	}
+
+	/** Add the message for each of its receivers to the outbox of the current thread, or as a broadcast if it has no
+	 * receivers. */
+	@Override
+	public void deliverMessage(final MessageInterface message){
+		Outbox outbox = this.outbox.get();
+		if(message.getReceiver() != null && message.getReceiver().size() > 0){
+			for(AgentID receiver : message.getReceiver()){
+				outbox.add(receiver, message);
+			}
+		} else {
+			outbox.add(null, message);
+		}
+	}
+
+	/**
+	 * Deliver all messages that were sent since the previous delivery. Called by the simulation engine while no agent
+	 * is deliberating. Threads that do not run agents, such as the selector thread of a NetNode, may still send
+	 * messages in the meantime, which are delivered now or with the next delivery.
+	 */
+	public synchronized void deliverPendingMessages(){
+		for(Iterator<Outbox> outboxes = this.outboxes.iterator(); outboxes.hasNext(); ){
+			Outbox outbox = outboxes.next();
+			// A terminated thread can not add messages anymore, e.g. after the executor replaced its threads. It is
+			// checked before draining, so the last messages of a thread that terminates meanwhile are not lost
+			boolean terminated = !outbox.owner.isAlive();
+			outbox.drainTo(this.pending);
+			if(terminated) outboxes.remove();
+		}
+		if(this.pending.isEmpty()) return;
+
+		this.pending.sort(DELIVERY_ORDER);
+		List<MessageInterface> group = new ArrayList<>();
+		int i = 0;
+		while(i < this.pending.size() && this.pending.get(i).receiver != null){
+			OutgoingMessage first = this.pending.get(i);
+			// An ID that outlived its agent may carry the handle of another agent, so the IDs are compared as well
+			for(; i < this.pending.size() && RECEIVER_ORDER.compare(first, this.pending.get(i)) == 0
+					&& first.receiver.equals(this.pending.get(i).receiver); i++){
+				group.add(this.pending.get(i).message);
+			}
+			AgentID receiver = first.receiver;
+			try {
+				this.messenger.deliverMessages(receiver, group);
+			} catch (MessageReceiverNotFoundException e) {
+				Platform.getLogger().log(getClass(), Level.WARNING, e.getMessage());
+			}
+			group.clear();
+		}
+		for(; i < this.pending.size(); i++){
+			try {
+				this.messenger.deliverMessage(this.pending.get(i).message);
+			} catch (MessageReceiverNotFoundException e) {
+				Platform.getLogger().log(getClass(), Level.WARNING, e.getMessage());
+			}
+		}
+		this.pending.clear();
+	}
+
+	/** Delivers the messages that were sent during the previous tick, or before the simulation started. The hooks
+	 * are passed on to the wrapped messenger if it is a tick hook processor as well. */
+	@Override
+	public void tickPreHook(final long startingTick){
+		deliverPendingMessages();
+		if(this.messenger instanceof TickHookProcessor) getMessengerHookProcessor().tickPreHook(startingTick);
+	}
+
+	@Override
+	public void tickPostHook(final long finishedTick, final int tickDuration, final List<Future<DeliberationResult<T>>> producedAgentActions){
+		// Messages are delivered before the next tick, after the pre-tick hooks of the other processors have run
+		if(this.messenger instanceof TickHookProcessor) getMessengerHookProcessor().tickPostHook(finishedTick, tickDuration, producedAgentActions);
+	}
+
+	/** Delivers the messages that were sent during the last tick, so they are not lost. */
+	@Override
+	public void simulationFinishedHook(final long lastTick, final int lastTickDuration){
+		deliverPendingMessages();
+		if(this.messenger instanceof TickHookProcessor) getMessengerHookProcessor().simulationFinishedHook(lastTick, lastTickDuration);
+	}
+
+	@SuppressWarnings("unchecked")
+	private TickHookProcessor<T> getMessengerHookProcessor(){
+		return (TickHookProcessor<T>) this.messenger;
+	}
+
+	@Override
+	public boolean implementsEncoding(){
+		return this.messenger.implementsEncoding();
+	}
+
+	@Override
+	public byte[] encodeMessage(final MessageInterface message) throws UnsupportedOperationException {
+		return this.messenger.encodeMessage(message);
+	}
+
+	@Override
+	public MessageInterface decodeMessage(final byte[] asBytes) throws UnsupportedOperationException {
+		return this.messenger.decodeMessage(asBytes);
+	}
+
+	/**
+	 * The messages sent by one thread, with the thread to find out whether the outbox is still in use. The thread
+	 * that delivers the messages drains the outbox while its owner may still add to it, so both hold its lock, which
+	 * is uncontended while agents deliberate.
+	 */
+	private static final class Outbox {
+		private final Thread owner = Thread.currentThread();
+		private final int index;
+		private final List<OutgoingMessage> messages = new ArrayList<>();
+		private long nofSent;
+
+		Outbox(final int index){
+			this.index = index;
+		}
+
+		synchronized void add(final AgentID receiver, final MessageInterface message){
+			this.messages.add(new OutgoingMessage(receiver, message, this.index, this.nofSent++));
+		}
+
+		synchronized void drainTo(final List<OutgoingMessage> pending){
+			if(this.messages.isEmpty()) return;
+			pending.addAll(this.messages);
+			this.messages.clear();
+		}
+	}
+
+	/**
+	 * A message in an outbox, with the keys it is ordered on. Broadcasts have no receiver and are ordered last. The
+	 * name of an ID is only used to order IDs without a handle.
+	 */
+	private static final class OutgoingMessage {
+		private final AgentID receiver;
+		private final MessageInterface message;
+		private final int receiverHandle;
+		private final String receiverName;
+		private final int senderHandle;
+		private final String senderName;
+		private final int outbox;
+		private final long sequence;
+
+		OutgoingMessage(final AgentID receiver, final MessageInterface message, final int outbox, final long sequence){
+			this.receiver = receiver;
+			this.message = message;
+			this.receiverHandle = receiver == null ? 0 : receiver.getHandle();
+			this.receiverName = receiver == null || this.receiverHandle != 0 ? null : receiver.getName().toString();
+			AgentID sender = message.getSender();
+			this.senderHandle = sender == null ? -1 : sender.getHandle();
+			this.senderName = sender == null || this.senderHandle != 0 ? null : sender.getName().toString();
+			this.outbox = outbox;
+			this.sequence = sequence;
+		}
+	}
+}
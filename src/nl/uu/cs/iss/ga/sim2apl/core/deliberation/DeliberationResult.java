@@ -18,6 +18,11 @@ public class DeliberationResult<T> {
         return agentID;
     }
 
+    /**
+     * @return The actions the agent intends to perform. The lists of the results produced by the tick executors are
+     *         unmodifiable, and the result of an agent without actions may be shared between ticks, so copy the list
+     *         to add or remove actions
+     */
     public List<T> getActions() {
         return actions;
     }
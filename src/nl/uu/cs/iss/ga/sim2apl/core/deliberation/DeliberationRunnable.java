@@ -2,15 +2,15 @@ package nl.uu.cs.iss.ga.sim2apl.core.deliberation;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.MetricsCollector;
 import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Objects;
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
-import java.util.stream.Collectors;
 
 /**
  * A deliberation runnable implements how an agent is executed. This is done by 
@@ -25,7 +25,17 @@ public final class DeliberationRunnable<T> implements Callable<DeliberationResul
 	/** Interface to the relevant platform functionalities. */
 	private final Platform platform;
 
-	private ArrayList<T> intendedActions;
+	/** Buffer for the actions produced during the act part of the deliberation cycle, reused in each cycle. */
+	private final ArrayList<T> intendedActions = new ArrayList<>();
+
+	/** Result of a deliberation cycle without actions. Cached, as most cycles of most agents produce no actions. */
+	private DeliberationResult<T> emptyResult;
+
+	/** Time spent in the sense-reason part of the current deliberation cycle, if metrics are collected. */
+	private long senseReasonNanos;
+
+	/** Index assigned to this runnable by the tick executor, or -1 if the executor did not assign an index. */
+	private volatile int schedulerIndex = -1;
 
 	/**
 	 * Creation of the deliberation runnable will also result in the setting of a self-rescheduler for this runnable  
@@ -49,53 +59,131 @@ public final class DeliberationRunnable<T> implements Callable<DeliberationResul
 	 */
 	@Override
 	public DeliberationResult<T> call(){
-		if(!this.agent.isDone()){ // Check first if agent was killed outside of this runnable
-            // Clear intended actions potential previous deliberation cycle
-            this.intendedActions = new ArrayList<>();
-
-			try {
-				// Go through the cycle and execute each step.
-				// Note that the deliberation cycle cannot change at runtime.  
-				for(DeliberationStep step : this.agent.getSenseReasonCycle()){
+		if(senseReason()) {
+			return act();
+		} else {
+			// An agent that shuts down will no longer perform actions
+			return emptyResult();
+		}
+	}
+
+	/**
+	 * Run the sense-reason part of the deliberation cycle of the agent once. Together with <code>act</code>, this
+	 * is equivalent to <code>call</code>, but allows a tick executor to run the two parts of the cycle in
+	 * separate phases.
+	 *
+	 * If the agent was killed outside of this runnable, it is shut down. If a <code>DeliberationStepException</code>
+	 * occurs, the agent is killed and removed from the platform.
+	 *
+	 * @return True iff the act part of the deliberation cycle should be executed for this agent
+	 */
+	public boolean senseReason(){
+		if(this.agent.isDone()){ // Check first if agent was killed outside of this runnable
+			initiateShutdown(this.agent);
+			return false;
+		}
+
+		MetricsCollector metrics = Platform.getMetrics();
+		try {
+			// Go through the cycle and execute each step.
+			// Note that the deliberation cycle cannot change at runtime.
+			if(metrics.isEnabled()) {
+				long startTime = System.nanoTime(), time = startTime;
+				List<DeliberationStep> cycle = this.agent.getSenseReasonCycle();
+				for(int i = 0; i < cycle.size(); i++){
+					DeliberationStep step = cycle.get(i);
 					step.execute();
+					long now = System.nanoTime();
+					metrics.recordDeliberationStep(step.getClass(), now - time);
+					time = now;
+				}
+				this.senseReasonNanos = time - startTime;
+			} else {
+				List<DeliberationStep> cycle = this.agent.getSenseReasonCycle();
+				for(int i = 0; i < cycle.size(); i++){
+					cycle.get(i).execute();
 				}
+			}
+			return true;
+		} catch(DeliberationStepException exception){
+			// Deliberation exceptions should not occur. The agent is
+			// killed and removed from the platform. All proxy's are
+			// notified of the agent's death. The rest of the multi-
+			// agent system will continue execution by default.
+			Platform.getLogger().log(getClass(), exception);
+			this.platform.killAgent(this.agent.getAID());
+			return false;
+		}
+	}
+
+	/**
+	 * Run the act part of the deliberation cycle of the agent once, after the sense-reason part has been executed.
+	 * Will ask the platform to execute again sometime in the future if the agent is not done and not sleeping.
+	 *
+	 * @return The actions the agent intends to perform
+	 */
+	public DeliberationResult<T> act(){
+		// Clear intended actions potential previous deliberation cycle
+		this.intendedActions.clear();
 
-				for(DeliberationActionStep<T> step : this.agent.getActCycle()) {
-					this.intendedActions.addAll(step.execute().stream().filter(Objects::nonNull).collect(Collectors.toList()));
+		MetricsCollector metrics = Platform.getMetrics();
+		try {
+			long startTime = metrics.isEnabled() ? System.nanoTime() : 0, time = startTime;
+			List<DeliberationActionStep<T>> cycle = this.agent.getActCycle();
+			for(int i = 0; i < cycle.size(); i++) {
+				DeliberationActionStep<T> step = cycle.get(i);
+				List<T> actions = step.execute();
+				for(int j = 0; j < actions.size(); j++) {
+					T action = actions.get(j);
+					if(action != null) this.intendedActions.add(action);
 				}
+				if(metrics.isEnabled()) {
+					long now = System.nanoTime();
+					metrics.recordDeliberationStep(step.getClass(), now - time);
+					time = now;
+				}
+			}
+			if(metrics.isEnabled()) {
+				metrics.recordAgentDeliberation(this.agent.getClass(), this.senseReasonNanos + time - startTime);
+			}
 
-				// If all deliberation steps are finished, then check whether
-				// the agent is done, so it can be killed.
-				if(this.agent.isDone()){
-					Platform.getLogger().log(DeliberationRunnable.class, String.format(
-							"Agent %s is done and will be shut down",
-							agent.getAID().getName()));
-					initiateShutdown(this.agent);
+			// If all deliberation steps are finished, then check whether
+			// the agent is done, so it can be killed.
+			if(this.agent.isDone()){
+				Platform.getLogger().log(DeliberationRunnable.class, String.format(
+						"Agent %s is done and will be shut down",
+						agent.getAID().getName()));
+				initiateShutdown(this.agent);
+			} else {
+				if (!this.agent.checkSleeping()) { // If the agents goes to sleep then it will be woken upon any external input (message, external trigger)
+					reschedule();
 				} else {
-					if (!this.agent.checkSleeping()) { // If the agents goes to sleep then it will be woken upon any external input (message, external trigger)
-						reschedule();
-					} else {
-						Platform.getLogger().log(DeliberationRunnable.class, Level.FINER, String.format("Agent %s going to sleep",
-								agent.getAID().getName()));
-					}
+					long wakeUpTick = this.agent.getWakeUpTick();
+					if(wakeUpTick >= 0) this.platform.scheduleForExecutionAt(this, wakeUpTick);
+					Platform.getLogger().log(DeliberationRunnable.class, Level.FINER, String.format("Agent %s going to sleep",
+							agent.getAID().getName()));
 				}
-			} catch(DeliberationStepException exception){
-				// Deliberation exceptions should not occur. The agent is 
-				// killed and removed from the platform. All proxy's are
-				// notified of the agent's death. The rest of the multi-
-				// agent system will continue execution by default.
-				Platform.getLogger().log(getClass(), exception);
-				this.platform.killAgent(this.agent.getAID());
 			}
+		} catch(DeliberationStepException exception){
+			Platform.getLogger().log(getClass(), exception);
+			this.platform.killAgent(this.agent.getAID());
+		}
 
-            // Produce the set of intended actions
-			return new DeliberationResult<>(this.agent.getAID(), intendedActions);
-		} else {
-			initiateShutdown(agent);
+		// Produce the set of intended actions. The buffer is reused, so the result gets its own (unmodifiable) copy
+		if(this.intendedActions.isEmpty()) return emptyResult();
+		DeliberationResult<T> result = new DeliberationResult<>(this.agent.getAID(), List.copyOf(this.intendedActions));
+		this.intendedActions.clear();
+		return result;
+	}
 
-			// An agent that shuts down will no longer perform actions
-            return new DeliberationResult<>(this.getAgentID(), Collections.emptyList());
+	/** Obtain the cached result without actions, which is recreated if the ID of the agent has changed. */
+	private DeliberationResult<T> emptyResult(){
+		DeliberationResult<T> result = this.emptyResult;
+		if(result == null || result.getAgentID() != this.agent.getAID()){
+			result = new DeliberationResult<>(this.agent.getAID(), Collections.emptyList());
+			this.emptyResult = result;
 		}
+		return result;
 	}
 
 	/** Perform shutdown plans, and kill agent **/
@@ -111,6 +199,7 @@ public final class DeliberationRunnable<T> implements Callable<DeliberationResul
 				}
 		);
 		this.platform.killAgent(agent.getAID());
+		deschedule();
 	}
 
 	/** Returns the id of the agent to which this runnable belongs. */
@@ -120,4 +209,23 @@ public final class DeliberationRunnable<T> implements Callable<DeliberationResul
 	public final void reschedule(){
 		this.platform.scheduleForExecution(this);
 	}
+
+	/** Called by the tick executor when the tick until which the agent of this runnable sleeps has been reached. */
+	public final void timerExpired(final long tick){
+		this.agent.timedWakeUp(tick);
+	}
+
+	/** Inform the platform this deliberation runnable will not be executed again after its agent has died. */
+	public final void deschedule(){
+		this.platform.descheduleFromExecution(this);
+	}
+
+	/**
+	 * Returns the index a tick executor assigned to this runnable, e.g. to keep track of the active agents in a
+	 * dense index, or -1 if no index has been assigned.
+	 */
+	public final int getSchedulerIndex(){ return this.schedulerIndex; }
+
+	/** Set the index by which the tick executor keeps track of this runnable. Only to be used by tick executors. */
+	public final void setSchedulerIndex(final int schedulerIndex){ this.schedulerIndex = schedulerIndex; }
 }
\ No newline at end of file
@@ -17,4 +17,9 @@ public final class SelfRescheduler<T> {
 	public final void wakeUp(){
 		this.deliberationRunnable.reschedule();
 	}
+
+	/** Inform the scheduler this deliberation runnable will not be executed again, because the agent died. */
+	public final void release(){
+		this.deliberationRunnable.deschedule();
+	}
 }
@@ -65,6 +65,7 @@ public class FIPAMessenger<T> implements Messenger<ACLMessage, T> {
 				throw new MessageReceiverNotFoundException("Trying to send to non-existent agent " + receiver + ".");
 			} else {
 				agent.receiveMessage(message);
+				Platform.getMetrics().recordMessagesDelivered(1);
 			}
 		}
 	}
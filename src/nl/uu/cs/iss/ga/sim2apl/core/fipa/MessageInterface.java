@@ -1,19 +1,72 @@
 package nl.uu.cs.iss.ga.sim2apl.core.fipa;
 
 import java.util.Collection;
+import java.util.UUID;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
 
 public interface MessageInterface extends Trigger {
+
+	/** Name of the user defined parameter that holds the ID of a message, if the message does not store it itself. */
+	String MESSAGE_ID_PARAMETER = "X-messageID";
 	
+
 	Collection<nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID> getReceiver();
 
 	AgentID getSender();
 	
+	/**
+	 * Add a user defined parameter to this message. Immutable messages, such as a LightweightMessage, throw an
+	 * UnsupportedOperationException; use {@link #withUserDefinedParameter(String, String)} for any kind of message.
+	 */
 	void addUserDefinedParameter(String key, String value);
+
+	/**
+	 * Add a user defined parameter. Mutable messages add it to themselves, immutable messages return a copy.
+	 * @return The message with the parameter, which is this message unless it is immutable
+	 */
+	default MessageInterface withUserDefinedParameter(String key, String value) {
+		addUserDefinedParameter(key, value);
+		return this;
+	}
 	
 	String getUserDefinedParameter(String key);
 	
 	String getContent();
+
+	/**
+	 * Get the ID the sending agent assigned to this message. Messages that do not store the ID in a field keep it as
+	 * the user defined parameter X-messageID, in the form of a UUID of which the most significant bits are 0.
+	 * @return The ID of the message, or 0 if it has none, or has an ID that is not a long (e.g. a random UUID)
+	 */
+	default long getMessageID() {
+		String messageID = getUserDefinedParameter(MESSAGE_ID_PARAMETER);
+		if (messageID == null) return 0;
+		try {
+			UUID uuid = UUID.fromString(messageID);
+			return uuid.getMostSignificantBits() == 0 ? uuid.getLeastSignificantBits() : 0;
+		} catch (IllegalArgumentException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Set the ID of this message. Messages that do not store the ID in a field keep it as a user defined parameter.
+	 * Immutable messages throw an UnsupportedOperationException; use {@link #withMessageID(long)} for any kind of
+	 * message.
+	 */
+	default void setMessageID(long messageID) {
+		addUserDefinedParameter(MESSAGE_ID_PARAMETER, new UUID(0, messageID).toString());
+	}
+
+	/**
+	 * Set the ID of this message, as the sending agent does. Mutable messages set it on themselves, immutable messages
+	 * return a copy.
+	 * @return The message with the ID, which is this message unless it is immutable
+	 */
+	default MessageInterface withMessageID(long messageID) {
+		setMessageID(messageID);
+		return this;
+	}
 }
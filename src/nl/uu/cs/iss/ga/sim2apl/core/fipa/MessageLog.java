@@ -1,38 +1,97 @@
 package nl.uu.cs.iss.ga.sim2apl.core.fipa;
 
+import java.time.Instant;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.Performative;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
 
+/**
+ * A message that was sent or received by an agent. Logs are ordered on a logical clock, i.e. on the tick in which
+ * the message was logged and then on the sequence number the MessageLogContext of the agent assigned to it, so the
+ * order of the history of an agent only depends on the order in which its messages were logged.
+ *
+ * The wall-clock time and nanotime at which the message was logged, and the ID of the message, are kept as
+ * primitives. The ZonedDateTime and the UUID form of the ID are only created when they are requested.
+ */
 public class MessageLog implements Comparable<MessageLog> {
 
-	private ZonedDateTime time = ZonedDateTime.now();
+	/** Sequence numbers of the logs that are created without a tick, so those logs do not compare equal either. */
+	private static final AtomicLong UNSTAMPED_SEQUENCE = new AtomicLong();
+
+	private final long tick;
+	private final long sequence;
+	private final long epochMillis;
+	private final long nanoTime;
+	private final long messageID;
+	private ZonedDateTime time;
 	private UUID id;
 	private nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface message;
 	boolean received;
 
 	@Override
 	public int compareTo(MessageLog o) {
-		if (this.equals(o)) {
+		if (this == o) {
 			return 0;
-		} else {
-			int comp = ((Long) this.getTime().toInstant().toEpochMilli())
-					.compareTo(o.getTime().toInstant().toEpochMilli());
-			if (comp == 0) {
-				return this.id.compareTo(o.id); // 1;
+		}
+		int comp = Long.compare(this.tick, o.tick);
+		if (comp == 0) comp = Long.compare(this.sequence, o.sequence);
+		if (comp == 0) comp = Boolean.compare(this.received, o.received);
+		if (comp == 0 && this.message != o.message) {
+			long messageID = this.getMessageID(), otherMessageID = o.getMessageID();
+			if (messageID != 0 && otherMessageID != 0) {
+				comp = Long.compare(messageID, otherMessageID);
 			} else {
-				return comp;
+				UUID id = this.getID(), otherID = o.getID();
+				if (id != null && otherID != null) comp = id.compareTo(otherID);
 			}
 		}
+		return comp;
 	}
-	
+
+	/**
+	 * @return The ID of the message as a UUID, which for messages with a long ID is a UUID of which the most
+	 * significant bits are 0, or null if the message has no ID
+	 */
 	public UUID getID() {
+		if (this.id == null && this.message != null) {
+			if (this.messageID != 0) {
+				this.id = new UUID(0, this.messageID);
+			} else {
+				String parameter = this.message.getUserDefinedParameter(MessageInterface.MESSAGE_ID_PARAMETER);
+				if (parameter != null) this.id = UUID.fromString(parameter);
+			}
+		}
 		return id;
 	}
 
+	/** @return The ID the message had when it was logged, or 0 if it had none or its ID is not a long */
+	public long getMessageID() {
+		return this.messageID;
+	}
+
+	/** @return The tick in which the message was logged */
+	public long getTick() {
+		return this.tick;
+	}
+
+	/** @return The sequence number of the log within the history of the agent */
+	public long getSequence() {
+		return this.sequence;
+	}
+
+	/** @return The value of System.nanoTime() when the message was logged */
+	public long getNanoTime() {
+		return this.nanoTime;
+	}
+
 	public ZonedDateTime getTime() {
+		if (this.time == null) {
+			this.time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(this.epochMillis), ZoneId.systemDefault());
+		}
 		return time;
 	}
 
@@ -48,26 +107,47 @@ public class MessageLog implements Comparable<MessageLog> {
 		this.received = received;
 	}
 
-	public MessageLog(MessageInterface message, boolean received) {
+	/**
+	 * @param message  The logged message
+	 * @param received True if the message was received, false if it was sent
+	 * @param tick     The tick in which the message was logged
+	 * @param sequence Sequence number of the log within the history of the agent
+	 */
+	public MessageLog(MessageInterface message, boolean received, long tick, long sequence) {
 		this.message = message;
-		this.id = UUID.fromString(message.getUserDefinedParameter("X-messageID"));
-		this.time = ZonedDateTime.now();
 		this.received = received;
+		this.tick = tick;
+		this.sequence = sequence;
+		this.epochMillis = System.currentTimeMillis();
+		this.nanoTime = System.nanoTime();
+		this.messageID = message.getMessageID();
 	}
 
+	/**
+	 * Creates a log outside of a MessageLogContext. Such logs have no tick, so they are stamped with tick -1 and
+	 * ordered before the logs of a context, in the order in which they were created.
+	 *
+	 * @deprecated Use {@link #MessageLog(MessageInterface, boolean, long, long)} with the tick and a sequence number
+	 * of the history the log is added to, as MessageLogContext does
+	 */
+	@Deprecated
+	public MessageLog(MessageInterface message, boolean received) {
+		this(message, received, -1, UNSTAMPED_SEQUENCE.getAndIncrement());
+	}
+
+	/** Creates a log that is ordered after all other logs. */
 	public MessageLog() {
-		this.message = new ACLMessage(Performative.UNKNOWN);
-		this.time = ZonedDateTime.now();
+		this(new ACLMessage(Performative.UNKNOWN), false, Long.MAX_VALUE, Long.MAX_VALUE);
 	}
 
 	@Override
 	public boolean equals(Object obj) {
-		if (obj.getClass().equals(this.getClass()) && this.getMessage() != null && this.getMessage().equals(obj)
-				&& this.getTime().equals(((MessageLog) obj).getTime())) {
-			return true;
-		} else {
-			return false;
-		}
+		return obj instanceof MessageLog && this.compareTo((MessageLog) obj) == 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(this.tick * 31 + this.sequence) * 31 + Boolean.hashCode(this.received);
 	}
 
 }
@@ -228,6 +228,9 @@ public class ACLMessage implements Cloneable, Serializable, MessageInterface {
 
 	private Properties userDefProps = null;
 
+	/** The ID the sending agent assigned to the message, or 0 if it has none. */
+	private long messageID = 0;
+
 	private long postTimeStamp = -1;
 
 	// #CUSTOM_EXCLUDE_BEGIN
@@ -315,6 +318,15 @@ public class ACLMessage implements Cloneable, Serializable, MessageInterface {
 		setConversationId(UUID.randomUUID().toString());
 	}
 
+	/**
+	 * Creates a message with the given conversation ID, which may be null. Used by parsers, which set the conversation
+	 * ID from the parsed message and do not need a random one.
+	 */
+	ACLMessage(nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.Performative perf, String conversationId) {
+		setPerformative(perf);
+		setConversationId(conversationId);
+	}
+
 	/**
 	 * Writes the <code>:sender</code> slot. <em><b>Warning:</b> no checks are made
 	 * to validate the slot value.</em>
@@ -937,6 +949,27 @@ public class ACLMessage implements Cloneable, Serializable, MessageInterface {
 			return userDefProps.getProperty(key);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The ID is stored in a field. If it was not set, the X-messageID parameter is read, e.g. for messages that were
+	 * decoded from a string.
+	 */
+	@Override
+	public long getMessageID() {
+		return messageID != 0 ? messageID : MessageInterface.super.getMessageID();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * The ID is stored in a field instead of as a parameter.
+	 */
+	@Override
+	public void setMessageID(long messageID) {
+		this.messageID = messageID;
+	}
+
 	/**
 	 * Return all user defined parameters of this ACLMessage in form of a Properties
 	 * object
@@ -1158,6 +1191,7 @@ public class ACLMessage implements Cloneable, Serializable, MessageInterface {
 		result.conversation_id = conversation_id;
 
 		result.userDefProps = userDefProps;
+		result.messageID = messageID;
 
 		result.messageEnvelope = messageEnvelope;
 
@@ -1192,6 +1226,7 @@ public class ACLMessage implements Cloneable, Serializable, MessageInterface {
 		if (userDefProps != null) {
 			userDefProps.clear();
 		}
+		messageID = 0;
 
 		postTimeStamp = -1;
 	}
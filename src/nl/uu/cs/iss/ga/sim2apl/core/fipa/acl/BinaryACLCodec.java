@@ -0,0 +1,391 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.mts.Envelope;
+
+/**
+ * A compact binary representation of ACL messages, which is written to and read from <code>ByteBuffer</code>s
+ * directly, so messages can be encoded into the (direct) buffers of a connection without intermediate streams or
+ * arrays. Integers are written as varints, strings as their UTF-8 bytes preceded by their length, and only the slots
+ * that are present are written. The envelope is only written if the message has one.
+ * <p>
+ * AgentIDs are interned: the first time an {@link Encoder} writes an AgentID, it writes its name and assigns it the
+ * next handle, after which it only writes the handle. A {@link Decoder} assigns the same handles in the same order,
+ * so every AgentID is parsed once. An encoder and the decoder that reads its output therefore belong to one
+ * connection, must see the same messages in the same order, and must both be reset when the connection is reset.
+ * AgentIDs with addresses, resolvers or user defined slots are written in full every time.
+ * <p>
+ * As a stateless <code>ACLCodec</code>, every message is encoded with a new encoder.
+ */
+public class BinaryACLCodec implements ACLCodec {
+
+	public static final String NAME = "sim2apl.acl.rep.binary";
+
+	/** Maximum number of AgentIDs that are interned per connection. Later AgentIDs are written in full. */
+	public static final int MAX_INTERNED_IDS = 1 << 16;
+
+	// Tags of AgentIDs. Tags from FIRST_HANDLE onwards refer to an interned AgentID.
+	private static final int FULL_ID = 0;
+	private static final int NEW_ID = 1;
+	private static final int FIRST_HANDLE = 2;
+
+	// Presence flags of the slots of a message
+	private static final int SENDER = 1;
+	private static final int RECEIVERS = 1 << 1;
+	private static final int REPLY_TO = 1 << 2;
+	private static final int LANGUAGE = 1 << 3;
+	private static final int ONTOLOGY = 1 << 4;
+	private static final int ENCODING = 1 << 5;
+	private static final int PROTOCOL = 1 << 6;
+	private static final int CONVERSATION_ID = 1 << 7;
+	private static final int IN_REPLY_TO = 1 << 8;
+	private static final int REPLY_WITH = 1 << 9;
+	private static final int REPLY_BY = 1 << 10;
+	private static final int PARAMETERS = 1 << 11;
+	private static final int STRING_CONTENT = 1 << 12;
+	private static final int BYTE_CONTENT = 1 << 13;
+	private static final int ENVELOPE = 1 << 14;
+	private static final int MESSAGE_ID = 1 << 15;
+
+	@Override
+	public byte[] encode(ACLMessage msg, String charset) {
+		Encoder encoder = new Encoder();
+		for (int capacity = 256;; capacity *= 2) {
+			ByteBuffer buffer = ByteBuffer.allocate(capacity);
+			try {
+				encoder.writeMessage(msg, buffer);
+				byte[] data = new byte[buffer.position()];
+				buffer.flip().get(data);
+				return data;
+			} catch (BufferOverflowException ex) {
+				encoder.reset();
+			}
+		}
+	}
+
+	@Override
+	public ACLMessage decode(byte[] data, String charset) throws CodecException {
+		return new Decoder().readMessage(ByteBuffer.wrap(data));
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	/**
+	 * Writes messages and AgentIDs to buffers. If a buffer overflows, the position of the buffer and the interned
+	 * AgentIDs are left in an undefined state, so the caller should reset the buffer to its position before the write
+	 * and the encoder to the {@link #mark()} that was taken before it. Not thread safe.
+	 */
+	public static final class Encoder {
+		private final Map<String, Integer> handles = new HashMap<>();
+		private final ArrayList<String> names = new ArrayList<>();
+
+		/** @return The number of interned AgentIDs, to reset the encoder to if a write fails */
+		public int mark() {
+			return this.names.size();
+		}
+
+		/** Forget the AgentIDs that were interned after the mark was taken. */
+		public void reset(final int mark) {
+			for (int i = this.names.size() - 1; i >= mark; i--) {
+				this.handles.remove(this.names.remove(i));
+			}
+		}
+
+		/** Forget all interned AgentIDs, e.g. when a new connection is opened. */
+		public void reset() {
+			this.handles.clear();
+			this.names.clear();
+		}
+
+		public void writeAgentID(final AgentID id, final ByteBuffer out) {
+			if (!id.isNameOnly()) {
+				putVarint(out, FULL_ID);
+				putString(out, id.toString());
+				writeDetails(id, out);
+				return;
+			}
+			String name = id.toString();
+			Integer handle = this.handles.get(name);
+			if (handle != null) {
+				putVarint(out, handle + FIRST_HANDLE);
+			} else if (this.names.size() < MAX_INTERNED_IDS) {
+				this.handles.put(name, this.names.size());
+				this.names.add(name);
+				putVarint(out, NEW_ID);
+				putString(out, name);
+			} else {
+				putVarint(out, FULL_ID);
+				putString(out, name);
+				putVarint(out, 0);
+				putVarint(out, 0);
+				putVarint(out, 0);
+			}
+		}
+
+		private void writeDetails(final AgentID id, final ByteBuffer out) {
+			putVarint(out, id.getAddresses().size());
+			for (URL address : id.getAddresses()) {
+				putString(out, address.toString());
+			}
+			putVarint(out, id.getResolvers().size());
+			for (AgentID resolver : id.getResolvers()) {
+				writeAgentID(resolver, out);
+			}
+			writeProperties(id.getUserDefSlots(), out);
+		}
+
+		public void writeMessage(final ACLMessage msg, final ByteBuffer out) {
+			AgentID sender = msg.getSender();
+			Collection<AgentID> receivers = msg.getReceiver();
+			Collection<AgentID> replyTo = msg.getReplyTo();
+			Properties parameters = (Properties) msg.getUserDefinedProperties();
+			String content = msg.hasByteSequenceContent() ? null : msg.getContent();
+			Date replyBy = msg.getReplyByDate();
+			Envelope envelope = msg.getEnvelope();
+			long messageID = msg.getMessageID();
+
+			int flags = 0;
+			if (sender != null) flags |= SENDER;
+			if (receivers != null && !receivers.isEmpty()) flags |= RECEIVERS;
+			if (replyTo != null && !replyTo.isEmpty()) flags |= REPLY_TO;
+			if (msg.getLanguage() != null) flags |= LANGUAGE;
+			if (msg.getOntology() != null) flags |= ONTOLOGY;
+			if (msg.getEncoding() != null) flags |= ENCODING;
+			if (msg.getProtocol() != null) flags |= PROTOCOL;
+			if (msg.getConversationId() != null) flags |= CONVERSATION_ID;
+			if (msg.getInReplyTo() != null) flags |= IN_REPLY_TO;
+			if (msg.getReplyWith() != null) flags |= REPLY_WITH;
+			if (replyBy != null) flags |= REPLY_BY;
+			if (parameters != null && !parameters.isEmpty()) flags |= PARAMETERS;
+			if (msg.hasByteSequenceContent()) {
+				flags |= BYTE_CONTENT;
+			} else if (content != null) {
+				flags |= STRING_CONTENT;
+			}
+			if (envelope != null) flags |= ENVELOPE;
+			if (messageID != 0) flags |= MESSAGE_ID;
+
+			out.put((byte) msg.getPerformativeIndex());
+			putVarint(out, flags);
+			if (sender != null) writeAgentID(sender, out);
+			if ((flags & RECEIVERS) != 0) writeAgentIDs(receivers, out);
+			if ((flags & REPLY_TO) != 0) writeAgentIDs(replyTo, out);
+			if ((flags & LANGUAGE) != 0) putString(out, msg.getLanguage());
+			if ((flags & ONTOLOGY) != 0) putString(out, msg.getOntology());
+			if ((flags & ENCODING) != 0) putString(out, msg.getEncoding());
+			if ((flags & PROTOCOL) != 0) putString(out, msg.getProtocol());
+			if ((flags & CONVERSATION_ID) != 0) putString(out, msg.getConversationId());
+			if ((flags & IN_REPLY_TO) != 0) putString(out, msg.getInReplyTo());
+			if ((flags & REPLY_WITH) != 0) putString(out, msg.getReplyWith());
+			if ((flags & REPLY_BY) != 0) putVarlong(out, replyBy.getTime());
+			if ((flags & PARAMETERS) != 0) writeProperties(parameters, out);
+			if ((flags & BYTE_CONTENT) != 0) {
+				byte[] bytes = msg.getByteSequenceContent();
+				putVarint(out, bytes.length);
+				out.put(bytes);
+			} else if ((flags & STRING_CONTENT) != 0) {
+				putString(out, content);
+			}
+			if ((flags & ENVELOPE) != 0) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				envelope.encode(new DataOutputStream(bytes));
+				putVarint(out, bytes.size());
+				out.put(bytes.toByteArray());
+			}
+			if ((flags & MESSAGE_ID) != 0) putVarlong(out, messageID);
+		}
+
+		private void writeAgentIDs(final Collection<AgentID> ids, final ByteBuffer out) {
+			putVarint(out, ids.size());
+			for (AgentID id : ids) {
+				writeAgentID(id, out);
+			}
+		}
+	}
+
+	/**
+	 * Reads messages and AgentIDs from buffers that were written by an {@link Encoder}. Not thread safe.
+	 */
+	public static final class Decoder {
+		private final ArrayList<AgentID> ids = new ArrayList<>();
+		private byte[] scratch = new byte[256];
+
+		/** Forget all interned AgentIDs, e.g. when a new connection is opened. */
+		public void reset() {
+			this.ids.clear();
+		}
+
+		public AgentID readAgentID(final ByteBuffer in) throws CodecException {
+			try {
+				int tag = getVarint(in);
+				if (tag >= FIRST_HANDLE) {
+					return this.ids.get(tag - FIRST_HANDLE);
+				}
+				AgentID id = new AgentID(getString(in));
+				if (tag == NEW_ID) {
+					this.ids.add(id);
+				} else {
+					for (int i = getVarint(in); i > 0; i--) {
+						id.addAddress(getString(in));
+					}
+					for (int i = getVarint(in); i > 0; i--) {
+						id.addResolver(readAgentID(in));
+					}
+					for (int i = getVarint(in); i > 0; i--) {
+						id.addUserDefinedSlot(getString(in), getString(in));
+					}
+				}
+				return id;
+			} catch (URISyntaxException | MalformedURLException | IndexOutOfBoundsException | BufferUnderflowException ex) {
+				throw new CodecException(NAME + " AgentID decoding exception", ex);
+			}
+		}
+
+		public ACLMessage readMessage(final ByteBuffer in) throws CodecException {
+			try {
+				ACLMessage msg = new ACLMessage(in.get());
+				int flags = getVarint(in);
+				if ((flags & SENDER) != 0) msg.setSender(readAgentID(in));
+				if ((flags & RECEIVERS) != 0) {
+					for (int i = getVarint(in); i > 0; i--) {
+						msg.addReceiver(readAgentID(in));
+					}
+				}
+				if ((flags & REPLY_TO) != 0) {
+					for (int i = getVarint(in); i > 0; i--) {
+						msg.addReplyTo(readAgentID(in));
+					}
+				}
+				if ((flags & LANGUAGE) != 0) msg.setLanguage(getString(in));
+				if ((flags & ONTOLOGY) != 0) msg.setOntology(getString(in));
+				if ((flags & ENCODING) != 0) msg.setEncoding(getString(in));
+				if ((flags & PROTOCOL) != 0) msg.setProtocol(getString(in));
+				if ((flags & CONVERSATION_ID) != 0) msg.setConversationId(getString(in));
+				if ((flags & IN_REPLY_TO) != 0) msg.setInReplyTo(getString(in));
+				if ((flags & REPLY_WITH) != 0) msg.setReplyWith(getString(in));
+				if ((flags & REPLY_BY) != 0) msg.setReplyByDate(new Date(getVarlong(in)));
+				if ((flags & PARAMETERS) != 0) {
+					for (int i = getVarint(in); i > 0; i--) {
+						msg.addUserDefinedParameter(getString(in), getString(in));
+					}
+				}
+				if ((flags & BYTE_CONTENT) != 0) {
+					byte[] content = new byte[getVarint(in)];
+					in.get(content);
+					msg.setByteSequenceContent(content);
+				} else if ((flags & STRING_CONTENT) != 0) {
+					msg.setContent(getString(in));
+				}
+				if ((flags & ENVELOPE) != 0) {
+					byte[] envelope = new byte[getVarint(in)];
+					in.get(envelope);
+					msg.setEnvelope(Envelope.decode(new DataInputStream(new ByteArrayInputStream(envelope))));
+				}
+				if ((flags & MESSAGE_ID) != 0) msg.setMessageID(getVarlong(in));
+				return msg;
+			} catch (BufferUnderflowException | NegativeArraySizeException ex) {
+				throw new CodecException(NAME + " ACLMessage decoding exception", ex);
+			}
+		}
+
+		private String getString(final ByteBuffer in) {
+			int length = getVarint(in);
+			if (in.hasArray()) {
+				if (length > in.remaining()) throw new BufferUnderflowException();
+				String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+				in.position(in.position() + length);
+				return s;
+			}
+			if (this.scratch.length < length) {
+				this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+			}
+			in.get(this.scratch, 0, length);
+			return new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static void writeProperties(final Properties properties, final ByteBuffer out) {
+		putVarint(out, properties.size());
+		for (Map.Entry<Object, Object> entry : properties.entrySet()) {
+			putString(out, (String) entry.getKey());
+			putString(out, (String) entry.getValue());
+		}
+	}
+
+	/** Write a string as its UTF-8 bytes preceded by their number. ASCII strings are written without copying. */
+	private static void putString(final ByteBuffer out, final String s) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) >= 0x80) {
+				byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				putVarint(out, bytes.length);
+				out.put(bytes);
+				return;
+			}
+		}
+		putVarint(out, length);
+		if (out.remaining() < length) throw new BufferOverflowException();
+		for (int i = 0; i < length; i++) {
+			out.put((byte) s.charAt(i));
+		}
+	}
+
+	private static void putVarint(final ByteBuffer out, final int value) {
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+			out.put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.put((byte) v);
+	}
+
+	private static void putVarlong(final ByteBuffer out, final long value) {
+		long v = value;
+		while ((v & ~0x7FL) != 0) {
+			out.put((byte) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.put((byte) v);
+	}
+
+	private static int getVarint(final ByteBuffer in) {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			byte b = in.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new BufferUnderflowException();
+	}
+
+	private static long getVarlong(final ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0) return value;
+		}
+		throw new BufferUnderflowException();
+	}
+}
@@ -66,10 +66,15 @@ public class ISO8601 {
 	private static Calendar localCal = Calendar.getInstance();
 	private static Calendar utcCal = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
 
+	// UTC times from the first full Gregorian year up to year 9999 are converted without the shared calendars
+	private static final int MIN_FAST_YEAR = 1583;
+	private static final long MIN_FAST_MILLIS = daysFromCivil(MIN_FAST_YEAR, 1, 1) * 86400000L;
+	private static final long MAX_FAST_MILLIS = daysFromCivil(10000, 1, 1) * 86400000L;
+
 	/**
 	 * parse a date time token in UTC format (i.e. ending with a Z)
 	 **/
-	private static Date parseutcDateFormat(String dateTimeToken) throws Exception {
+	private synchronized static Date parseutcDateFormat(String dateTimeToken) throws Exception {
 		subparse(utcCal, dateTimeToken);
 		return utcCal.getTime();
 	}
@@ -77,7 +82,7 @@ public class ISO8601 {
 	/**
 	 * parse a date time token in local format (i.e. ending with a Z)
 	 **/
-	private static Date parselocalDateFormat(String dateTimeToken) throws Exception {
+	private synchronized static Date parselocalDateFormat(String dateTimeToken) throws Exception {
 		subparse(localCal, dateTimeToken);
 		return localCal.getTime();
 	}
@@ -92,6 +97,96 @@ public class ISO8601 {
 		cal.set(Calendar.MILLISECOND, Integer.parseInt(dateTimeToken.substring(15, 18)));
 	}
 
+	/**
+	 * Parse a UTC date time token of the form yyyyMMdd'T'HHmmssSSS'Z' with fields in their normal ranges without
+	 * allocating, which gives the same time as the lenient calendar does.
+	 *
+	 * @return The time in milliseconds, or Long.MIN_VALUE if the token is not of this form
+	 */
+	private static long parseutcMillis(String dateTimeToken) {
+		if (dateTimeToken.length() != 19 || dateTimeToken.charAt(8) != t) {
+			return Long.MIN_VALUE;
+		}
+		int year = digits(dateTimeToken, 0, 4);
+		int month = digits(dateTimeToken, 4, 6);
+		int date = digits(dateTimeToken, 6, 8);
+		int hourOfDay = digits(dateTimeToken, 9, 11);
+		int minutes = digits(dateTimeToken, 11, 13);
+		int seconds = digits(dateTimeToken, 13, 15);
+		int millis = digits(dateTimeToken, 15, 18);
+		if (year < MIN_FAST_YEAR || month < 1 || month > 12 || date < 1 || date > daysInMonth(year, month)
+				|| hourOfDay < 0 || hourOfDay > 23 || minutes < 0 || minutes > 59 || seconds < 0 || seconds > 59
+				|| millis < 0) {
+			return Long.MIN_VALUE;
+		}
+		return daysFromCivil(year, month, date) * day + hourOfDay * hour + minutes * minute + seconds * sec + millis;
+	}
+
+	/** @return The number formed by the digits in the given range, or -1 if it contains other characters */
+	private static int digits(String s, int begin, int end) {
+		int value = 0;
+		for (int i = begin; i < end; i++) {
+			char c = s.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		if (month == 2) {
+			return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+		}
+		return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+	}
+
+	/** @return The number of days from 1970-01-01 to the given date in the proleptic Gregorian calendar */
+	private static long daysFromCivil(int year, int month, int date) {
+		year -= month <= 2 ? 1 : 0;
+		int era = Math.floorDiv(year, 400);
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + date - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/** Format a UTC time between MIN_FAST_MILLIS and MAX_FAST_MILLIS without the shared calendar. */
+	private static String formatutcMillis(long millis) {
+		long days = Math.floorDiv(millis, day);
+		int millisOfDay = (int) (millis - days * day);
+		// Inverse of daysFromCivil
+		long z = days + 719468;
+		long era = Math.floorDiv(z, 146097);
+		int dayOfEra = (int) (z - era * 146097);
+		int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		int mp = (5 * dayOfYear + 2) / 153;
+		int date = dayOfYear - (153 * mp + 2) / 5 + 1;
+		int month = mp < 10 ? mp + 3 : mp - 9;
+		int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+		char[] chars = new char[19];
+		putDigits(chars, 0, 4, year);
+		putDigits(chars, 4, 2, month);
+		putDigits(chars, 6, 2, date);
+		chars[8] = t;
+		putDigits(chars, 9, 2, millisOfDay / (int) hour);
+		putDigits(chars, 11, 2, millisOfDay / (int) minute % 60);
+		putDigits(chars, 13, 2, millisOfDay / (int) sec % 60);
+		putDigits(chars, 15, 3, millisOfDay % 1000);
+		chars[18] = 'Z';
+		return new String(chars);
+	}
+
+	private static void putDigits(char[] chars, int offset, int digits, int value) {
+		for (int i = offset + digits - 1; i >= offset; i--) {
+			chars[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+	}
+
 	private static String formatlocalDate(Date d) {
 		// Initialize time
 		localCal.setTime(d);
@@ -145,7 +240,7 @@ public class ISO8601 {
 	 *             Exception if the String is not a valid dateTime
 	 * @return an absolute value of DateTime
 	 */
-	public synchronized static Date toDate(String dateTimeToken) throws Exception {
+	public static Date toDate(String dateTimeToken) throws Exception {
 		if (dateTimeToken == null)
 			return new Date();
 		char sign = dateTimeToken.charAt(0);
@@ -164,7 +259,8 @@ public class ISO8601 {
 			return (new Date(millisec));
 		} else if (dateTimeToken.endsWith(z)) {
 			// Preferred format is to pass UTC times, indicated by trailing 'Z'
-			return parseutcDateFormat(dateTimeToken);
+			long millis = parseutcMillis(dateTimeToken);
+			return millis != Long.MIN_VALUE ? new Date(millis) : parseutcDateFormat(dateTimeToken);
 		} else {
 			// Alternate format is to use local times - no trailing 'Z'
 			return parselocalDateFormat(dateTimeToken);
@@ -186,7 +282,15 @@ public class ISO8601 {
 	 * @return a String, e.g. "19640625T073000000Z" to represent 7:30AM on the 25th
 	 *         of June of 1964, UTC time.
 	 */
-	public synchronized static String toString(Date d, boolean useUTCtime) {
+	public static String toString(Date d, boolean useUTCtime) {
+		long millis = d.getTime();
+		if (useUTCtime && millis >= MIN_FAST_MILLIS && millis < MAX_FAST_MILLIS) {
+			return formatutcMillis(millis);
+		}
+		return formatDate(d, useUTCtime);
+	}
+
+	private synchronized static String formatDate(Date d, boolean useUTCtime) {
 		if (useUTCtime) {
 			// perferred style is to generate UTC times, indicated by trailing 'Z'
 			return formatutcDate(d);
@@ -34,8 +34,10 @@ import java.io.ByteArrayOutputStream;
 import java.util.Enumeration;
 import java.util.Date;
 import java.util.Properties;
+import java.util.UUID;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
 
 import java.util.Iterator;
 
@@ -127,7 +129,11 @@ public class LEAPACLCodec implements ACLCodec {
 		String replyWith = msg.getReplyWith();
 		Date replyBy = msg.getReplyByDate();
 		Properties props = msg.getAllUserDefinedParameters();
-		if (props.size() > 63) {
+		// An ID that is only kept in the field of the message is sent as the parameter MessageInterface reads it from
+		String messageID = msg.getMessageID() != 0 && msg.getUserDefinedParameter(MessageInterface.MESSAGE_ID_PARAMETER) == null
+				? new UUID(0, msg.getMessageID()).toString() : null;
+		int nProps = props.size() + (messageID != null ? 1 : 0);
+		if (nProps > 63) {
 			throw new IOException("Cannot serialize more than 63 params");
 		}
 
@@ -158,7 +164,7 @@ public class LEAPACLCodec implements ACLCodec {
 		if (replyBy != null) {
 			presence2 |= 0x80;
 		}
-		presence2 |= (props.size() & 0x3F);
+		presence2 |= (nProps & 0x3F);
 		dos.writeByte(presence1);
 		dos.writeByte(presence2);
 
@@ -192,6 +198,10 @@ public class LEAPACLCodec implements ACLCodec {
 
 		// User defined parameters
 		serializeProperties(props, dos);
+		if (messageID != null) {
+			dos.writeUTF(MessageInterface.MESSAGE_ID_PARAMETER);
+			dos.writeUTF(messageID);
+		}
 		// Receivers
 		Iterator<AgentID> it = msg.getAllReceiver();
 		while (it.hasNext()) {
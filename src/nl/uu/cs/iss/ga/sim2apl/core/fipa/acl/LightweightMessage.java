@@ -0,0 +1,444 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+
+/**
+ * An immutable message with the slots of an ACLMessage, for messages between agents on the same platform. Where an
+ * ACLMessage keeps its content in a StringBuffer, its receivers in a HashSet and its user defined parameters in
+ * Properties, all of which synchronize or allocate on access, this message keeps them in final fields and small
+ * arrays, so it is cheap to create, share and read. Receivers are kept in the order in which they were added,
+ * without duplicates.
+ *
+ * The language, ontology and protocol are canonicalized when they are set on a builder, as there are few distinct
+ * values. The canonical instance is the interned string, so the literals of templates compiled by
+ * {@link MessageTemplate#compile()} match it by identity, without folding the case of its characters, which still
+ * holds for the ACLMessage this message is converted to. At most {@link #MAX_CANONICAL_VALUES} values are kept; later
+ * values are used as they are, and are matched by their characters.
+ *
+ * Messages are created with a {@link Builder}. They are converted to an ACLMessage with {@link #toACLMessage()} where
+ * they leave the platform, e.g. by the NetNode. No slot can be set after a message is built: the sending agent
+ * assigns the ID with {@link #withMessageID(long)}, which returns a copy, and user defined parameters are added with
+ * the builder or {@link #withUserDefinedParameter(String, String)}.
+ */
+public final class LightweightMessage implements MessageInterface {
+
+	private static final String[] NO_PARAMETERS = new String[0];
+
+	/** Maximum number of distinct languages, ontologies and protocols that are canonicalized. */
+	public static final int MAX_CANONICAL_VALUES = 1024;
+	private static final ConcurrentHashMap<String, String> CANONICAL_VALUES = new ConcurrentHashMap<>();
+
+	private final Performative performative;
+	private final AgentID sender;
+	private final List<AgentID> receivers;
+	private final List<AgentID> replyTo;
+	private final String content;
+	private final byte[] byteSequenceContent;
+	private final String language;
+	private final String ontology;
+	private final String protocol;
+	private final String encoding;
+	private final String conversationId;
+	private final String replyWith;
+	private final String inReplyTo;
+	private final long replyByInMillisec;
+	/** User defined parameters, as alternating keys and values */
+	private final String[] parameters;
+	private final long messageID;
+
+	private LightweightMessage(final Builder builder) {
+		this.performative = builder.performative;
+		this.sender = builder.sender;
+		this.receivers = List.copyOf(builder.receivers);
+		this.replyTo = List.copyOf(builder.replyTo);
+		this.content = builder.content;
+		this.byteSequenceContent = builder.byteSequenceContent;
+		this.language = builder.language;
+		this.ontology = builder.ontology;
+		this.protocol = builder.protocol;
+		this.encoding = builder.encoding;
+		this.conversationId = builder.conversationId;
+		this.replyWith = builder.replyWith;
+		this.inReplyTo = builder.inReplyTo;
+		this.replyByInMillisec = builder.replyByInMillisec;
+		this.parameters = builder.parameters.isEmpty() ? NO_PARAMETERS : builder.parameters.toArray(NO_PARAMETERS);
+		this.messageID = builder.messageID;
+	}
+
+	/** @return The canonical instance of the value, or the value itself if too many values are canonicalized */
+	private static String canonical(final String value) {
+		if (value == null) return null;
+		String canonical = CANONICAL_VALUES.get(value);
+		if (canonical != null) return canonical;
+		if (CANONICAL_VALUES.size() >= MAX_CANONICAL_VALUES) return value;
+		canonical = value.intern();
+		String previous = CANONICAL_VALUES.putIfAbsent(canonical, canonical);
+		return previous == null ? canonical : previous;
+	}
+
+	/** @return A builder for a message with the given performative */
+	public static Builder builder(final Performative performative) {
+		return new Builder(performative);
+	}
+
+	/** @return A builder with all slots of this message, to create a modified copy */
+	public Builder toBuilder() {
+		Builder builder = new Builder(this.performative);
+		builder.sender = this.sender;
+		builder.receivers.addAll(this.receivers);
+		builder.replyTo.addAll(this.replyTo);
+		builder.content = this.content;
+		builder.byteSequenceContent = this.byteSequenceContent;
+		builder.language = this.language;
+		builder.ontology = this.ontology;
+		builder.protocol = this.protocol;
+		builder.encoding = this.encoding;
+		builder.conversationId = this.conversationId;
+		builder.replyWith = this.replyWith;
+		builder.inReplyTo = this.inReplyTo;
+		builder.replyByInMillisec = this.replyByInMillisec;
+		builder.parameters.addAll(Arrays.asList(this.parameters));
+		builder.messageID = this.messageID;
+		return builder;
+	}
+
+	/**
+	 * Convert an ACLMessage, e.g. one that was received from another platform. The envelope of the message is not
+	 * kept.
+	 */
+	public static LightweightMessage from(final ACLMessage msg) {
+		Builder builder = new Builder(msg.getPerformative())
+				.setSender(msg.getSender())
+				.setLanguage(msg.getLanguage())
+				.setOntology(msg.getOntology())
+				.setProtocol(msg.getProtocol())
+				.setEncoding(msg.getEncoding())
+				.setConversationId(msg.getConversationId())
+				.setReplyWith(msg.getReplyWith())
+				.setInReplyTo(msg.getInReplyTo())
+				.setReplyByDate(msg.getReplyByDate())
+				.setMessageID(msg.getMessageID());
+		if (msg.hasByteSequenceContent()) {
+			builder.setByteSequenceContent(msg.getByteSequenceContent());
+		} else {
+			builder.setContent(msg.getContent());
+		}
+		msg.getAllReceiver().forEachRemaining(builder::addReceiver);
+		msg.getAllReplyTo().forEachRemaining(builder::addReplyTo);
+		for (Map.Entry<Object, Object> parameter : msg.getAllUserDefinedParameters().entrySet()) {
+			builder.addUserDefinedParameter((String) parameter.getKey(), (String) parameter.getValue());
+		}
+		return builder.build();
+	}
+
+	/** @return An ACLMessage with the same slots and ID as this message */
+	public ACLMessage toACLMessage() {
+		ACLMessage msg = new ACLMessage(this.performative, this.conversationId);
+		msg.setSender(this.sender);
+		for (AgentID receiver : this.receivers) {
+			msg.addReceiver(receiver);
+		}
+		for (AgentID receiver : this.replyTo) {
+			msg.addReplyTo(receiver);
+		}
+		if (this.byteSequenceContent != null) {
+			msg.setByteSequenceContent(this.byteSequenceContent.clone());
+		} else {
+			msg.setContent(this.content);
+		}
+		msg.setLanguage(this.language);
+		msg.setOntology(this.ontology);
+		msg.setProtocol(this.protocol);
+		msg.setEncoding(this.encoding);
+		msg.setReplyWith(this.replyWith);
+		msg.setInReplyTo(this.inReplyTo);
+		msg.setReplyByDate(getReplyByDate());
+		for (int i = 0; i < this.parameters.length; i += 2) {
+			msg.addUserDefinedParameter(this.parameters[i], this.parameters[i + 1]);
+		}
+		msg.setMessageID(this.messageID);
+		return msg;
+	}
+
+	public Performative getPerformative() {
+		return this.performative;
+	}
+
+	@Override
+	public AgentID getSender() {
+		return this.sender;
+	}
+
+	/** @return The receivers of this message, as an unmodifiable list */
+	@Override
+	public Collection<AgentID> getReceiver() {
+		return this.receivers;
+	}
+
+	/** @return An iterator over the receivers, as ACLMessage.getAllReceiver() */
+	public Iterator<AgentID> getAllReceiver() {
+		return this.receivers.iterator();
+	}
+
+	/** @return The agents to reply to, as an unmodifiable list */
+	public Collection<AgentID> getReplyTo() {
+		return this.replyTo;
+	}
+
+	/** @return The content of this message, which for byte sequence content is the bytes as a string */
+	@Override
+	public String getContent() {
+		return this.byteSequenceContent != null ? new String(this.byteSequenceContent) : this.content;
+	}
+
+	public boolean hasByteSequenceContent() {
+		return this.byteSequenceContent != null;
+	}
+
+	/** @return A copy of the byte sequence content of this message, or null if it has none */
+	public byte[] getByteSequenceContent() {
+		return this.byteSequenceContent == null ? null : this.byteSequenceContent.clone();
+	}
+
+	public String getLanguage() {
+		return this.language;
+	}
+
+	public String getOntology() {
+		return this.ontology;
+	}
+
+	public String getProtocol() {
+		return this.protocol;
+	}
+
+	public String getEncoding() {
+		return this.encoding;
+	}
+
+	public String getConversationId() {
+		return this.conversationId;
+	}
+
+	public String getReplyWith() {
+		return this.replyWith;
+	}
+
+	public String getInReplyTo() {
+		return this.inReplyTo;
+	}
+
+	public Date getReplyByDate() {
+		return this.replyByInMillisec != 0 ? new Date(this.replyByInMillisec) : null;
+	}
+
+	@Override
+	public String getUserDefinedParameter(final String key) {
+		for (int i = 0; i < this.parameters.length; i += 2) {
+			if (this.parameters[i].equals(key)) {
+				return this.parameters[i + 1];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Not supported, as the message is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always; use {@link #withUserDefinedParameter(String, String)} instead
+	 */
+	@Override
+	public void addUserDefinedParameter(final String key, final String value) {
+		throw new UnsupportedOperationException("A LightweightMessage is immutable, use withUserDefinedParameter to add parameter " + key);
+	}
+
+	/** @return A copy of this message with the given user defined parameter */
+	@Override
+	public LightweightMessage withUserDefinedParameter(final String key, final String value) {
+		return toBuilder().addUserDefinedParameter(key, value).build();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getMessageID() {
+		return this.messageID;
+	}
+
+	/**
+	 * Not supported, as the message is immutable.
+	 *
+	 * @throws UnsupportedOperationException Always; use {@link #withMessageID(long)} instead
+	 */
+	@Override
+	public void setMessageID(final long messageID) {
+		throw new UnsupportedOperationException("A LightweightMessage is immutable, use withMessageID to set its ID");
+	}
+
+	/** @return A copy of this message with the given ID, or this message if it already has that ID */
+	@Override
+	public LightweightMessage withMessageID(final long messageID) {
+		return messageID == this.messageID ? this : toBuilder().setMessageID(messageID).build();
+	}
+
+	@Override
+	public String toString() {
+		return toACLMessage().toString();
+	}
+
+	/**
+	 * Builds LightweightMessages. The slots that are not set are null, as in an ACLMessage. A builder can be used for
+	 * more than one message, e.g. to send the same message to several agents.
+	 */
+	public static final class Builder {
+		private Performative performative;
+		private AgentID sender;
+		private final List<AgentID> receivers = new ArrayList<>(1);
+		private final List<AgentID> replyTo = new ArrayList<>(0);
+		private String content;
+		private byte[] byteSequenceContent;
+		private String language;
+		private String ontology;
+		private String protocol;
+		private String encoding;
+		private String conversationId;
+		private String replyWith;
+		private String inReplyTo;
+		private long replyByInMillisec;
+		private final List<String> parameters = new ArrayList<>(0);
+		private long messageID;
+
+		private Builder(final Performative performative) {
+			setPerformative(performative);
+		}
+
+		public Builder setPerformative(final Performative performative) {
+			if (performative == null) throw new IllegalArgumentException("The performative of a message cannot be null");
+			this.performative = performative;
+			return this;
+		}
+
+		public Builder setSender(final AgentID sender) {
+			this.sender = sender;
+			return this;
+		}
+
+		/** Add a receiver, unless it is null or already a receiver. */
+		public Builder addReceiver(final AgentID receiver) {
+			if (receiver != null && !this.receivers.contains(receiver)) {
+				this.receivers.add(receiver);
+			}
+			return this;
+		}
+
+		public Builder clearAllReceiver() {
+			this.receivers.clear();
+			return this;
+		}
+
+		/** Add an agent to reply to, unless it is null or already added. */
+		public Builder addReplyTo(final AgentID receiver) {
+			if (receiver != null && !this.replyTo.contains(receiver)) {
+				this.replyTo.add(receiver);
+			}
+			return this;
+		}
+
+		/** Set the content of the message, which replaces byte sequence content. */
+		public Builder setContent(final String content) {
+			this.content = content;
+			this.byteSequenceContent = null;
+			return this;
+		}
+
+		/** Set the content of the message to a copy of the given bytes, which replaces string content. */
+		public Builder setByteSequenceContent(final byte[] content) {
+			this.byteSequenceContent = content == null ? null : content.clone();
+			this.content = null;
+			return this;
+		}
+
+		public Builder setLanguage(final String language) {
+			this.language = canonical(language);
+			return this;
+		}
+
+		public Builder setOntology(final String ontology) {
+			this.ontology = canonical(ontology);
+			return this;
+		}
+
+		public Builder setProtocol(final String protocol) {
+			this.protocol = canonical(protocol);
+			return this;
+		}
+
+		public Builder setEncoding(final String encoding) {
+			this.encoding = encoding;
+			return this;
+		}
+
+		public Builder setConversationId(final String conversationId) {
+			this.conversationId = conversationId;
+			return this;
+		}
+
+		public Builder setReplyWith(final String replyWith) {
+			this.replyWith = replyWith;
+			return this;
+		}
+
+		public Builder setInReplyTo(final String inReplyTo) {
+			this.inReplyTo = inReplyTo;
+			return this;
+		}
+
+		public Builder setReplyByDate(final Date date) {
+			this.replyByInMillisec = date == null ? 0 : date.getTime();
+			return this;
+		}
+
+		/** Add a user defined parameter, or replace its value if it was added before. */
+		public Builder addUserDefinedParameter(final String key, final String value) {
+			if (key == null || value == null) throw new IllegalArgumentException("The key and value of a user defined parameter cannot be null");
+			for (int i = 0; i < this.parameters.size(); i += 2) {
+				if (this.parameters.get(i).equals(key)) {
+					this.parameters.set(i + 1, value);
+					return this;
+				}
+			}
+			this.parameters.add(key);
+			this.parameters.add(value);
+			return this;
+		}
+
+		public Builder removeUserDefinedParameter(final String key) {
+			for (int i = 0; i < this.parameters.size(); i += 2) {
+				if (this.parameters.get(i).equals(key)) {
+					this.parameters.subList(i, i + 2).clear();
+					break;
+				}
+			}
+			return this;
+		}
+
+		/** Set the ID of the message. Usually not needed, as the sending agent assigns the ID. */
+		public Builder setMessageID(final long messageID) {
+			this.messageID = messageID;
+			return this;
+		}
+
+		public LightweightMessage build() {
+			return new LightweightMessage(this);
+		}
+	}
+}
@@ -59,20 +59,20 @@ public class MessageTemplate implements Serializable {
 	 */
 	private static final long serialVersionUID = 1L;
 	// Names of the various fields of an ACL messages.
-	private static final int CONVERSATION_ID = 0;
-	private static final int ENCODING = 1;
-	private static final int IN_REPLY_TO = 2;
-	private static final int LANGUAGE = 3;
-	private static final int ONTOLOGY = 4;
-	private static final int PROTOCOL = 5;
-	private static final int REPLY_BY = 6;
-	private static final int REPLY_WITH = 7;
-	private static final int RECEIVER = 9;
-	private static final int REPLY_TO = 10;
-	private static final int PERFORMATIVE = 11;
-	private static final int CONTENT = 12;
-	private static final int SENDER = 13;
-	private static final int REPLY_BY_DATE = 14;
+	static final int CONVERSATION_ID = 0;
+	static final int ENCODING = 1;
+	static final int IN_REPLY_TO = 2;
+	static final int LANGUAGE = 3;
+	static final int ONTOLOGY = 4;
+	static final int PROTOCOL = 5;
+	static final int REPLY_BY = 6;
+	static final int REPLY_WITH = 7;
+	static final int RECEIVER = 9;
+	static final int REPLY_TO = 10;
+	static final int PERFORMATIVE = 11;
+	static final int CONTENT = 12;
+	static final int SENDER = 13;
+	static final int REPLY_BY_DATE = 14;
 
 	/**
 	 * This interface must be overriden in order to define an application specific
@@ -96,14 +96,14 @@ public class MessageTemplate implements Serializable {
 		boolean match(nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage msg);
 	}
 
-	private static class AndExpression implements MatchExpression {
+	static class AndExpression implements MatchExpression {
 
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = 1L;
-		private MatchExpression op1;
-		private MatchExpression op2;
+		MatchExpression op1;
+		MatchExpression op2;
 
 		public AndExpression(MatchExpression e1, MatchExpression e2) {
 			op1 = e1;
@@ -122,14 +122,14 @@ public class MessageTemplate implements Serializable {
 
 	} // End of AndExpression class
 
-	private static class OrExpression implements MatchExpression {
+	static class OrExpression implements MatchExpression {
 
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = 1L;
-		private MatchExpression op1;
-		private MatchExpression op2;
+		MatchExpression op1;
+		MatchExpression op2;
 
 		public OrExpression(MatchExpression e1, MatchExpression e2) {
 			op1 = e1;
@@ -149,12 +149,12 @@ public class MessageTemplate implements Serializable {
 
 	} // End of OrExpression class
 
-	private static class NotExpression implements MatchExpression {
+	static class NotExpression implements MatchExpression {
 		/**
 		 * 
 		 */
 		private static final long serialVersionUID = 1L;
-		private MatchExpression op;
+		MatchExpression op;
 
 		public NotExpression(MatchExpression e) {
 			op = e;
@@ -172,7 +172,7 @@ public class MessageTemplate implements Serializable {
 		}
 	} // End of NotExpression class
 
-	private static class Literal implements MatchExpression {
+	static class Literal implements MatchExpression {
 
 		/**
 		 * 
@@ -354,7 +354,7 @@ public class MessageTemplate implements Serializable {
 		// #MIDP_EXCLUDE_END
 	} // End of Literal class
 
-	private static class MatchAllLiteral implements MatchExpression {
+	static class MatchAllLiteral implements MatchExpression {
 		/**
 		 * 
 		 */
@@ -375,7 +375,7 @@ public class MessageTemplate implements Serializable {
 		}
 	}// end class MatchAllLiteral
 
-	private static class CustomMsgLiteral implements MatchExpression {
+	static class CustomMsgLiteral implements MatchExpression {
 
 		/**
 		 * 
@@ -775,6 +775,26 @@ public class MessageTemplate implements Serializable {
 		return toMatch.match(msg);
 	}
 
+	/**
+	 * Compiles this <code>MessageTemplate</code> into an equivalent one that is
+	 * faster to match. Nested <em>and</em> and <em>or</em> expressions are
+	 * flattened, their operands are ordered so that the cheapest and most
+	 * selective slots are checked first, string constants are case folded once,
+	 * and receivers are looked up in the hashed receivers of the message.
+	 * Application specific expressions are kept as they are, and are checked
+	 * after the slots, so they should not have side effects.
+	 * 
+	 * @return A new <code>MessageTemplate</code> matching the same messages.
+	 * @see MessageTemplateIndex
+	 */
+	public MessageTemplate compile() {
+		return new MessageTemplate(MessageTemplateCompiler.compile(toMatch));
+	}
+
+	MatchExpression getExpression() {
+		return toMatch;
+	}
+
 	/**
 	 * Retrieve a string representation of this message template.
 	 * 
@@ -0,0 +1,575 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.MessageTemplate.MatchExpression;
+
+/**
+ * Compiles the expression tree of a MessageTemplate into a flat predicate that matches the same messages.
+ *
+ * Nested and and or expressions become single nodes with an array of operands, which are ordered by rank: the slots
+ * that are cheap to read and most likely to reject a message are checked first. String constants are case folded
+ * once, so matching a slot folds only the characters of the message, and receivers are looked up in the hashed
+ * receivers of the message instead of being compared with each of them. Literals that would throw on every match,
+ * such as literals with a null string, and application specific expressions are kept as they are. The latter are
+ * ranked last, in their original order.
+ */
+final class MessageTemplateCompiler {
+
+	private static final int RANK_PERFORMATIVE = 0;
+	private static final int RANK_ID = 1;
+	private static final int RANK_SENDER = 2;
+	private static final int RANK_SLOT = 3;
+	private static final int RANK_RARE_SLOT = 4;
+	private static final int RANK_RECEIVERS = 5;
+	private static final int RANK_NESTED = 6;
+	private static final int RANK_CONTENT = 7;
+	private static final int RANK_CUSTOM = 8;
+
+	private static final Comparator<MatchExpression> BY_RANK = Comparator.comparingInt(MessageTemplateCompiler::rank);
+
+	private MessageTemplateCompiler() {
+	}
+
+	static MatchExpression compile(final MatchExpression expression) {
+		if (expression instanceof Compiled) {
+			return expression;
+		} else if (expression instanceof MessageTemplate.MatchAllLiteral) {
+			return Constant.TRUE;
+		} else if (expression instanceof MessageTemplate.AndExpression
+				|| expression instanceof MessageTemplate.OrExpression) {
+			return junction(expression);
+		} else if (expression instanceof MessageTemplate.NotExpression) {
+			MatchExpression operand = compile(((MessageTemplate.NotExpression) expression).op);
+			if (operand instanceof Not) {
+				return ((Not) operand).operand;
+			} else if (operand instanceof Constant) {
+				return operand == Constant.TRUE ? Constant.FALSE : Constant.TRUE;
+			}
+			return new Not(operand);
+		} else if (expression instanceof MessageTemplate.Literal) {
+			return literal((MessageTemplate.Literal) expression);
+		}
+		return expression;
+	}
+
+	private static MatchExpression junction(final MatchExpression expression) {
+		boolean and = expression instanceof MessageTemplate.AndExpression;
+		// The constant that decides the junction, i.e. false for and
+		Constant decisive = and ? Constant.FALSE : Constant.TRUE;
+		List<MatchExpression> operands = new ArrayList<>();
+		flatten(expression, and, operands);
+
+		List<MatchExpression> compiled = new ArrayList<>(operands.size());
+		for (MatchExpression operand : operands) {
+			MatchExpression c = compile(operand);
+			if (c == decisive) {
+				return decisive;
+			} else if (c instanceof Constant) {
+				continue;
+			} else if (and ? c instanceof And : c instanceof Or) {
+				// A compiled template that was combined with another
+				compiled.addAll(Arrays.asList(((Junction) c).operands));
+			} else {
+				compiled.add(c);
+			}
+		}
+		if (compiled.isEmpty()) {
+			return and ? Constant.TRUE : Constant.FALSE;
+		} else if (compiled.size() == 1) {
+			return compiled.get(0);
+		}
+		MatchExpression[] ordered = compiled.toArray(new MatchExpression[0]);
+		Arrays.sort(ordered, BY_RANK);
+		return and ? new And(ordered) : new Or(ordered);
+	}
+
+	private static void flatten(final MatchExpression expression, final boolean and, final List<MatchExpression> operands) {
+		if (and && expression instanceof MessageTemplate.AndExpression) {
+			flatten(((MessageTemplate.AndExpression) expression).op1, true, operands);
+			flatten(((MessageTemplate.AndExpression) expression).op2, true, operands);
+		} else if (!and && expression instanceof MessageTemplate.OrExpression) {
+			flatten(((MessageTemplate.OrExpression) expression).op1, false, operands);
+			flatten(((MessageTemplate.OrExpression) expression).op2, false, operands);
+		} else {
+			operands.add(expression);
+		}
+	}
+
+	private static MatchExpression literal(final MessageTemplate.Literal literal) {
+		Object value = literal.matchValue;
+		switch (literal.slotName) {
+		case MessageTemplate.PERFORMATIVE:
+			return new PerformativeIs(literal.perfIndex);
+		case MessageTemplate.CONVERSATION_ID:
+			return value == null ? literal : new SlotIs(StringSlot.CONVERSATION_ID, (String) value);
+		case MessageTemplate.IN_REPLY_TO:
+			return value == null ? literal : new SlotIs(StringSlot.IN_REPLY_TO, (String) value);
+		case MessageTemplate.REPLY_WITH:
+			return value == null ? literal : new SlotIs(StringSlot.REPLY_WITH, (String) value);
+		case MessageTemplate.PROTOCOL:
+			return value == null ? literal : new SlotIs(StringSlot.PROTOCOL, (String) value);
+		case MessageTemplate.ONTOLOGY:
+			return value == null ? literal : new SlotIs(StringSlot.ONTOLOGY, (String) value);
+		case MessageTemplate.LANGUAGE:
+			return value == null ? literal : new SlotIs(StringSlot.LANGUAGE, (String) value);
+		case MessageTemplate.ENCODING:
+			return value == null ? literal : new SlotIs(StringSlot.ENCODING, (String) value);
+		case MessageTemplate.CONTENT:
+			return value == null ? literal : new SlotIs(StringSlot.CONTENT, (String) value);
+		case MessageTemplate.SENDER:
+			return value == null ? Constant.FALSE : new SenderIs((AgentID) value);
+		case MessageTemplate.RECEIVER:
+		case MessageTemplate.REPLY_TO:
+			if (value == null) {
+				return Constant.FALSE;
+			}
+			AgentID[] receivers = (AgentID[]) value;
+			for (AgentID receiver : receivers) {
+				if (receiver == null) {
+					return literal;
+				}
+			}
+			return new ReceiversInclude(new LinkedHashSet<>(Arrays.asList(receivers)).toArray(new AgentID[0]),
+					literal.slotName == MessageTemplate.REPLY_TO);
+		case MessageTemplate.REPLY_BY_DATE:
+			return value == null ? literal : new ReplyByIs(((Date) value).getTime());
+		default:
+			return literal;
+		}
+	}
+
+	private static int rank(final MatchExpression expression) {
+		return expression instanceof Compiled ? ((Compiled) expression).rank() : RANK_CUSTOM;
+	}
+
+	/**
+	 * The performatives a compiled expression can match, used by the MessageTemplateIndex.
+	 *
+	 * @return The indices of the performatives, or null if the expression can match any performative
+	 */
+	static BitSet performatives(final MatchExpression expression) {
+		if (expression instanceof PerformativeIs) {
+			BitSet result = new BitSet();
+			result.set(((PerformativeIs) expression).index);
+			return result;
+		} else if (expression == Constant.FALSE) {
+			return new BitSet();
+		} else if (expression instanceof And) {
+			for (MatchExpression operand : ((And) expression).operands) {
+				BitSet result = performatives(operand);
+				if (result != null) {
+					return result;
+				}
+			}
+		} else if (expression instanceof Or) {
+			BitSet result = new BitSet();
+			for (MatchExpression operand : ((Or) expression).operands) {
+				BitSet operandResult = performatives(operand);
+				if (operandResult == null) {
+					return null;
+				}
+				result.or(operandResult);
+			}
+			return result;
+		}
+		return null;
+	}
+
+	/**
+	 * The conversation ID a compiled expression requires, used by the MessageTemplateIndex.
+	 *
+	 * @return The conversation ID, which is matched ignoring case, or null if the expression does not require one
+	 */
+	static String conversationId(final MatchExpression expression) {
+		if (expression instanceof SlotIs && ((SlotIs) expression).slot == StringSlot.CONVERSATION_ID) {
+			return ((SlotIs) expression).value;
+		} else if (expression instanceof And) {
+			for (MatchExpression operand : ((And) expression).operands) {
+				String result = conversationId(operand);
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		return null;
+	}
+
+	/** @return A hash code of the string that is the same for strings that are equal ignoring case */
+	static int foldedHashCode(final String s) {
+		int h = 0;
+		for (int i = 0; i < s.length(); i++) {
+			h = 31 * h + fold(s.charAt(i));
+		}
+		return h;
+	}
+
+	/**
+	 * Fold the case of a character. Two characters are equal according to String.equalsIgnoreCase if and only if
+	 * their folded characters are equal.
+	 */
+	private static char fold(final char c) {
+		if (c < 0x80) {
+			return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+		}
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static String fold(final String s) {
+		char[] chars = new char[s.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = fold(s.charAt(i));
+		}
+		return new String(chars);
+	}
+
+	/** A node of a compiled expression. */
+	private abstract static class Compiled implements MatchExpression {
+		private static final long serialVersionUID = 1L;
+
+		abstract int rank();
+	}
+
+	private static final class Constant extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		static final Constant TRUE = new Constant(true);
+		static final Constant FALSE = new Constant(false);
+
+		private final boolean value;
+
+		private Constant(final boolean value) {
+			this.value = value;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			return this.value;
+		}
+
+		@Override
+		int rank() {
+			return RANK_PERFORMATIVE;
+		}
+
+		private Object readResolve() {
+			return this.value ? TRUE : FALSE;
+		}
+
+		@Override
+		public String toString() {
+			return this.value ? "Match ALL Template" : "Match NO Template";
+		}
+	}
+
+	private abstract static class Junction extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		final MatchExpression[] operands;
+
+		Junction(final MatchExpression[] operands) {
+			this.operands = operands;
+		}
+
+		@Override
+		int rank() {
+			return RANK_NESTED;
+		}
+
+		String toString(final String operator) {
+			StringBuilder result = new StringBuilder("(");
+			for (int i = 0; i < this.operands.length; i++) {
+				result.append(i == 0 ? "" : operator).append(this.operands[i]);
+			}
+			return result.append(')').toString();
+		}
+	}
+
+	private static final class And extends Junction {
+		private static final long serialVersionUID = 1L;
+
+		And(final MatchExpression[] operands) {
+			super(operands);
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			for (MatchExpression operand : this.operands) {
+				if (!operand.match(msg)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return toString(" AND ");
+		}
+	}
+
+	private static final class Or extends Junction {
+		private static final long serialVersionUID = 1L;
+
+		Or(final MatchExpression[] operands) {
+			super(operands);
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			for (MatchExpression operand : this.operands) {
+				if (operand.match(msg)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return toString(" OR ");
+		}
+	}
+
+	private static final class Not extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		final MatchExpression operand;
+
+		Not(final MatchExpression operand) {
+			this.operand = operand;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			return !this.operand.match(msg);
+		}
+
+		@Override
+		int rank() {
+			return MessageTemplateCompiler.rank(this.operand);
+		}
+
+		@Override
+		public String toString() {
+			return "(NOT " + this.operand + ")";
+		}
+	}
+
+	private static final class PerformativeIs extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		final int index;
+
+		PerformativeIs(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			return msg.getPerformativeIndex() == this.index;
+		}
+
+		@Override
+		int rank() {
+			return RANK_PERFORMATIVE;
+		}
+
+		@Override
+		public String toString() {
+			return "( Perfomative: " + Performative.values()[this.index].name() + " )";
+		}
+	}
+
+	/** The string slots of a message that are matched ignoring case, with their rank. */
+	enum StringSlot {
+		CONVERSATION_ID(RANK_ID) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getConversationId();
+			}
+		},
+		IN_REPLY_TO(RANK_ID) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getInReplyTo();
+			}
+		},
+		REPLY_WITH(RANK_ID) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getReplyWith();
+			}
+		},
+		PROTOCOL(RANK_SLOT) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getProtocol();
+			}
+		},
+		ONTOLOGY(RANK_SLOT) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getOntology();
+			}
+		},
+		LANGUAGE(RANK_RARE_SLOT) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getLanguage();
+			}
+		},
+		ENCODING(RANK_RARE_SLOT) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getEncoding();
+			}
+		},
+		CONTENT(RANK_CONTENT) {
+			@Override
+			String get(final ACLMessage msg) {
+				return msg.getContent();
+			}
+		};
+
+		final int rank;
+
+		StringSlot(final int rank) {
+			this.rank = rank;
+		}
+
+		abstract String get(ACLMessage msg);
+	}
+
+	private static final class SlotIs extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		final StringSlot slot;
+		final String value;
+		private final String folded;
+
+		SlotIs(final StringSlot slot, final String value) {
+			this.slot = slot;
+			this.value = value.intern();
+			this.folded = fold(value).intern();
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			String actual = this.slot.get(msg);
+			if (actual == this.value) {
+				return true;
+			} else if (actual == null || actual.length() != this.folded.length()) {
+				return false;
+			}
+			for (int i = 0; i < actual.length(); i++) {
+				if (fold(actual.charAt(i)) != this.folded.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		int rank() {
+			return this.slot.rank;
+		}
+
+		@Override
+		public String toString() {
+			return "( " + this.slot + ": " + this.value + " )";
+		}
+	}
+
+	private static final class SenderIs extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		private final AgentID sender;
+
+		SenderIs(final AgentID sender) {
+			this.sender = sender;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			return this.sender.equals(msg.getSender());
+		}
+
+		@Override
+		int rank() {
+			return RANK_SENDER;
+		}
+
+		@Override
+		public String toString() {
+			return "( Sender AID: " + this.sender + ")";
+		}
+	}
+
+	private static final class ReceiversInclude extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		private final AgentID[] receivers;
+		private final boolean replyTo;
+
+		ReceiversInclude(final AgentID[] receivers, final boolean replyTo) {
+			this.receivers = receivers;
+			this.replyTo = replyTo;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			Collection<AgentID> actual = this.replyTo ? msg.getReplyTo() : msg.getReceiver();
+			for (AgentID receiver : this.receivers) {
+				if (actual == null || !actual.contains(receiver)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		int rank() {
+			return RANK_RECEIVERS;
+		}
+
+		@Override
+		public String toString() {
+			return (this.replyTo ? "( ReplyTo: " : "( Receivers: ") + Arrays.toString(this.receivers) + " )";
+		}
+	}
+
+	private static final class ReplyByIs extends Compiled {
+		private static final long serialVersionUID = 1L;
+
+		private final long millis;
+
+		ReplyByIs(final long millis) {
+			this.millis = millis;
+		}
+
+		@Override
+		public boolean match(final ACLMessage msg) {
+			Date replyBy = msg.getReplyByDate();
+			return replyBy != null && replyBy.getTime() == this.millis;
+		}
+
+		@Override
+		int rank() {
+			return RANK_RARE_SLOT;
+		}
+
+		@Override
+		public String toString() {
+			return "( ReplyByDate: " + new Date(this.millis) + " )";
+		}
+	}
+}
@@ -0,0 +1,160 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.MessageTemplate.MatchExpression;
+
+/**
+ * Routes messages to all matching message templates in one pass. Every template is compiled when it is added, and
+ * filed under the conversation ID or the performatives it requires, if any. A message is then only matched against
+ * the templates filed under its own conversation ID and performative and against the templates that require neither,
+ * instead of against all templates.
+ *
+ * Each template is added with a value, e.g. the handler of the messages it matches. The values of the matching
+ * templates are returned in the order in which the templates were added. Like the other state of an agent, an index
+ * is not thread safe.
+ *
+ * @param <V> Type of the values of the templates
+ */
+public class MessageTemplateIndex<V> {
+
+	private static final class Entry<V> {
+		final long order;
+		final MessageTemplate template;
+		final MatchExpression expression;
+		final V value;
+
+		Entry(final long order, final MessageTemplate template, final MatchExpression expression, final V value) {
+			this.order = order;
+			this.template = template;
+			this.expression = expression;
+			this.value = value;
+		}
+	}
+
+	// Entries are appended, so every list is ordered on the order of its entries
+	private final List<List<Entry<V>>> byPerformative = new ArrayList<>();
+	private final Map<Integer, List<Entry<V>>> byConversationId = new HashMap<>();
+	private final List<Entry<V>> unindexed = new ArrayList<>();
+	// All entries, once
+	private final List<Entry<V>> entries = new ArrayList<>();
+	private long added = 0;
+
+	public MessageTemplateIndex() {
+		for (int i = 0; i < Performative.values().length; i++) {
+			this.byPerformative.add(new ArrayList<>());
+		}
+	}
+
+	/**
+	 * Add a template to the index. A template may be added more than once, with the same or different values.
+	 *
+	 * @param template The template to match messages against
+	 * @param value    The value that is returned for messages that match the template
+	 */
+	public void add(final MessageTemplate template, final V value) {
+		MatchExpression expression = MessageTemplateCompiler.compile(template.getExpression());
+		Entry<V> entry = new Entry<>(this.added++, template, expression, value);
+		this.entries.add(entry);
+		String conversationId = MessageTemplateCompiler.conversationId(expression);
+		if (conversationId != null) {
+			this.byConversationId.computeIfAbsent(MessageTemplateCompiler.foldedHashCode(conversationId), k -> new ArrayList<>()).add(entry);
+			return;
+		}
+		BitSet performatives = MessageTemplateCompiler.performatives(expression);
+		if (performatives == null) {
+			this.unindexed.add(entry);
+		} else {
+			for (int i = performatives.nextSetBit(0); i >= 0 && i < this.byPerformative.size(); i = performatives.nextSetBit(i + 1)) {
+				this.byPerformative.get(i).add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Remove all occurrences of a template from the index.
+	 *
+	 * @param template The template that was added
+	 * @return True if the template was in the index
+	 */
+	public boolean remove(final MessageTemplate template) {
+		if (!this.entries.removeIf(entry -> entry.template == template)) {
+			return false;
+		}
+		this.byConversationId.values().removeIf(list -> list.removeIf(entry -> entry.template == template) && list.isEmpty());
+		this.byPerformative.forEach(list -> list.removeIf(entry -> entry.template == template));
+		this.unindexed.removeIf(entry -> entry.template == template);
+		return true;
+	}
+
+	/**
+	 * Match a message against all templates in the index.
+	 *
+	 * @param msg      The message to match
+	 * @param consumer Receives the values of the matching templates, in the order in which they were added
+	 */
+	public void match(final ACLMessage msg, final Consumer<? super V> consumer) {
+		List<Entry<V>> performative = msg.getPerformativeIndex() >= 0 && msg.getPerformativeIndex() < this.byPerformative.size()
+				? this.byPerformative.get(msg.getPerformativeIndex()) : Collections.emptyList();
+		List<Entry<V>> conversation = Collections.emptyList();
+		String conversationId = msg.getConversationId();
+		if (conversationId != null && !this.byConversationId.isEmpty()) {
+			conversation = this.byConversationId.getOrDefault(MessageTemplateCompiler.foldedHashCode(conversationId), conversation);
+		}
+
+		// Merge the three ordered lists of candidates
+		int p = 0, c = 0, u = 0;
+		while (true) {
+			long nextP = p < performative.size() ? performative.get(p).order : Long.MAX_VALUE;
+			long nextC = c < conversation.size() ? conversation.get(c).order : Long.MAX_VALUE;
+			long nextU = u < this.unindexed.size() ? this.unindexed.get(u).order : Long.MAX_VALUE;
+			Entry<V> entry;
+			if (nextP < nextC && nextP < nextU) {
+				entry = performative.get(p++);
+			} else if (nextC < nextU) {
+				entry = conversation.get(c++);
+			} else if (nextU != Long.MAX_VALUE) {
+				entry = this.unindexed.get(u++);
+			} else {
+				return;
+			}
+			if (entry.expression.match(msg)) {
+				consumer.accept(entry.value);
+			}
+		}
+	}
+
+	/**
+	 * Match a message against all templates in the index.
+	 *
+	 * @param msg The message to match
+	 * @return The values of the matching templates, in the order in which they were added
+	 */
+	public List<V> match(final ACLMessage msg) {
+		List<V> result = new ArrayList<>();
+		match(msg, result::add);
+		return result;
+	}
+
+	/** @return The number of templates in the index */
+	public int size() {
+		return this.entries.size();
+	}
+
+	public boolean isEmpty() {
+		return this.entries.isEmpty();
+	}
+
+	public void clear() {
+		this.byPerformative.forEach(List::clear);
+		this.byConversationId.clear();
+		this.unindexed.clear();
+		this.entries.clear();
+	}
+}
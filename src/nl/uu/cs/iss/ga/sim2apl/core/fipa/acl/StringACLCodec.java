@@ -27,10 +27,12 @@ package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
 import java.io.*;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.UUID;
 import java.util.logging.Level;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.FIPANames;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.logging.Loggable;
 import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 
@@ -70,6 +72,11 @@ public class StringACLCodec implements ACLCodec {
 	 **/
 	private static final String BASE64ENCODING_VALUE = "Base64";
 
+	/**
+	 * Key of the user defined parameter with the ID of the message, without the X- prefix that the parsers strip
+	 */
+	private static final String MESSAGE_ID_KEY = MessageInterface.MESSAGE_ID_PARAMETER.substring(2);
+
 	private static final String SENDER = " :sender ";
 	private static final String RECEIVER = " :receiver ";
 	private static final String CONTENT = " :content ";
@@ -110,6 +117,18 @@ public class StringACLCodec implements ACLCodec {
 		out = w;
 	}
 
+	/**
+	 * The parsers strip the X- prefix of the parameter with the ID of the message, so it is restored, after which the
+	 * message finds its ID.
+	 */
+	private void checkMessageID(ACLMessage msg) {
+		String messageID = msg.getUserDefinedParameter(MESSAGE_ID_KEY);
+		if (messageID != null && msg.getUserDefinedParameter(MessageInterface.MESSAGE_ID_PARAMETER) == null) {
+			msg.removeUserDefinedParameter(MESSAGE_ID_KEY);
+			msg.addUserDefinedParameter(MessageInterface.MESSAGE_ID_PARAMETER, messageID);
+		}
+	}
+
 	/**
 	 * if there was an automatic Base64 encoding, then it performs automatic
 	 * decoding.
@@ -156,6 +175,7 @@ public class StringACLCodec implements ACLCodec {
 		try {
 			ACLMessage msg = parser.Message();
 			checkBase64Encoding(msg);
+			checkMessageID(msg);
 			return msg;
 		} catch (TokenMgrError e1) {
 			throw new ACLCodec.CodecException(getName() + " ACLMessage decoding token exception", e1);
@@ -292,6 +312,10 @@ public class StringACLCodec implements ACLCodec {
 
 		appendACLExpression(str, CONVERSATION_ID, msg.getConversationId());
 
+		// An ID that is only kept in the field of the message is sent as a parameter
+		if (msg.getMessageID() != 0 && msg.getUserDefinedParameter(MessageInterface.MESSAGE_ID_PARAMETER) == null)
+			appendACLExpression(str, ":X-" + MESSAGE_ID_KEY, new UUID(0, msg.getMessageID()).toString());
+
 		Properties userDefProps = msg.getAllUserDefinedParameters();
 		if (userDefProps != null) {
 			Enumeration<?> e = userDefProps.propertyNames();
@@ -334,9 +358,33 @@ public class StringACLCodec implements ACLCodec {
 	 */
 	@Override
 	public ACLMessage decode(byte[] data, String charset) throws ACLCodec.CodecException {
+		String text;
+		try {
+			text = new String(data, charset);
+		} catch (UnsupportedEncodingException e) {
+			throw new ACLCodec.CodecException(getName() + " ACLMessage decoding exception", e);
+		}
+		return decode(text);
+	}
+
+	/**
+	 * Decode a message from its string representation, e.g. a line of a message trace. Messages are parsed in a
+	 * single pass by a hand-written parser, and by the JavaCC generated ACLParser if they use parts of the grammar
+	 * that the former does not handle, so both give the same message.
+	 * 
+	 * @param text The message, a String or e.g. a CharBuffer
+	 * @return the ACLMessage
+	 * @throws ACLCodec.CodecException
+	 *             if the text is not a valid message
+	 */
+	public ACLMessage decode(CharSequence text) throws ACLCodec.CodecException {
 		try {
-			ACLMessage msg = ACLParser.create().parse(new InputStreamReader(new ByteArrayInputStream(data), charset));
+			ACLMessage msg = StringACLParser.parse(text);
+			if (msg == null) {
+				msg = ACLParser.create().parse(new StringReader(text.toString()));
+			}
 			checkBase64Encoding(msg);
+			checkMessageID(msg);
 			return msg;
 		} catch (TokenMgrError e1) {
 			throw new ACLCodec.CodecException(getName() + " ACLMessage decoding token exception", e1);
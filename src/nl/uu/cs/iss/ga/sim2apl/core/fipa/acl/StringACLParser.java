@@ -0,0 +1,501 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.acl;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+
+/**
+ * A hand-written, single-pass parser for ACL messages in the FIPA string representation. It reads the characters of
+ * the message directly, without the tokens, lexical states and intermediate strings of the JavaCC generated
+ * {@link ACLParser}, and produces the same ACLMessage as that parser does.
+ *
+ * Only the unambiguous part of the grammar is handled, which covers the messages written by the StringACLCodec and by
+ * JADE. For anything else, e.g. byte length encoded strings, floating point numbers, relative dates, non-ASCII words
+ * or tokens that are not separated by whitespace, the parser gives up and returns null, so the caller can fall back to
+ * the ACLParser, which parses the message or reports why it is invalid.
+ */
+final class StringACLParser {
+
+	private static final Performative[] PERFORMATIVES = Performative.values();
+
+	/** Thrown when the message is not handled by this parser. Shared, as it has no stack trace. */
+	private static final Unsupported UNSUPPORTED = new Unsupported();
+
+	private static final int MAX_CACHED_NAMES = 4096;
+
+	/**
+	 * The URIs of the names of agents, as the same agents occur in many messages and creating their URIs dominates the
+	 * time to parse a message. The cache is cleared when it is full.
+	 */
+	private static final Map<String, URI> NAMES = new ConcurrentHashMap<>();
+
+	private final CharSequence text;
+	private final int end;
+	private int pos;
+
+	private StringACLParser(final CharSequence text) {
+		this.text = text;
+		this.end = text.length();
+	}
+
+	/**
+	 * Parse the message at the start of the text. Like the ACLParser, any text after the message is ignored.
+	 *
+	 * @param text An ACL message in the FIPA string representation
+	 * @return The parsed message, or null if the message should be parsed by the ACLParser instead
+	 */
+	static ACLMessage parse(final CharSequence text) {
+		try {
+			return new StringACLParser(text).message();
+		} catch (URISyntaxException | MalformedURLException | RuntimeException ex) {
+			return null;
+		}
+	}
+
+	private ACLMessage message() throws URISyntaxException, MalformedURLException {
+		skipWhitespace();
+		expect('(');
+		skipWhitespace();
+		ACLMessage msg = new ACLMessage(performative(), null);
+		while (true) {
+			skipWhitespace();
+			char c = next();
+			if (c == ')') {
+				return msg;
+			} else if (c != ':') {
+				throw UNSUPPORTED;
+			}
+			parameter(msg);
+		}
+	}
+
+	private Performative performative() {
+		int start = this.pos;
+		while (this.pos < this.end && this.text.charAt(this.pos) >= 'A' && this.text.charAt(this.pos) <= 'Z') {
+			this.pos++;
+		}
+		char after = peek();
+		if (!isWhitespace(after) && after != ':' && after != ')') {
+			throw UNSUPPORTED;
+		}
+		int length = this.pos - start;
+		for (Performative performative : PERFORMATIVES) {
+			String name = performative.name();
+			if (name.length() == length && regionMatches(name, start, false)) {
+				return performative;
+			}
+		}
+		throw UNSUPPORTED;
+	}
+
+	/** Parse a message parameter, of which the colon was read. */
+	private void parameter(final ACLMessage msg) throws URISyntaxException, MalformedURLException {
+		if (isUserDefined()) {
+			String key = userDefinedKey();
+			msg.addUserDefinedParameter(key, expression());
+			return;
+		}
+		int start = this.pos;
+		int length = keyword();
+		if (!isWhitespace(peek())) {
+			throw UNSUPPORTED;
+		}
+		if (is("sender", start, length)) {
+			msg.setSender(agentIdentifier());
+		} else if (is("receiver", start, length)) {
+			msg.clearAllReceiver();
+			openSet("set");
+			while (nextInSet()) {
+				msg.addReceiver(agentIdentifier());
+			}
+		} else if (is("content", start, length)) {
+			msg.setContent(content());
+		} else if (is("reply-with", start, length)) {
+			msg.setReplyWith(expression());
+		} else if (is("reply-by", start, length)) {
+			skipWhitespace();
+			int token = run();
+			if (!isDateTime(token, this.pos) || this.text.charAt(token) == '+' || this.text.charAt(token) == '-') {
+				// Relative dates depend on the time at which they are parsed
+				throw UNSUPPORTED;
+			}
+			try {
+				msg.setReplyByDate(ISO8601.toDate(this.text.subSequence(token, this.pos).toString()));
+			} catch (Exception e) {
+				// Ignored, as by the ACLParser
+			}
+		} else if (is("in-reply-to", start, length)) {
+			msg.setInReplyTo(expression());
+		} else if (is("reply-to", start, length)) {
+			msg.clearAllReplyTo();
+			openSet("set");
+			while (nextInSet()) {
+				msg.addReplyTo(agentIdentifier());
+			}
+		} else if (is("encoding", start, length)) {
+			msg.setEncoding(expression());
+		} else if (is("language", start, length)) {
+			msg.setLanguage(expression());
+		} else if (is("ontology", start, length)) {
+			msg.setOntology(expression());
+		} else if (is("protocol", start, length)) {
+			msg.setProtocol(word());
+		} else if (is("conversation-id", start, length)) {
+			msg.setConversationId(expression());
+		} else {
+			throw UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * Parse an agent identifier. The ID is created from the name, so the name has to be the first slot, which it is
+	 * in practice; the ACLParser handles the other identifiers.
+	 */
+	private AgentID agentIdentifier() throws URISyntaxException, MalformedURLException {
+		skipWhitespace();
+		expect('(');
+		skipWhitespace();
+		int start = this.pos;
+		int length = keyword();
+		if (!is("agent-identifier", start, length) || !(isWhitespace(peek()) || peek() == ':')) {
+			throw UNSUPPORTED;
+		}
+		skipWhitespace();
+		expect(':');
+		start = this.pos;
+		length = keyword();
+		if (!is("name", start, length) || !isWhitespace(peek())) {
+			throw UNSUPPORTED;
+		}
+		AgentID aid = agentID(content());
+		while (true) {
+			skipWhitespace();
+			char c = next();
+			if (c == ')') {
+				return aid;
+			} else if (c != ':') {
+				throw UNSUPPORTED;
+			}
+			if (isUserDefined()) {
+				String key = userDefinedKey();
+				aid.addUserDefinedSlot(key, expression());
+				continue;
+			}
+			start = this.pos;
+			length = keyword();
+			if (!isWhitespace(peek())) {
+				throw UNSUPPORTED;
+			}
+			if (is("name", start, length)) {
+				aid.setName(content());
+			} else if (is("addresses", start, length)) {
+				openSet("sequence");
+				while (true) {
+					skipWhitespace();
+					if (peek() == ')') {
+						this.pos++;
+						break;
+					}
+					aid.addAddress(word());
+				}
+			} else if (is("resolvers", start, length)) {
+				openSet("sequence");
+				while (nextInSet()) {
+					aid.addResolver(agentIdentifier());
+				}
+			} else {
+				throw UNSUPPORTED;
+			}
+		}
+	}
+
+	private static AgentID agentID(final String name) throws URISyntaxException {
+		URI uri = NAMES.get(name);
+		if (uri != null) {
+			return new AgentID(uri);
+		}
+		AgentID aid = AgentID.createNamed(name);
+		if (NAMES.size() >= MAX_CACHED_NAMES) {
+			NAMES.clear();
+		}
+		NAMES.put(name, aid.getName());
+		return aid;
+	}
+
+	/** Read the opening brace and the keyword of a set or sequence. */
+	private void openSet(final String keyword) {
+		skipWhitespace();
+		expect('(');
+		skipWhitespace();
+		int start = this.pos;
+		int length = keyword();
+		char after = peek();
+		if (!is(keyword, start, length) || !(isWhitespace(after) || after == '(' || after == ')')) {
+			throw UNSUPPORTED;
+		}
+	}
+
+	/** @return True if the next element of a set of agent identifiers follows, false if the set was closed */
+	private boolean nextInSet() {
+		skipWhitespace();
+		char c = peek();
+		if (c == ')') {
+			this.pos++;
+			return false;
+		} else if (c != '(') {
+			throw UNSUPPORTED;
+		}
+		return true;
+	}
+
+	/** A content is a word or a string, but not a number, date or expression. */
+	private String content() {
+		skipWhitespace();
+		char c = peek();
+		if (c == '"') {
+			return string();
+		} else if (isWordStart(c)) {
+			int start = run();
+			return unescape(start, this.pos);
+		}
+		throw UNSUPPORTED;
+	}
+
+	private String word() {
+		skipWhitespace();
+		if (!isWordStart(peek())) {
+			throw UNSUPPORTED;
+		}
+		int start = run();
+		return unescape(start, this.pos);
+	}
+
+	/** @return A word, string or number, or an expression in braces as the ACLParser writes it */
+	private String expression() {
+		skipWhitespace();
+		char c = peek();
+		if (c == '"') {
+			return string();
+		} else if (c == '(') {
+			this.pos++;
+			StringBuilder result = new StringBuilder().append('(');
+			while (true) {
+				skipWhitespace();
+				if (peek() == ')') {
+					this.pos++;
+					return result.append(')').toString();
+				}
+				result.append(expression()).append(' ');
+			}
+		} else if (isWordStart(c)) {
+			int start = run();
+			return unescape(start, this.pos);
+		} else if ((c >= '0' && c <= '9') || c == '+' || c == '-') {
+			int start = run();
+			if (isInteger(start, this.pos) || isDateTime(start, this.pos)) {
+				return this.text.subSequence(start, this.pos).toString();
+			}
+		}
+		throw UNSUPPORTED;
+	}
+
+	/**
+	 * A string token ends at the first quote that is not preceded by a backslash. Escaped quotes are unescaped, and
+	 * all other backslashes are kept, as by the ACLParser.
+	 */
+	private String string() {
+		int start = this.pos + 1;
+		for (int i = start; i < this.end; i++) {
+			if (this.text.charAt(i) == '"' && this.text.charAt(i - 1) != '\\') {
+				this.pos = i + 1;
+				char after = peek();
+				if (!isWhitespace(after) && after != '(' && after != ')') {
+					// Part of a longer word
+					throw UNSUPPORTED;
+				}
+				return unescape(start, i);
+			}
+		}
+		throw UNSUPPORTED;
+	}
+
+	/**
+	 * Read a run of word characters, which must be followed by whitespace or a brace.
+	 *
+	 * @return The start of the run
+	 */
+	private int run() {
+		int start = this.pos;
+		while (this.pos < this.end && isWordChar(this.text.charAt(this.pos))) {
+			this.pos++;
+		}
+		char after = peek();
+		if (this.pos == start || !(isWhitespace(after) || after == '(' || after == ')')) {
+			throw UNSUPPORTED;
+		}
+		return start;
+	}
+
+	/**
+	 * Read a keyword of letters and hyphens.
+	 *
+	 * @return The length of the keyword
+	 */
+	private int keyword() {
+		int start = this.pos;
+		while (this.pos < this.end && (isLetter(this.text.charAt(this.pos)) || this.text.charAt(this.pos) == '-')) {
+			this.pos++;
+		}
+		return this.pos - start;
+	}
+
+	/** @return True if the slot after the colon is user defined, i.e. starts with X- */
+	private boolean isUserDefined() {
+		return this.pos + 1 < this.end && (this.text.charAt(this.pos) | 0x20) == 'x' && this.text.charAt(this.pos + 1) == '-';
+	}
+
+	private String userDefinedKey() {
+		this.pos += 2;
+		int start = this.pos;
+		while (this.pos < this.end && isWordChar(this.text.charAt(this.pos))) {
+			this.pos++;
+		}
+		if (this.pos == start || !isWhitespace(peek())) {
+			throw UNSUPPORTED;
+		}
+		return this.text.subSequence(start, this.pos).toString();
+	}
+
+	/** Unescape quotes in the same way as the ACLParser, which also keeps a trailing backslash. */
+	private String unescape(final int start, final int end) {
+		int i = start;
+		while (i < end - 1 && !(this.text.charAt(i) == '\\' && this.text.charAt(i + 1) == '"')) {
+			i++;
+		}
+		if (i >= end - 1) {
+			return this.text.subSequence(start, end).toString();
+		}
+		StringBuilder result = new StringBuilder(end - start).append(this.text, start, i);
+		for (; i < end - 1; i++) {
+			char c = this.text.charAt(i);
+			if (c == '\\' && this.text.charAt(i + 1) == '"') {
+				result.append('"');
+				i++;
+			} else {
+				result.append(c);
+			}
+		}
+		if (i < end) {
+			result.append(this.text.charAt(end - 1));
+		}
+		return result.toString();
+	}
+
+	private boolean isInteger(int start, final int end) {
+		char c = this.text.charAt(start);
+		if (c == '+' || c == '-') {
+			start++;
+		}
+		if (start == end) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (!isDigit(this.text.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** @return True for an absolute or relative FIPA date time, e.g. 20200101T120000000Z */
+	private boolean isDateTime(int start, final int end) {
+		char c = this.text.charAt(start);
+		if (c == '+' || c == '-') {
+			start++;
+		}
+		int length = end - start;
+		if (length != 18 && length != 19) {
+			return false;
+		}
+		for (int i = 0; i < 18; i++) {
+			char d = this.text.charAt(start + i);
+			if (i == 8 ? d != 'T' : !isDigit(d)) {
+				return false;
+			}
+		}
+		return length == 18 || isLetter(this.text.charAt(end - 1));
+	}
+
+	/** @return True if the keyword of the given length at start equals the given lower case keyword, ignoring case */
+	private boolean is(final String keyword, final int start, final int length) {
+		return keyword.length() == length && regionMatches(keyword, start, true);
+	}
+
+	private boolean regionMatches(final String name, final int start, final boolean ignoreCase) {
+		for (int i = 0; i < name.length(); i++) {
+			char c = this.text.charAt(start + i);
+			char n = name.charAt(i);
+			if (c != n && !(ignoreCase && isLetter(n) && (c | 0x20) == n)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.end && isWhitespace(this.text.charAt(this.pos))) {
+			this.pos++;
+		}
+	}
+
+	private void expect(final char c) {
+		if (next() != c) {
+			throw UNSUPPORTED;
+		}
+	}
+
+	private char next() {
+		if (this.pos >= this.end) {
+			throw UNSUPPORTED;
+		}
+		return this.text.charAt(this.pos++);
+	}
+
+	/** @return The next character, or 0 at the end of the text */
+	private char peek() {
+		return this.pos < this.end ? this.text.charAt(this.pos) : 0;
+	}
+
+	private static boolean isWhitespace(final char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	private static boolean isWordChar(final char c) {
+		return c > ' ' && c < 0x7F && c != '(' && c != ')';
+	}
+
+	/** Words that could also be numbers, dates or byte length encoded strings are left to the ACLParser. */
+	private static boolean isWordStart(final char c) {
+		return isWordChar(c) && c != '"' && c != '#' && c != '+' && c != '-' && c != '.' && !isDigit(c);
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isLetter(final char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+	}
+
+	private static final class Unsupported extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		Unsupported() {
+			super("Not handled by the string ACL parser", null, false, false);
+		}
+	}
+}
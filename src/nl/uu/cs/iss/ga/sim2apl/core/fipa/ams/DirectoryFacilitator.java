@@ -215,6 +215,18 @@ public class DirectoryFacilitator extends Agent<Void> {
 					boolean asProxy = (performative == Performative.PROXY);
 					Performative replyPerformative = Performative.FAILURE;
 					
+					if (content.requestType == RequestType.KILL_AGENT) {
+						dfContext.unsubscribe(content.agentId);
+						// The agent stops providing all its services. Subscribers are only told about the services
+						// they subscribed to, and only if the agent actually provided them.
+						final Set<AgentID> serviceAgents = Set.of(content.agentId);
+						dfContext.deregisterAll(content.agentId).forEach( (service, subsAgents) ->
+							subsAgents.forEach( (subsAgent) ->
+								replySubscriber( planInterface, subsAgent, received.getConversationId(), Performative.CANCEL, service, serviceAgents )
+							)
+						);
+					}
+					
 					for (String service : content.serviceNames) {
 						
 						Set<AgentID> subsAgents = new HashSet<>();
@@ -234,17 +246,19 @@ public class DirectoryFacilitator extends Agent<Void> {
 							break;
 							
 						case SERVICE_ADD:
+							// Subscribers are only told about the new agent, and only if it did not provide the service yet.
 							subsAgents.addAll( dfContext.register(service, content.agentId) );
 							serviceAgents.add(content.agentId);
 							replyPerformative = Performative.INFORM;
 							break;
 						
 						case KILL_AGENT:
-							dfContext.unsubscribe(content.agentId);
-							// NOTE: Intentional fallthrough!
+							// NOTE: Handled above, for all services at once.
+							break;
 							
 						case SERVICE_REMOVE:
-							subsAgents.addAll( dfContext.deregister(content.agentId) );
+							// Subscribers are only told if the agent actually provided the service.
+							subsAgents.addAll( dfContext.deregister(service, content.agentId) );
 							serviceAgents.add(content.agentId);
 							replyPerformative = Performative.CANCEL;
 							break;
@@ -305,6 +319,16 @@ public class DirectoryFacilitator extends Agent<Void> {
 		}
 	}
 	
+	/**
+	 * Read-only access to the registry of this DF, for agents that search services directly instead of through
+	 * messages. Add the returned context to the arguments of those agents.
+	 *
+	 * @return A context that searches the services registered with this DF
+	 */
+	public ServiceDirectoryContext getServiceDirectory() {
+		return new ServiceDirectoryContext(getAID(), getContext(DirectoryFacilitatorContext.class));
+	}
+
 	private static SubPlanInterface<Void> handleExternalScheme(final Trigger trigger, final AgentContextInterface<Void> contextInterface) {
 		if (trigger instanceof ReceiveRemoteAddress) {
 			final AgentID remoteID = ((ReceiveRemoteAddress) trigger).getAgentID();
@@ -1,28 +1,43 @@
 package nl.uu.cs.iss.ga.sim2apl.core.fipa.ams;
 
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
 
+/**
+ * The registry of a DirectoryFacilitator. All maps and sets are concurrent, so the registry is updated by the DF
+ * without locking, while other agents search it at the same time through a {@link ServiceDirectoryContext}. Updates
+ * of a single service type or agent are atomic, but a search may see an agent under its new service type before the
+ * service type is listed under the agent.
+ *
+ * The set of a service type or agent is created when it is first used, and is removed when it becomes empty. The
+ * views returned by {@link #searchLocal(String)} and {@link #getServices(AgentID)} look up their key on each access,
+ * so they keep reflecting later (de)registrations, and searching does not add anything to the registry.
+ */
 public class DirectoryFacilitatorContext implements Context {
 
 	public final static String serviceTypeDF = "directory-facilitator";
 
-	private final static Set<String> noService = new HashSet<>();
-	private final static Set<AgentID> noAgent = new HashSet<>();
+	private final static Set<String> noService = Collections.emptySet();
+	private final static Set<AgentID> noAgent = Collections.emptySet();
 
-	private Map<String, Set<AgentID>> serviceTypeToAgent = new /* Concurrent */HashMap<>();
-	private Map<AgentID, Set<String>> agentToServiceType = new /* Concurrent */HashMap<>();
-	private Set<AgentID> otherDFs = new /* Concurrent */HashSet<>();
+	private final ConcurrentMap<String, Set<AgentID>> serviceTypeToAgent = new ConcurrentHashMap<>();
+	private final ConcurrentMap<AgentID, Set<String>> agentToServiceType = new ConcurrentHashMap<>();
+	private final Set<AgentID> otherDFs = ConcurrentHashMap.newKeySet();
 	// NOTE: keeping service-types of other DF's here is not ideal... (so we don't).
 
-	private Map<String, Set<AgentID>> subscriptionToAgent = new HashMap<>();
-	private Map<AgentID, Set<String>> agentToSubscription = new HashMap<>();
+	private final ConcurrentMap<String, Set<AgentID>> subscriptionToAgent = new ConcurrentHashMap<>();
+	private final ConcurrentMap<AgentID, Set<String>> agentToSubscription = new ConcurrentHashMap<>();
 
 	//private Map<AgentID, String> nicknames = new HashMap<>();
 	
@@ -32,15 +47,75 @@ public class DirectoryFacilitatorContext implements Context {
 		}
 	}
 
-	public synchronized void getAllServicesDisplay(Collection<String> allAgents, Map<String, String> serviceMap) {
+	// The sets in the maps are only created and removed inside compute, so an add never goes to a set that was just
+	// removed because it was empty.
+	private static <K, V> boolean add(ConcurrentMap<K, Set<V>> map, K key, V value) {
+		final boolean[] added = new boolean[1];
+		map.compute(key, (k, set) -> {
+			if (set == null) {
+				set = ConcurrentHashMap.newKeySet();
+			}
+			added[0] = set.add(value);
+			return set;
+		});
+		return added[0];
+	}
+
+	private static <K, V> boolean remove(ConcurrentMap<K, Set<V>> map, K key, V value) {
+		final boolean[] removed = new boolean[1];
+		map.computeIfPresent(key, (k, set) -> {
+			removed[0] = set.remove(value);
+			return set.isEmpty() ? null : set;
+		});
+		return removed[0];
+	}
+
+	// A copy of the set of the key, e.g. of the subscribers to notify
+	private static <K, V> Set<V> copy(Map<K, Set<V>> map, K key) {
+		Set<V> set = map.get(key);
+		return set == null ? new HashSet<>() : new HashSet<>(set);
+	}
+
+	/** An unmodifiable view of the set of a key, which looks the set up on each access. */
+	private static final class KeyView<K, V> extends AbstractSet<V> {
+		private final Map<K, Set<V>> map;
+		private final K key;
+
+		KeyView(Map<K, Set<V>> map, K key) {
+			this.map = map;
+			this.key = key;
+		}
+
+		private Set<V> set() {
+			Set<V> set = this.map.get(this.key);
+			return set == null ? Collections.emptySet() : set;
+		}
+
+		@Override
+		public int size() {
+			return set().size();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return set().contains(o);
+		}
+
+		@Override
+		public Iterator<V> iterator() {
+			return Collections.unmodifiableSet(set()).iterator();
+		}
+	}
+
+	public void getAllServicesDisplay(Collection<String> allAgents, Map<String, String> serviceMap) {
 		agentToServiceType.forEach((aid, set) -> {
 			allAgents.add(aid.toString());
 
-			String services = "";
+			StringBuilder services = new StringBuilder();
 			for (String service : set) {
-				services += " " + service;
+				services.append(' ').append(service);
 			}
-			serviceMap.put(aid.getName().toString(), services);
+			serviceMap.put(aid.getName().toString(), services.toString());
 		});
 		otherDFs.forEach((other) -> {
 			allAgents.add(other.toString());
@@ -48,92 +123,94 @@ public class DirectoryFacilitatorContext implements Context {
 		});
 	}
 
-	public synchronized void getAllSubscriptionsDisplay(Collection<String> allAgents, Map<String, String> serviceMap) {
+	public void getAllSubscriptionsDisplay(Collection<String> allAgents, Map<String, String> serviceMap) {
 		agentToSubscription.forEach((aid, set) -> {
 			allAgents.add(aid.toString());
 
-			String services = "";
+			StringBuilder services = new StringBuilder();
 			for (String service : set) {
-				services += " " + service;
+				services.append(' ').append(service);
 			}
-			serviceMap.put(aid.getName().toString(), services);
+			serviceMap.put(aid.getName().toString(), services.toString());
 		});
 	}
 
 	// Returns the set of agents that need to be notified (subscribers need to know
-	// of new services).
-	// TODO! Subscriber should be informed /which/ subscription the agent-aid it got
-	// for is a service of, in case it's subscribed to multiple services!
-	public synchronized Collection<AgentID> register(String serviceType, AgentID aid) {
-		Set<AgentID> shouldSubscribe = new HashSet<>();
-
+	// of new services). That set is empty if the agent already provided the service,
+	// so subscribers are only told about changes.
+	public Collection<AgentID> register(String serviceType, AgentID aid) {
 		if (serviceType.equals(serviceTypeDF)) {
 			otherDFs.add(aid);
 			// NOTE: The DF should act as a front for all other DF's, so no subscribers are
 			// notified here.
-		} else {
-			serviceTypeToAgent.computeIfAbsent(serviceType, (key) -> new HashSet<>()).add(aid);
-			agentToServiceType.computeIfAbsent(aid, (key) -> new HashSet<>()).add(serviceType);
-			// NOTE: Don't use 'noService' or 'noAgent' here ^^^ (instead of 'new HashSet'),
-			// it's important any new inserts are a new instance!
-
-			subscriptionToAgent.getOrDefault(serviceType, noAgent)
-					.forEach((subscriber) -> shouldSubscribe.add(subscriber));
+			return noAgent;
 		}
 
-		return shouldSubscribe;
+		boolean added = add(serviceTypeToAgent, serviceType, aid);
+		add(agentToServiceType, aid, serviceType);
+		return added ? copy(subscriptionToAgent, serviceType) : noAgent;
 	}
 
 	// Returns the set of agents that need to be notified (subscribers might want to
 	// know if a particular agent discontinues a service).
-	public synchronized Collection<AgentID> deregister(AgentID aid) {
+	public Collection<AgentID> deregister(AgentID aid) {
 		Set<AgentID> shouldNotify = new HashSet<>();
+		deregisterAll(aid).values().forEach(shouldNotify::addAll);
+		return shouldNotify;
+	}
+
+	/**
+	 * Remove an agent and all services it provides.
+	 *
+	 * @param aid The agent to remove
+	 * @return For each service the agent provided, the subscribers that need to be notified
+	 */
+	public Map<String, Set<AgentID>> deregisterAll(AgentID aid) {
+		Map<String, Set<AgentID>> shouldNotify = new HashMap<>();
 
 		otherDFs.remove(aid);
-		agentToServiceType.remove(aid).forEach((canceledService) -> {
-            shouldNotify.addAll( deregister(canceledService, aid) );
-		});
-		// NOTE: In order to remove 'empty' categories even as set, we should probably
-		// use '<map>.computeIfPresent', but the ammount of service-types is probably
-		// not going to explode, especially locally.
+		Set<String> canceledServices = agentToServiceType.remove(aid);
+		if (canceledServices != null) {
+			for (String canceledService : canceledServices) {
+				if (remove(serviceTypeToAgent, canceledService, aid)) {
+					shouldNotify.put(canceledService, copy(subscriptionToAgent, canceledService));
+				}
+			}
+		}
 
 		return shouldNotify;
 	}
 
-	public synchronized Collection<AgentID> deregister(String serviceType, AgentID aid) {
-		Set<AgentID> shouldNotify = new HashSet<>();
-		
+	// Returns the subscribers that need to be notified, which is none if the agent did not provide the service.
+	public Collection<AgentID> deregister(String serviceType, AgentID aid) {
 		if (serviceType.equals(serviceTypeDF)) {
 			otherDFs.remove(aid);
-		} else {
-			serviceTypeToAgent.getOrDefault(serviceType, noAgent).remove(aid);
-			subscriptionToAgent.getOrDefault(serviceType, noAgent).forEach((subscriber) -> shouldNotify.add(subscriber));
+			return noAgent;
 		}
-		
-		return shouldNotify;
+
+		remove(agentToServiceType, aid, serviceType);
+		return remove(serviceTypeToAgent, serviceType, aid) ? copy(subscriptionToAgent, serviceType) : noAgent;
 	}
 	
-	public synchronized Collection<AgentID> subscribe(String serviceType, AgentID aid) {
-		Set<AgentID> subscriptions = new HashSet<>();
-
-		subscriptionToAgent.computeIfAbsent(serviceType, (key) -> new HashSet<>()).add(aid);
-		agentToSubscription.computeIfAbsent(aid, (key) -> new HashSet<>()).add(serviceType);
-		// NOTE: Don't use 'noService' or 'noAgent' here ^^^ (instead of 'new HashSet'),
-		// it's important any new inserts are a new instance!
+	// Returns all agents that provide the service, which is what a new subscriber starts from. After that, it is only
+	// notified of changes.
+	public Collection<AgentID> subscribe(String serviceType, AgentID aid) {
+		add(subscriptionToAgent, serviceType, aid);
+		add(agentToSubscription, aid, serviceType);
 
-		serviceTypeToAgent.getOrDefault(serviceType, noAgent).forEach((serviceAid) -> subscriptions.add(serviceAid));
-
-		return subscriptions;
+		return copy(serviceTypeToAgent, serviceType);
 	}
 
-	public synchronized void unsubscribe(AgentID aid) {
-		agentToSubscription.remove(aid).forEach((canceledSub) -> {
-			unsubscribe(canceledSub, aid);
-		});
+	public void unsubscribe(AgentID aid) {
+		Set<String> canceledSubs = agentToSubscription.remove(aid);
+		if (canceledSubs != null) {
+			canceledSubs.forEach((canceledSub) -> remove(subscriptionToAgent, canceledSub, aid));
+		}
 	}
 
-	public synchronized void unsubscribe(String serviceType, AgentID aid) {
-		subscriptionToAgent.getOrDefault(serviceType, noAgent).remove(aid);
+	public void unsubscribe(String serviceType, AgentID aid) {
+		remove(subscriptionToAgent, serviceType, aid);
+		remove(agentToSubscription, aid, serviceType);
 	}
 	
 	// NOTE: Returns at least ALL of the possible agents that can provide that are
@@ -143,11 +220,17 @@ public class DirectoryFacilitatorContext implements Context {
 	// - Doesn't always look in other DF's (case: there's one ore more service of
 	// that type service in this DF),
 	// but what if we /do/ want /all/ agents that provide that service?
-	public synchronized Set<AgentID> searchLocal(String serviceType) {
-		return serviceTypeToAgent.getOrDefault(serviceType, noAgent);
+	// The set is an unmodifiable view, that changes when agents (de)register.
+	public Set<AgentID> searchLocal(String serviceType) {
+		return new KeyView<>(serviceTypeToAgent, serviceType);
+	}
+
+	// The services an agent provides, as an unmodifiable view.
+	public Set<String> getServices(AgentID aid) {
+		return new KeyView<>(agentToServiceType, aid);
 	}
 
-	public synchronized Set<AgentID> getOtherDFs() {
+	public Set<AgentID> getOtherDFs() {
 		return otherDFs;
 	}
 
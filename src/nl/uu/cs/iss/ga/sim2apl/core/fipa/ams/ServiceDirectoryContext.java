@@ -0,0 +1,64 @@
+package nl.uu.cs.iss.ga.sim2apl.core.fipa.ams;
+
+import java.util.Collections;
+import java.util.Set;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
+
+/**
+ * Read-only access to the registry of a local DirectoryFacilitator. An agent with this context finds the agents that
+ * provide a service directly, in the same deliberation cycle, instead of subscribing with the DF and waiting for its
+ * reply. Services are still (de)registered by sending messages to the DF, so a search reflects the registrations
+ * that the DF has handled so far.
+ *
+ * Obtain the context with {@link DirectoryFacilitator#getServiceDirectory()} and add it to the AgentArguments of the
+ * agents that need it. One context can be shared by any number of agents.
+ */
+public class ServiceDirectoryContext implements Context {
+
+	private final AgentID directoryFacilitator;
+	private final DirectoryFacilitatorContext registry;
+
+	ServiceDirectoryContext(final AgentID directoryFacilitator, final DirectoryFacilitatorContext registry) {
+		this.directoryFacilitator = directoryFacilitator;
+		this.registry = registry;
+	}
+
+	/** @return The ID of the DF whose registry is searched, to which services are (de)registered */
+	public AgentID getDirectoryFacilitator() {
+		return this.directoryFacilitator;
+	}
+
+	/**
+	 * Search the agents that provide a service on this platform. Agents registered with other DFs are not included.
+	 *
+	 * @param serviceType The type of service
+	 * @return An unmodifiable view of the agents that provide the service, which changes when agents (de)register
+	 */
+	public Set<AgentID> search(final String serviceType) {
+		return this.registry.searchLocal(serviceType);
+	}
+
+	/**
+	 * @param serviceType The type of service
+	 * @param aid         The agent
+	 * @return True if the agent provides the service
+	 */
+	public boolean provides(final String serviceType, final AgentID aid) {
+		return this.registry.searchLocal(serviceType).contains(aid);
+	}
+
+	/**
+	 * @param aid The agent
+	 * @return An unmodifiable view of the services the agent provides
+	 */
+	public Set<String> getServices(final AgentID aid) {
+		return this.registry.getServices(aid);
+	}
+
+	/** @return The other DFs that the DF knows, as an unmodifiable view */
+	public Set<AgentID> getOtherDFs() {
+		return Collections.unmodifiableSet(this.registry.getOtherDFs());
+	}
+}
@@ -1,63 +1,198 @@
 package nl.uu.cs.iss.ga.sim2apl.core.logging;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
 
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageLog;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Context;
 
+/**
+ * The history of the messages sent and received by an agent. Which messages are kept depends on the MessageLogPolicy
+ * of the agent. Logged messages are only published to subscribers if there are any.
+ *
+ * Each log is stamped with the tick in which it was created and a sequence number that increases with every log of
+ * this context, on which the history is ordered.
+ */
 public class MessageLogContext extends SubmissionPublisher<MessageLog> implements Context {
 
+	private final MessageLogPolicy policy;
+
+	/** Provides the current tick. */
+	private final LongSupplier clock;
+
+	/** The sequence number of the next log. */
+	private final AtomicLong sequence = new AtomicLong();
+
 	/** The sendMessageHistory contains the history of messages sent by the Agent */
-	private final SortedSet<MessageLog> sendMessageHistory = new ConcurrentSkipListSet<>();
-	private final Map<UUID, MessageLog> sendMessageMap = new ConcurrentHashMap<>();
+	private final History sendMessageHistory;
 
 	/**
 	 * The sendMessageHistory contains the history of messages received by the Agent
 	 */
-	private final SortedSet<MessageLog> receiveMessageHistory = new ConcurrentSkipListSet<>();
-	private final Map<UUID, MessageLog> receiveMessageMap = new ConcurrentHashMap<>();
+	private final History receiveMessageHistory;
+
+	/** Keep the full message history. */
+	public MessageLogContext() {
+		this(MessageLogPolicy.FULL);
+	}
+
+	/** @param policy Determines which messages are kept in the history */
+	public MessageLogContext(MessageLogPolicy policy) {
+		this(policy, () -> 0);
+	}
+
+	/**
+	 * @param policy Determines which messages are kept in the history
+	 * @param clock  Provides the tick the logs are stamped with
+	 */
+	public MessageLogContext(MessageLogPolicy policy, LongSupplier clock) {
+		this.policy = policy;
+		this.clock = clock;
+		this.sendMessageHistory = History.create(policy);
+		this.receiveMessageHistory = History.create(policy);
+	}
+
+	public MessageLogPolicy getPolicy() {
+		return this.policy;
+	}
 
 	public MessageLog addSentMessage(MessageInterface message) {
-		final MessageLog log = new MessageLog(message, false);
+		final MessageLog log = new MessageLog(message, false, this.clock.getAsLong(), this.sequence.getAndIncrement());
 		this.sendMessageHistory.add(log);
-		this.sendMessageMap.put(log.getID(), log);
-		this.submit(log);
+		if(this.hasSubscribers()) this.submit(log);
 		return log;
 	}
 	
+	/** @return The log of the received message, or null if the message is neither kept nor published */
 	public MessageLog addReceivedMessage(MessageInterface message) {
-		final MessageLog log = new MessageLog(message, true);
+		if(this.policy == MessageLogPolicy.OFF && !this.hasSubscribers()) return null;
+		final MessageLog log = new MessageLog(message, true, this.clock.getAsLong(), this.sequence.getAndIncrement());
 		this.receiveMessageHistory.add(log);
-		this.receiveMessageMap.put(log.getID(), log);
-		this.submit(log);
+		if(this.hasSubscribers()) this.submit(log);
 		return log;
 	}
 
 	public MessageLog getReceivedMessageLog(UUID messageID) {
-		return this.receiveMessageMap.get(messageID);
+		return this.receiveMessageHistory.get(messageID);
 	}
 	
 	public MessageLog getSentMessageLog(UUID messageID) {
-		return this.sendMessageMap.get(messageID);
+		return this.sendMessageHistory.get(messageID);
 	}
 	
 	public SortedSet<MessageLog> getMessageHistory() {
 		ConcurrentSkipListSet<MessageLog> history = new ConcurrentSkipListSet<MessageLog>();
-		history.addAll(this.receiveMessageHistory);
-		history.addAll(this.sendMessageHistory);
+		history.addAll(this.receiveMessageHistory.getSorted());
+		history.addAll(this.sendMessageHistory.getSorted());
 		return history.headSet(new MessageLog());
 	}
+
+	/** With a ring buffer, the returned set is a copy of the buffer. Otherwise, it is a view on the history. */
 	public SortedSet<MessageLog> getSentMessageHistory(){
-		return this.sendMessageHistory.headSet(new MessageLog());
+		return this.sendMessageHistory.getSorted();
 	}
+
+	/** With a ring buffer, the returned set is a copy of the buffer. Otherwise, it is a view on the history. */
 	public SortedSet<MessageLog> getReceiveMessageHistory(){
-		return this.receiveMessageHistory.headSet(new MessageLog());
+		return this.receiveMessageHistory.getSorted();
+	}
+
+	/** The logs of the messages in one direction, kept according to a policy */
+	private static abstract class History {
+		static History create(MessageLogPolicy policy) {
+			switch(policy.getMode()) {
+				case OFF: return new NoHistory();
+				case RING: return new RingHistory(policy.getCapacity());
+				default: return new FullHistory();
+			}
+		}
+
+		abstract void add(MessageLog log);
+
+		abstract MessageLog get(UUID messageID);
+
+		abstract SortedSet<MessageLog> getSorted();
+	}
+
+	private static final class NoHistory extends History {
+		@Override
+		void add(MessageLog log) {}
+
+		@Override
+		MessageLog get(UUID messageID) {
+			return null;
+		}
+
+		@Override
+		SortedSet<MessageLog> getSorted() {
+			return Collections.emptySortedSet();
+		}
+	}
+
+	private static final class FullHistory extends History {
+		private final SortedSet<MessageLog> history = new ConcurrentSkipListSet<>();
+		private final Map<UUID, MessageLog> map = new ConcurrentHashMap<>();
+
+		@Override
+		void add(MessageLog log) {
+			this.history.add(log);
+			UUID id = log.getID();
+			if(id != null) this.map.put(id, log);
+		}
+
+		@Override
+		MessageLog get(UUID messageID) {
+			return messageID == null ? null : this.map.get(messageID);
+		}
+
+		@Override
+		SortedSet<MessageLog> getSorted() {
+			return this.history.headSet(new MessageLog());
+		}
+	}
+
+	/** Keeps the last logs, evicting the oldest log once the capacity is reached */
+	private static final class RingHistory extends History {
+		private final int capacity;
+		private final ArrayDeque<MessageLog> ring;
+		private final Map<UUID, MessageLog> map;
+
+		RingHistory(int capacity) {
+			this.capacity = capacity;
+			this.ring = new ArrayDeque<>(Math.min(capacity, 16));
+			this.map = new HashMap<>();
+		}
+
+		@Override
+		synchronized void add(MessageLog log) {
+			if(this.ring.size() == this.capacity) {
+				MessageLog evicted = this.ring.removeFirst();
+				if(evicted.getID() != null) this.map.remove(evicted.getID(), evicted);
+			}
+			this.ring.addLast(log);
+			UUID id = log.getID();
+			if(id != null) this.map.put(id, log);
+		}
+
+		@Override
+		synchronized MessageLog get(UUID messageID) {
+			return this.map.get(messageID);
+		}
+
+		@Override
+		synchronized SortedSet<MessageLog> getSorted() {
+			return new TreeSet<>(this.ring);
+		}
 	}
 }
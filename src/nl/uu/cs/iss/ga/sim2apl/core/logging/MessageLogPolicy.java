@@ -0,0 +1,50 @@
+package nl.uu.cs.iss.ga.sim2apl.core.logging;
+
+/**
+ * Determines which messages the MessageLogContext of an agent keeps in its history. Agents log their full message
+ * history by default, which grows without bound during long simulations. Agents that do not query their history can
+ * turn it off, and agents that only look at recent messages can keep a ring buffer of the last messages instead.
+ *
+ * Subscribers of a MessageLogContext are notified of every logged message, regardless of the policy.
+ */
+public final class MessageLogPolicy {
+
+	public enum Mode { OFF, RING, FULL }
+
+	/** Keep no message history. */
+	public static final MessageLogPolicy OFF = new MessageLogPolicy(Mode.OFF, 0);
+
+	/** Keep all sent and received messages. */
+	public static final MessageLogPolicy FULL = new MessageLogPolicy(Mode.FULL, Integer.MAX_VALUE);
+
+	private final Mode mode;
+	private final int capacity;
+
+	private MessageLogPolicy(final Mode mode, final int capacity){
+		this.mode = mode;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Keep the last messages in a ring buffer.
+	 * @param capacity Number of sent and of received messages to keep
+	 */
+	public static MessageLogPolicy ring(final int capacity){
+		if(capacity <= 0) throw new IllegalArgumentException("The capacity of a message log ring buffer must be positive, got " + capacity);
+		return new MessageLogPolicy(Mode.RING, capacity);
+	}
+
+	public Mode getMode(){
+		return this.mode;
+	}
+
+	/** @return The number of sent and of received messages that are kept */
+	public int getCapacity(){
+		return this.capacity;
+	}
+
+	@Override
+	public String toString(){
+		return this.mode == Mode.RING ? "RING(" + this.capacity + ")" : this.mode.name();
+	}
+}
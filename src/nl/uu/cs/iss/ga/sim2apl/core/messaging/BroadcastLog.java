@@ -0,0 +1,138 @@
+package nl.uu.cs.iss.ga.sim2apl.core.messaging;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An append-only log of broadcast messages, which agents read lazily instead of each receiving a copy of every
+ * broadcast in their message queue. Each agent keeps a cursor into the log, which is the sequence number of the next
+ * broadcast it has not yet read. All agents share the same message objects, so received broadcasts should not be
+ * modified.
+ *
+ * Each broadcast is stamped with the tick in which it is appended. The first broadcast of a new tick discards the
+ * broadcasts of all earlier ticks except the tick of the previous broadcast, so a broadcast is kept for at least one
+ * full tick after it was sent, and the log only holds the broadcasts of two ticks. Active agents read the log in
+ * every deliberation cycle, and agents that are asleep are woken up by the next broadcast, so every agent has read a
+ * broadcast by the time it is discarded. Broadcasts that an agent did not read before they were discarded are skipped.
+ *
+ * An agent that goes to sleep registers with the log, after which the next broadcast wakes it up. The agents that are
+ * awake are not notified of broadcasts, so the cost of a broadcast does not depend on the number of agents.
+ *
+ * Appending is synchronized, while reading is lock free, so many agents can read the log concurrently.
+ */
+public final class BroadcastLog {
+	private static final MessageInterface[] EMPTY = new MessageInterface[0];
+
+	/** The broadcasts that are currently kept. Replaced when it is full or when broadcasts are discarded. */
+	private volatile Segment segment = new Segment(0, EMPTY, 0);
+	/** Tick of the last broadcast, or -1 if nothing was broadcast yet. */
+	private long tick = -1;
+	/** Sequence number of the first broadcast of that tick. */
+	private long mark = 0;
+	/** Agents that have read all broadcasts and went to sleep, to be woken up by the next broadcast. */
+	private Set<Agent<?>> sleepers = new LinkedHashSet<>();
+
+	/**
+	 * Append a broadcast to the log, and wake up the agents that are asleep
+	 *
+	 * @param message The broadcast
+	 * @param tick    The current tick
+	 */
+	public void append(final MessageInterface message, final long tick){
+		Set<Agent<?>> sleepers;
+		synchronized(this){
+			if(tick > this.tick){
+				// Broadcasts of the previous tick are kept during this tick, older ones have been kept for a full tick
+				discardBefore(tick == this.tick + 1 ? this.mark : end());
+				this.tick = tick;
+				this.mark = end();
+			}
+			Segment segment = this.segment;
+			int size = segment.size;
+			if(size == segment.messages.length){
+				segment = new Segment(segment.start, Arrays.copyOf(segment.messages, Math.max(16, size * 2)), size);
+				this.segment = segment;
+			}
+			segment.messages[size] = message;
+			// Publishes the message to readers
+			segment.size = size + 1;
+
+			if(this.sleepers.isEmpty()) return;
+			sleepers = this.sleepers;
+			this.sleepers = new LinkedHashSet<>();
+		}
+		for(Agent<?> agent : sleepers){
+			agent.broadcastReceived();
+		}
+	}
+
+	/** Discard all broadcasts with a sequence number before the given one. Requires the lock of the log. */
+	private void discardBefore(final long discard){
+		Segment segment = this.segment;
+		if(discard > segment.start){
+			int from = (int) (discard - segment.start);
+			int size = segment.size - from;
+			MessageInterface[] kept = size == 0 ? EMPTY : Arrays.copyOfRange(segment.messages, from, from + Math.max(16, size));
+			this.segment = new Segment(discard, kept, size);
+		}
+	}
+
+	/**
+	 * Register an agent that goes to sleep, so it is woken up by the next broadcast. An agent that has not read all
+	 * broadcasts yet should not go to sleep, and is not registered.
+	 *
+	 * @param agent  The agent that goes to sleep
+	 * @param cursor The cursor of the agent
+	 * @return       True iff the agent has read all broadcasts, and will be woken up by the next broadcast
+	 */
+	public synchronized boolean wakeOnNextBroadcast(final Agent<?> agent, final long cursor){
+		if(cursor < end()) return false;
+		this.sleepers.add(agent);
+		return true;
+	}
+
+	/** Stop waking up the agent on the next broadcast, e.g. because it was removed from the messenger. */
+	public synchronized void removeSleeper(final Agent<?> agent){
+		this.sleepers.remove(agent);
+	}
+
+	/** @return The sequence number the next broadcast will get. A new reader should start reading from here. */
+	public long end(){
+		Segment segment = this.segment;
+		return segment.start + segment.size;
+	}
+
+	/**
+	 * Read all broadcasts from the given cursor onwards
+	 *
+	 * @param cursor   Sequence number of the first broadcast to read
+	 * @param messages Collection to add the broadcasts to, in the order in which they were appended
+	 * @return         The cursor to read from the next time
+	 */
+	public long read(final long cursor, final Collection<? super MessageInterface> messages){
+		Segment segment = this.segment;
+		int size = segment.size;
+		for(long i = Math.max(cursor, segment.start) - segment.start; i < size; i++){
+			messages.add(segment.messages[(int) i]);
+		}
+		return segment.start + size;
+	}
+
+	private static final class Segment {
+		/** Sequence number of the first message of the segment. */
+		private final long start;
+		private final MessageInterface[] messages;
+		private volatile int size;
+
+		private Segment(final long start, final MessageInterface[] messages, final int size){
+			this.start = start;
+			this.messages = messages;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package nl.uu.cs.iss.ga.sim2apl.core.messaging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The default message ID generator. An ID packs the ID of the platform into its highest 16 bits, and a sequence
+ * number into the remaining 48 bits. Threads claim blocks of sequence numbers from a shared counter and hand them
+ * out from a thread-local block, so generating an ID requires neither a lock nor an allocation, and the shared counter
+ * is only updated once per block.
+ *
+ * Message IDs are only unique among platforms with different platform IDs.
+ */
+public final class DefaultMessageIDGenerator implements MessageIDGenerator {
+
+	/** Number of sequence numbers a thread claims at once. */
+	private static final int BLOCK_SIZE = 1024;
+	private static final int SEQUENCE_BITS = 48;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	private final long platformBits;
+
+	/** Start of the next block of sequence numbers. Starts at 1, so no ID is 0. */
+	private final AtomicLong nextBlock = new AtomicLong(1);
+
+	/** The next and the end of the block of sequence numbers of each thread. */
+	private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+	/** @param platformID ID of the platform, of which the lowest 16 bits are used */
+	public DefaultMessageIDGenerator(final int platformID){
+		this.platformBits = (platformID & 0xFFFFL) << SEQUENCE_BITS;
+	}
+
+	@Override
+	public long nextMessageID(){
+		long[] block = this.block.get();
+		if(block[0] == block[1]){
+			block[0] = this.nextBlock.getAndAdd(BLOCK_SIZE);
+			block[1] = block[0] + BLOCK_SIZE;
+		}
+		return this.platformBits | (block[0]++ & SEQUENCE_MASK);
+	}
+}
@@ -0,0 +1,15 @@
+package nl.uu.cs.iss.ga.sim2apl.core.messaging;
+
+/**
+ * Generates the IDs that agents assign to the messages they send. IDs are positive longs that are unique within a
+ * simulation, so they can identify a message in the message history of an agent. An ID of 0 means that a message
+ * does not have an ID.
+ *
+ * Implementations are called concurrently by all agents that send messages.
+ */
+@FunctionalInterface
+public interface MessageIDGenerator {
+
+	/** @return A new, unique message ID other than 0 */
+	long nextMessageID();
+}
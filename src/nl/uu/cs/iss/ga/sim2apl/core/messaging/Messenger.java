@@ -6,6 +6,9 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentDeathListener;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.MessageReceiverNotFoundException;
 
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Implement a messenger to allow agents to communicate with each other.
  * 
@@ -16,6 +19,14 @@ public interface Messenger<T extends MessageInterface, X> extends AgentDeathList
 	/** Intended to make the messenger aware of the agents' existence. Registering is required for the agent to send and receive messages. */
 	public void register(final Agent<X> agent);
 	
+	/** Registers a number of agents at once, e.g. after they have been created in bulk. Messengers that can register 
+	 * agents in a single pass should override this method, which registers the agents one by one. */
+	public default void registerAll(final Collection<? extends Agent<X>> agents){
+		for(Agent<X> agent : agents){
+			register(agent);
+		}
+	}
+	
 	/** Deregister to announce that this agent will no longer listen to messages that are received (will also disable the possiblity for sending messages). */
 	public void deregister(final nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID agentID);
 	
@@ -30,6 +41,14 @@ public interface Messenger<T extends MessageInterface, X> extends AgentDeathList
 	 * messenger to agent interface. */
 	public void deliverMessage(final T message) throws MessageReceiverNotFoundException;
 	
+	/** Delivers a number of messages to the same receiver, in the given order. Messengers that can find the receiver 
+	 * once for all messages should override this method, which delivers the messages one by one. */
+	public default void deliverMessages(final AgentID receiver, final List<? extends T> messages) throws MessageReceiverNotFoundException {
+		for(T message : messages){
+			deliverMessage(receiver, message);
+		}
+	}
+	
 	public boolean implementsEncoding();
 	
 	public byte[] encodeMessage(final T message) throws UnsupportedOperationException;
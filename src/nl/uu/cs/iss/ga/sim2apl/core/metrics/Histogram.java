@@ -0,0 +1,96 @@
+package nl.uu.cs.iss.ga.sim2apl.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative values (typically durations in nanoseconds) with one bucket per power of two.
+ * Recording a value only requires a few atomic additions, so it can be used from many threads concurrently.
+ * Quantiles are approximated by the upper bound of the bucket they fall in, i.e. within a factor of two.
+ */
+public final class Histogram {
+
+	private final AtomicLongArray buckets = new AtomicLongArray(64);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Add a value to this histogram
+	 * @param value	Value to record. Negative values are recorded as 0
+	 */
+	public void record(long value) {
+		if(value < 0) value = 0;
+		this.buckets.incrementAndGet(bucketOf(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+
+		long currentMax;
+		while(value > (currentMax = this.max.get())) {
+			if(this.max.compareAndSet(currentMax, value)) break;
+		}
+	}
+
+	/**
+	 * Obtain the recorded values, and reset this histogram. Values that are recorded concurrently are either part of
+	 * the snapshot or of the next one, but the count and the buckets of a snapshot may differ slightly in that case.
+	 *
+	 * @return	A snapshot of the values recorded since the previous snapshot
+	 */
+	public Snapshot snapshotAndReset() {
+		long[] counts = new long[64];
+		for(int i = 0; i < counts.length; i++) {
+			if(this.buckets.get(i) != 0) counts[i] = this.buckets.getAndSet(i, 0);
+		}
+		return new Snapshot(counts, this.count.getAndSet(0), this.sum.getAndSet(0), this.max.getAndSet(0));
+	}
+
+	private static int bucketOf(long value) {
+		return value == 0 ? 0 : 63 - Long.numberOfLeadingZeros(value);
+	}
+
+	/** The values recorded by a histogram during some period */
+	public static final class Snapshot {
+		private final long[] buckets;
+		private final long count, sum, max;
+
+		private Snapshot(long[] buckets, long count, long sum, long max) {
+			this.buckets = buckets;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+
+		public long getSum() {
+			return this.sum;
+		}
+
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * @param quantile	Quantile between 0 and 1
+		 * @return			Upper bound of the bucket that contains the quantile, or 0 if no values were recorded
+		 */
+		public long getQuantile(double quantile) {
+			long total = 0;
+			for(long c : this.buckets) total += c;
+			if(total == 0) return 0;
+
+			long rank = (long) Math.ceil(quantile * total);
+			long seen = 0;
+			for(int i = 0; i < this.buckets.length; i++) {
+				seen += this.buckets[i];
+				if(seen >= rank && this.buckets[i] > 0) {
+					return Math.min(this.max, i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1);
+				}
+			}
+			return this.max;
+		}
+	}
+}
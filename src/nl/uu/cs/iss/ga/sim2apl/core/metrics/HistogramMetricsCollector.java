@@ -0,0 +1,229 @@
+package nl.uu.cs.iss.ga.sim2apl.core.metrics;
+
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A metrics collector that keeps a histogram of nanosecond durations for each phase of the tick pipeline, each
+ * deliberation step class and each agent class, and exports these after every tick, after which they are reset.
+ *
+ * In CSV format, one row is written per metric per tick, with the columns
+ * <code>tick,metric,key,count,sum_ns,p50_ns,p90_ns,p99_ns,max_ns</code>. Counters (plan scheme match attempts,
+ * messages delivered, active and sleeping agents) only fill the count column. In JSON format, one JSON object is
+ * written per tick, on a single line.
+ *
+ * When a PipelinedSimulationEngine is used, the sense-reason phase of the next tick overlaps with the post-tick hooks,
+ * so the step measurements of that phase can be exported with either of the two ticks.
+ */
+public class HistogramMetricsCollector implements MetricsCollector {
+
+	/** Output format of the collector **/
+	public enum Format { CSV, JSON }
+
+	private final Writer out;
+	private final Format format;
+	private boolean headerWritten = false;
+
+	private final Histogram preHooks = new Histogram();
+	private final Histogram deliberation = new Histogram();
+	private final Histogram postHooks = new Histogram();
+	private final Map<Class<?>, Histogram> steps = new ConcurrentHashMap<>();
+	private final Map<Class<?>, Histogram> agents = new ConcurrentHashMap<>();
+	private final LongAdder planSchemeMatchAttempts = new LongAdder();
+	private final LongAdder messagesDelivered = new LongAdder();
+	private volatile int activeAgents = 0;
+	private volatile int registeredAgents = 0;
+
+	/**
+	 * @param out		Writer to export the metrics of each tick to. The writer is closed when the simulation finishes
+	 * @param format	Format to export the metrics in
+	 */
+	public HistogramMetricsCollector(Writer out, Format format) {
+		this.out = out;
+		this.format = format;
+	}
+
+	/**
+	 * @param file		File to export the metrics of each tick to. The file is overwritten if it already exists
+	 * @param format	Format to export the metrics in
+	 * @throws IOException If the file can not be opened for writing
+	 */
+	public HistogramMetricsCollector(Path file, Format format) throws IOException {
+		this(Files.newBufferedWriter(file), format);
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return true;
+	}
+
+	@Override
+	public void recordPreHooks(long tick, long nanos) {
+		this.preHooks.record(nanos);
+	}
+
+	@Override
+	public void recordDeliberation(long tick, long nanos) {
+		this.deliberation.record(nanos);
+	}
+
+	@Override
+	public void recordPostHooks(long tick, long nanos) {
+		this.postHooks.record(nanos);
+	}
+
+	@Override
+	public void recordDeliberationStep(Class<?> step, long nanos) {
+		this.steps.computeIfAbsent(step, s -> new Histogram()).record(nanos);
+	}
+
+	@Override
+	public void recordAgentDeliberation(Class<?> agent, long nanos) {
+		this.agents.computeIfAbsent(agent, a -> new Histogram()).record(nanos);
+	}
+
+	@Override
+	public void recordPlanSchemeMatchAttempts(int attempts) {
+		this.planSchemeMatchAttempts.add(attempts);
+	}
+
+	@Override
+	public void recordMessagesDelivered(int messages) {
+		this.messagesDelivered.add(messages);
+	}
+
+	@Override
+	public void recordActiveAgents(long tick, int agents) {
+		this.activeAgents = agents;
+	}
+
+	@Override
+	public void recordRegisteredAgents(long tick, int agents) {
+		this.registeredAgents = agents;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Exports the measurements of the tick, and resets all histograms and counters.
+	 */
+	@Override
+	public synchronized void tickFinished(long tick) {
+		int active = this.activeAgents;
+		int sleeping = Math.max(0, this.registeredAgents - active);
+		try {
+			if(this.format == Format.CSV) {
+				writeCsv(tick, active, sleeping);
+			} else {
+				writeJson(tick, active, sleeping);
+			}
+			this.out.flush();
+		} catch (IOException e) {
+			Platform.getLogger().log(getClass(), e);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Closes the writer the metrics are exported to.
+	 */
+	@Override
+	public synchronized void simulationFinished() {
+		try {
+			this.out.close();
+		} catch (IOException e) {
+			Platform.getLogger().log(getClass(), e);
+		}
+	}
+
+	private void writeCsv(long tick, int active, int sleeping) throws IOException {
+		if(!this.headerWritten) {
+			this.out.write("tick,metric,key,count,sum_ns,p50_ns,p90_ns,p99_ns,max_ns\n");
+			this.headerWritten = true;
+		}
+		writeCsvRow(tick, "pre_hooks", "", this.preHooks.snapshotAndReset());
+		writeCsvRow(tick, "deliberation", "", this.deliberation.snapshotAndReset());
+		writeCsvRow(tick, "post_hooks", "", this.postHooks.snapshotAndReset());
+		for(Map.Entry<String, Histogram.Snapshot> step : snapshotAndReset(this.steps).entrySet()) {
+			writeCsvRow(tick, "step", step.getKey(), step.getValue());
+		}
+		for(Map.Entry<String, Histogram.Snapshot> agent : snapshotAndReset(this.agents).entrySet()) {
+			writeCsvRow(tick, "agent", agent.getKey(), agent.getValue());
+		}
+		writeCsvCounter(tick, "plan_scheme_match_attempts", this.planSchemeMatchAttempts.sumThenReset());
+		writeCsvCounter(tick, "messages_delivered", this.messagesDelivered.sumThenReset());
+		writeCsvCounter(tick, "active_agents", active);
+		writeCsvCounter(tick, "sleeping_agents", sleeping);
+	}
+
+	private void writeCsvRow(long tick, String metric, String key, Histogram.Snapshot snapshot) throws IOException {
+		this.out.write(tick + "," + metric + "," + key + "," + snapshot.getCount() + "," + snapshot.getSum() + "," +
+				snapshot.getQuantile(.5) + "," + snapshot.getQuantile(.9) + "," + snapshot.getQuantile(.99) + "," +
+				snapshot.getMax() + "\n");
+	}
+
+	private void writeCsvCounter(long tick, String metric, long value) throws IOException {
+		this.out.write(tick + "," + metric + ",," + value + ",,,,,\n");
+	}
+
+	private void writeJson(long tick, int active, int sleeping) throws IOException {
+		StringBuilder json = new StringBuilder("{\"tick\":").append(tick);
+		json.append(",\"preHooks\":");
+		appendJson(json, this.preHooks.snapshotAndReset());
+		json.append(",\"deliberation\":");
+		appendJson(json, this.deliberation.snapshotAndReset());
+		json.append(",\"postHooks\":");
+		appendJson(json, this.postHooks.snapshotAndReset());
+		json.append(",\"steps\":");
+		appendJson(json, snapshotAndReset(this.steps));
+		json.append(",\"agents\":");
+		appendJson(json, snapshotAndReset(this.agents));
+		json.append(",\"planSchemeMatchAttempts\":").append(this.planSchemeMatchAttempts.sumThenReset());
+		json.append(",\"messagesDelivered\":").append(this.messagesDelivered.sumThenReset());
+		json.append(",\"activeAgents\":").append(active);
+		json.append(",\"sleepingAgents\":").append(sleeping);
+		json.append("}\n");
+		this.out.write(json.toString());
+	}
+
+	private static void appendJson(StringBuilder json, Map<String, Histogram.Snapshot> snapshots) {
+		json.append('{');
+		boolean first = true;
+		for(Map.Entry<String, Histogram.Snapshot> snapshot : snapshots.entrySet()) {
+			if(!first) json.append(',');
+			json.append('"').append(snapshot.getKey()).append("\":");
+			appendJson(json, snapshot.getValue());
+			first = false;
+		}
+		json.append('}');
+	}
+
+	private static void appendJson(StringBuilder json, Histogram.Snapshot snapshot) {
+		json.append("{\"count\":").append(snapshot.getCount())
+				.append(",\"sumNs\":").append(snapshot.getSum())
+				.append(",\"p50Ns\":").append(snapshot.getQuantile(.5))
+				.append(",\"p90Ns\":").append(snapshot.getQuantile(.9))
+				.append(",\"p99Ns\":").append(snapshot.getQuantile(.99))
+				.append(",\"maxNs\":").append(snapshot.getMax())
+				.append('}');
+	}
+
+	/** Snapshot all histograms that recorded values since the last snapshot, sorted on the name of their key */
+	private static Map<String, Histogram.Snapshot> snapshotAndReset(Map<Class<?>, Histogram> histograms) {
+		Map<String, Histogram.Snapshot> snapshots = new TreeMap<>();
+		for(Map.Entry<Class<?>, Histogram> histogram : histograms.entrySet()) {
+			Histogram.Snapshot snapshot = histogram.getValue().snapshotAndReset();
+			if(snapshot.getCount() > 0) snapshots.put(histogram.getKey().getName(), snapshot);
+		}
+		return snapshots;
+	}
+}
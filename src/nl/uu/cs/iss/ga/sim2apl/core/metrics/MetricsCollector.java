@@ -0,0 +1,86 @@
+package nl.uu.cs.iss.ga.sim2apl.core.metrics;
+
+/**
+ * Service provider interface for collecting performance metrics of the tick pipeline. The collector in use is
+ * obtained through <code>Platform.getMetrics()</code>, and can be replaced with <code>Platform.setMetrics()</code>.
+ * By default, the NullMetricsCollector is used, which discards all measurements.
+ *
+ * All durations are in nanoseconds. Methods that record measurements of individual agents are called concurrently
+ * from the threads executing the agents, and should therefore be thread safe and cheap. Measurements that are not
+ * explicitly tied to a tick belong to the tick that is finished next.
+ */
+public interface MetricsCollector {
+
+	/**
+	 * Callers check this before taking measurements, so no time is spent on measuring if metrics are not collected
+	 * @return True iff this collector records measurements
+	 */
+	boolean isEnabled();
+
+	/**
+	 * @param tick	The tick that is about to start
+	 * @param nanos	Time spent in the pre-tick hooks of all tick hook processors
+	 */
+	void recordPreHooks(long tick, long nanos);
+
+	/**
+	 * @param tick	The tick that was executed
+	 * @param nanos	Wall time the tick executor spent executing the deliberation cycles of all agents
+	 */
+	void recordDeliberation(long tick, long nanos);
+
+	/**
+	 * @param tick	The tick that has finished
+	 * @param nanos	Time spent in the post-tick hooks of all tick hook processors
+	 */
+	void recordPostHooks(long tick, long nanos);
+
+	/**
+	 * @param step	The class of the deliberation step that was executed
+	 * @param nanos	Time spent in a single execution of the deliberation step by a single agent
+	 */
+	void recordDeliberationStep(Class<?> step, long nanos);
+
+	/**
+	 * @param agent	The class of the agent whose deliberation cycle was executed
+	 * @param nanos	Time spent in a single deliberation cycle of a single agent
+	 */
+	void recordAgentDeliberation(Class<?> agent, long nanos);
+
+	/**
+	 * @param attempts	Number of times a plan scheme was matched against a trigger while applying plan schemes
+	 */
+	void recordPlanSchemeMatchAttempts(int attempts);
+
+	/**
+	 * @param messages	Number of messages delivered to agents
+	 */
+	void recordMessagesDelivered(int messages);
+
+	/**
+	 * @param tick		The tick that was executed
+	 * @param agents	Number of agents whose deliberation cycle was executed during the tick
+	 */
+	void recordActiveAgents(long tick, int agents);
+
+	/**
+	 * @param tick		The tick that has finished
+	 * @param agents	Number of agents registered on the platform. Agents that are registered but were not active
+	 *                  during the tick are sleeping
+	 */
+	void recordRegisteredAgents(long tick, int agents);
+
+	/**
+	 * Called after the post-tick hooks of a tick have finished. Implementations can use this to export and reset
+	 * the measurements of the tick.
+	 *
+	 * @param tick	The tick that has finished
+	 */
+	void tickFinished(long tick);
+
+	/**
+	 * Called when the simulation has finished, so any remaining measurements can be exported and resources can be
+	 * released.
+	 */
+	void simulationFinished();
+}
@@ -0,0 +1,45 @@
+package nl.uu.cs.iss.ga.sim2apl.core.metrics;
+
+/**
+ * This metrics collector discards all measurements. Since it is not enabled, callers do not take any measurements.
+ */
+public class NullMetricsCollector implements MetricsCollector {
+
+	@Override
+	public boolean isEnabled() {
+		return false;
+	}
+
+	@Override
+	public void recordPreHooks(long tick, long nanos) { }
+
+	@Override
+	public void recordDeliberation(long tick, long nanos) { }
+
+	@Override
+	public void recordPostHooks(long tick, long nanos) { }
+
+	@Override
+	public void recordDeliberationStep(Class<?> step, long nanos) { }
+
+	@Override
+	public void recordAgentDeliberation(Class<?> agent, long nanos) { }
+
+	@Override
+	public void recordPlanSchemeMatchAttempts(int attempts) { }
+
+	@Override
+	public void recordMessagesDelivered(int messages) { }
+
+	@Override
+	public void recordActiveAgents(long tick, int agents) { }
+
+	@Override
+	public void recordRegisteredAgents(long tick, int agents) { }
+
+	@Override
+	public void tickFinished(long tick) { }
+
+	@Override
+	public void simulationFinished() { }
+}
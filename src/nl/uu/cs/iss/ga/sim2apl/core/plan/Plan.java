@@ -75,18 +75,21 @@ public abstract class Plan<T> {
 	public abstract T execute(final PlanToAgentInterface<T> planInterface) throws PlanExecutionError;
 	
 
-	/** Token to indicate that an instantiate method for a plan was not fired by a trigger.*/
-//	public static Plan<?> UNINSTANTIATED = new Plan<>(){ @Override
-//		public final Object execute(final PlanToAgentInterface<Object> planInterface) throws PlanExecutionError {return null;}
-//	};
+	/** Token to indicate that an instantiate method for a plan was not fired by a trigger. A single instance is
+	 * shared by all plan schemes, so failing to match a trigger does not create a new plan object. */
+	@SuppressWarnings("rawtypes")
+	private static final Plan UNINSTANTIATED = new Plan(){ @Override
+		public final Object execute(final PlanToAgentInterface planInterface) throws PlanExecutionError {return null;}
+	};
 
+	@SuppressWarnings("unchecked")
 	public static <T> Plan<T> UNINSTANTIATED() {
-		return new Plan<T>() {
-			@Override
-			public T execute(PlanToAgentInterface<T> planInterface) throws PlanExecutionError {
-				return null;
-			}
-		};
+		return (Plan<T>) UNINSTANTIATED;
+	}
+
+	/** Returns true iff the provided plan is the token that indicates a plan scheme was not fired by a trigger. */
+	public static boolean isUninstantiated(final Plan<?> plan){
+		return plan == UNINSTANTIATED;
 	}
 
 
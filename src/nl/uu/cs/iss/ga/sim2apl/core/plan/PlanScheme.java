@@ -20,4 +20,14 @@ public interface PlanScheme<T> {
 	 * @return Plan.uninstantiated() iff the plan scheme is not relevant and applicable, otherwise the plan to be scheduled for execution in the current deliberation cycle.
 	 */
 	Plan<T> instantiate(final Trigger trigger, final AgentContextInterface<T> contextInterface);
+	
+	/**
+	 * The class of triggers this plan scheme handles. The default deliberation steps only offer a trigger 
+	 * to the plan schemes whose trigger class the trigger is an instance of, which saves the 
+	 * instantiation attempts of irrelevant plan schemes. By default, a plan scheme handles all triggers.
+	 * @return The class of triggers that may instantiate this plan scheme.
+	 */
+	default Class<? extends Trigger> getTriggerClass(){
+		return Trigger.class;
+	}
 }
\ No newline at end of file
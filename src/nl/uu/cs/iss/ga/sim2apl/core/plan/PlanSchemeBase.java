@@ -1,5 +1,6 @@
 package nl.uu.cs.iss.ga.sim2apl.core.plan;
   
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List; 
 /**
@@ -16,6 +17,9 @@ public final class PlanSchemeBase<T> {
 								   externalTriggerPlanSchemes,	// Equivalent of PC rules that have an external trigger as head
 								   messagePlanSchemes;			// Equivalent of PC rules that have a message as head
 	
+	/** Dispatch indices that offer each trigger only to the plan schemes that handle its class. */
+	private final PlanSchemeIndex<T> goalPlanSchemeIndex, internalTriggerPlanSchemeIndex, externalTriggerPlanSchemeIndex, messagePlanSchemeIndex;
+	
 	/**
 	 * Creates a plan scheme base with the provided plans. Note that adding/removing a plan scheme from
 	 *  a list that is provided as an argument will NOT add/remove that PlanScheme to/from the plan scheme base
@@ -29,10 +33,18 @@ public final class PlanSchemeBase<T> {
 						  final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T>> internalTriggerPlanSchemes,
 						  final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T>> externalTriggerPlanSchemes,
 						  final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T>> messagePlanSchemes){
-		this.goalPlanSchemes = goalPlanSchemes.isEmpty()? Collections.emptyList() : Collections.unmodifiableList(goalPlanSchemes);
-		this.internalTriggerPlanSchemes = internalTriggerPlanSchemes.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(internalTriggerPlanSchemes);
-		this.externalTriggerPlanSchemes = externalTriggerPlanSchemes.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(externalTriggerPlanSchemes);
-		this.messagePlanSchemes = messagePlanSchemes.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(messagePlanSchemes);
+		this.goalPlanSchemes = copy(goalPlanSchemes);
+		this.internalTriggerPlanSchemes = copy(internalTriggerPlanSchemes);
+		this.externalTriggerPlanSchemes = copy(externalTriggerPlanSchemes);
+		this.messagePlanSchemes = copy(messagePlanSchemes);
+		this.goalPlanSchemeIndex = new PlanSchemeIndex<>(this.goalPlanSchemes);
+		this.internalTriggerPlanSchemeIndex = new PlanSchemeIndex<>(this.internalTriggerPlanSchemes);
+		this.externalTriggerPlanSchemeIndex = new PlanSchemeIndex<>(this.externalTriggerPlanSchemes);
+		this.messagePlanSchemeIndex = new PlanSchemeIndex<>(this.messagePlanSchemes);
+	}
+	
+	private static <T> List<PlanScheme<T>> copy(final List<PlanScheme<T>> planSchemes){
+		return planSchemes.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(planSchemes));
 	}
 
 	// Return new lists so that deliberation cannot accidentally change the plan scheme lists
@@ -41,4 +53,9 @@ public final class PlanSchemeBase<T> {
 	public final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T>> getInternalTriggerPlanSchemes(){ return this.internalTriggerPlanSchemes; }
 	public final List<nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme<T>> getExternalTriggerPlanSchemes(){ return this.externalTriggerPlanSchemes; }
 	public final List<PlanScheme<T>> getMessagePlanSchemes(){ return this.messagePlanSchemes; }
+	
+	public final PlanSchemeIndex<T> getGoalPlanSchemeIndex(){ return this.goalPlanSchemeIndex; }
+	public final PlanSchemeIndex<T> getInternalTriggerPlanSchemeIndex(){ return this.internalTriggerPlanSchemeIndex; }
+	public final PlanSchemeIndex<T> getExternalTriggerPlanSchemeIndex(){ return this.externalTriggerPlanSchemeIndex; }
+	public final PlanSchemeIndex<T> getMessagePlanSchemeIndex(){ return this.messagePlanSchemeIndex; }
 } 
\ No newline at end of file
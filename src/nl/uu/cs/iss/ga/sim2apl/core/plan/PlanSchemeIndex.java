@@ -0,0 +1,68 @@
+package nl.uu.cs.iss.ga.sim2apl.core.plan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+
+/**
+ * Dispatch index over an ordered list of plan schemes. Plan schemes can declare the class of the triggers they
+ * handle through <code>PlanScheme.getTriggerClass()</code>. The index offers each trigger only to the plan schemes
+ * whose declared class the trigger is an instance of, in the order in which the plan schemes were declared.
+ *
+ * As plan schemes may declare a super class or interface of the triggers they handle, the relevant plan schemes are
+ * selected the first time a trigger of some class is offered, after which that selection is reused for all triggers
+ * of the same class. If no plan scheme declares a trigger class, every trigger is offered to all plan schemes.
+ */
+public final class PlanSchemeIndex<T> {
+	/** All plan schemes, in declaration order. */
+	private final List<PlanScheme<T>> planSchemes;
+	/** Whether any of the plan schemes only handles a specific class of triggers. */
+	private final boolean indexed;
+	/** The relevant plan schemes for each class of trigger that has been offered so far. */
+	private final ConcurrentHashMap<Class<?>, List<PlanScheme<T>>> index;
+
+	/**
+	 * @param planSchemes Unmodifiable list of plan schemes, in the order in which they should be tried
+	 */
+	PlanSchemeIndex(final List<PlanScheme<T>> planSchemes){
+		this.planSchemes = planSchemes;
+		boolean indexed = false;
+		for(PlanScheme<T> planScheme : planSchemes){
+			if(planScheme.getTriggerClass() != Trigger.class){
+				indexed = true;
+				break;
+			}
+		}
+		this.indexed = indexed;
+		this.index = indexed ? new ConcurrentHashMap<>() : null;
+	}
+
+	/** Get all plan schemes in this index, in declaration order. */
+	public final List<PlanScheme<T>> getPlanSchemes(){ return this.planSchemes; }
+
+	/**
+	 * Get the plan schemes that are relevant for a trigger, in declaration order.
+	 * @param trigger Trigger that must be processed
+	 * @return Unmodifiable list of the plan schemes that handle the class of the trigger
+	 */
+	public final List<PlanScheme<T>> getPlanSchemes(final Trigger trigger){
+		if(!this.indexed || trigger == null) return this.planSchemes;
+		List<PlanScheme<T>> relevant = this.index.get(trigger.getClass());
+		if(relevant == null) relevant = this.index.computeIfAbsent(trigger.getClass(), this::select);
+		return relevant;
+	}
+
+	/** Select the plan schemes that handle the provided class of triggers. */
+	private List<PlanScheme<T>> select(final Class<?> triggerClass){
+		List<PlanScheme<T>> relevant = new ArrayList<>();
+		for(PlanScheme<T> planScheme : this.planSchemes){
+			if(planScheme.getTriggerClass().isAssignableFrom(triggerClass)){
+				relevant.add(planScheme);
+			}
+		}
+		return relevant.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(relevant);
+	}
+}
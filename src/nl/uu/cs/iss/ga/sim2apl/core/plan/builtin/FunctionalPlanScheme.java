@@ -21,7 +21,7 @@ public final class FunctionalPlanScheme<T> implements PlanScheme<T> {
 	@Override
 	public final Plan<T> instantiate(final Trigger trigger, final AgentContextInterface<T> contextInterface){
 		SubPlanInterface<T> plan = this.myInterface.getPlan(trigger, contextInterface);
-		if(plan.equals(SubPlanInterface.UNINSTANTIATED())) return Plan.UNINSTANTIATED();
+		if(plan == SubPlanInterface.UNINSTANTIATED) return Plan.UNINSTANTIATED();
 		else return new RunOncePlan<>() {
 			@Override
 			public final T executeOnce(final PlanToAgentInterface<T> planInterface)
@@ -11,15 +11,14 @@ import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanExecutionError;
 public interface SubPlanInterface<T> {
 	/** Specification of the plan to be executed. */
 	public T execute(final PlanToAgentInterface<T> planInterface) throws PlanExecutionError;
-	/** A token that indicates that whatever scheme tries to make an interface did not fire. */ 
-//	public final static SubPlanInterface<? extends Object> UNINSTANTIATED = new SubPlanInterface(){@Override
-//	public final T execute(final PlanToAgentInterface<T> planInterface){return null;}};
+	/** A token that indicates that whatever scheme tries to make an interface did not fire. Use 
+	 * <code>UNINSTANTIATED()</code> to obtain it with the right type. */ 
+	@SuppressWarnings("rawtypes")
+	public final static SubPlanInterface UNINSTANTIATED = new SubPlanInterface(){@Override
+	public final Object execute(final PlanToAgentInterface planInterface){return null;}};
+
+	@SuppressWarnings("unchecked")
 	public static <T> SubPlanInterface<T> UNINSTANTIATED() {
-		return new SubPlanInterface<T>() {
-			@Override
-			public T execute(PlanToAgentInterface<T> planInterface) throws PlanExecutionError {
-				return null;
-			}
-		};
+		return (SubPlanInterface<T>) UNINSTANTIATED;
 	}
 }
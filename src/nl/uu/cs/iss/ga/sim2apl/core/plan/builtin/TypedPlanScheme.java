@@ -0,0 +1,35 @@
+package nl.uu.cs.iss.ga.sim2apl.core.plan.builtin;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentContextInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Trigger;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.Plan;
+import nl.uu.cs.iss.ga.sim2apl.core.plan.PlanScheme;
+
+/**
+ * A plan scheme that declares the class of triggers it handles on behalf of another plan scheme.
+ * The default deliberation steps only offer triggers of that class to the plan scheme, so the
+ * wrapped plan scheme does not have to check the class of the trigger itself.
+ */
+public final class TypedPlanScheme<T> implements PlanScheme<T> {
+	private final Class<? extends Trigger> triggerClass;
+	private final PlanScheme<T> planScheme;
+
+	public TypedPlanScheme(final Class<? extends Trigger> triggerClass, final PlanScheme<T> planScheme){
+		if(triggerClass == null) throw new IllegalArgumentException("Trying to create a plan scheme without a trigger class.");
+		this.triggerClass = triggerClass;
+		this.planScheme = planScheme;
+	}
+
+	/** Instantiates the wrapped plan scheme if the trigger is of the declared class. Custom deliberation
+	 * steps may still offer other triggers, hence the check. */
+	@Override
+	public final Plan<T> instantiate(final Trigger trigger, final AgentContextInterface<T> contextInterface){
+		if(!this.triggerClass.isInstance(trigger)) return Plan.UNINSTANTIATED();
+		return this.planScheme.instantiate(trigger, contextInterface);
+	}
+
+	@Override
+	public final Class<? extends Trigger> getTriggerClass(){
+		return this.triggerClass;
+	}
+}
@@ -0,0 +1,642 @@
+package nl.uu.cs.iss.ga.sim2apl.core.platform;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The registry of the agents that are local to a platform. Agents are stored in dense arrays, so the registry only
+ * needs a few array entries per agent instead of several map entry objects. An agent is found through the handle of
+ * its ID in a primitive open-addressing table, and through the UUID of its ID in a second table that is keyed on the
+ * two longs of the UUID, so IDs without a handle and plain UUIDs can be looked up without creating strings.
+ *
+ * Agents whose ID does not have a UUID as local name are indexed on a name-based UUID of that name, which is
+ * deterministic per name.
+ *
+ * Lookups use optimistic reads of a StampedLock, and only take the read lock if a modification happened
+ * concurrently. The collections returned by <code>getIDs</code>, <code>getIDSet</code> and <code>asMap</code> are
+ * snapshots that do not copy anything: they wrap the current arrays up to the current size. Registering an agent
+ * only writes past that size, and removing an agent, which moves the last agent into its slot, first copies the
+ * arrays if a snapshot still wraps them, so a snapshot is not affected by later (de)registrations. Snapshots are
+ * searched through the indexes of the registry, as long as no agent has been removed since they were taken.
+ */
+@SuppressWarnings("rawtypes")
+public final class AgentRegistry {
+
+    private final StampedLock lock = new StampedLock();
+
+    /** Dense arrays with the registered agents. Slots 0 to size - 1 are in use. */
+    private AgentID[] ids;
+    private Agent[] agents;
+    private int[] handles;
+    private long[] uuidMsbs, uuidLsbs;
+    private volatile int size = 0;
+    /** True if a snapshot wraps the arrays with IDs and agents, so they are copied before a slot below size changes */
+    private volatile boolean shared;
+
+    /** Slot of each agent by the handle of its ID */
+    private HandleTable handleIndex;
+    /** Slot of each agent by the UUID of its ID */
+    private UuidTable uuidIndex;
+
+    /**
+     * @param expectedAgents Number of agents the registry is expected to hold, so it does not have to grow
+     */
+    public AgentRegistry(int expectedAgents) {
+        int capacity = Math.max(16, expectedAgents);
+        this.ids = new AgentID[capacity];
+        this.agents = new Agent[capacity];
+        this.handles = new int[capacity];
+        this.uuidMsbs = new long[capacity];
+        this.uuidLsbs = new long[capacity];
+        this.handleIndex = new HandleTable(tableCapacity(capacity));
+        this.uuidIndex = new UuidTable(tableCapacity(capacity));
+    }
+
+    /**
+     * Register an agent. An agent that is registered under the same UUID or handle is replaced.
+     *
+     * @param agent Agent to register. Its ID should carry the handle the platform assigned to it
+     */
+    public void register(Agent agent) {
+        AgentID id = agent.getAID();
+        UUID uuid = uuidOf(checkHandle(id).getUuID());
+
+        long stamp = this.lock.writeLock();
+        try {
+            insert(agent, uuid);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Register a number of agents at once, e.g. after they have been created in bulk. The agents are registered in
+     * the order of the collection, as if each was registered with <code>register</code>, but the write lock is only
+     * taken once.
+     *
+     * @param agents Agents to register. Their IDs should carry the handles the platform assigned to them
+     */
+    public void registerAll(Collection<? extends Agent> agents) {
+        // Name-based UUIDs are hashed outside of the lock
+        UUID[] uuids = new UUID[agents.size()];
+        int i = 0;
+        for (Agent agent : agents) uuids[i++] = uuidOf(checkHandle(agent.getAID()).getUuID());
+
+        long stamp = this.lock.writeLock();
+        try {
+            i = 0;
+            for (Agent agent : agents) insert(agent, uuids[i++]);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private static AgentID checkHandle(AgentID id) {
+        if (id.getHandle() <= 0) throw new IllegalArgumentException("Agent " + id + " does not have a handle");
+        return id;
+    }
+
+    /** Add the agent in a new slot, replacing an agent with the same UUID or handle. Requires the write lock. */
+    private void insert(Agent agent, UUID uuid) {
+        AgentID id = agent.getAID();
+        int handle = id.getHandle();
+        int slot = this.uuidIndex.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        if (slot >= 0) removeSlot(slot);
+        slot = this.handleIndex.get(handle);
+        if (slot >= 0) removeSlot(slot);
+
+        slot = this.size;
+        if (slot == this.ids.length) grow();
+        this.ids[slot] = id;
+        this.agents[slot] = agent;
+        this.handles[slot] = handle;
+        this.uuidMsbs[slot] = uuid.getMostSignificantBits();
+        this.uuidLsbs[slot] = uuid.getLeastSignificantBits();
+        if (this.handleIndex.isFull(slot + 1)) this.handleIndex = this.handleIndex.resize(this.handles, slot + 1);
+        if (this.uuidIndex.isFull(slot + 1)) this.uuidIndex = this.uuidIndex.resize(this.uuidMsbs, this.uuidLsbs, slot + 1);
+        this.handleIndex.put(handle, slot);
+        this.uuidIndex.put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), slot);
+        this.size = slot + 1;
+    }
+
+    /**
+     * Remove an agent from the registry
+     *
+     * @param id ID of the agent to remove
+     * @return The agent that was removed, or null if no agent was registered with the ID
+     */
+    public Agent remove(AgentID id) {
+        long stamp = this.lock.writeLock();
+        try {
+            int slot = slotOf(id);
+            if (slot < 0) return null;
+            Agent agent = this.agents[slot];
+            removeSlot(slot);
+            return agent;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @param id ID of an agent, with or without a handle
+     * @return The agent registered with the ID, or null if there is none
+     */
+    public Agent get(AgentID id) {
+        if (id == null) return null;
+        long stamp = this.lock.tryOptimisticRead();
+        Agent agent = null;
+        try {
+            int slot = slotOf(id);
+            if (slot >= 0) agent = this.agents[slot];
+        } catch (RuntimeException e) {
+            // Inconsistent state due to a concurrent modification, the lookup is repeated below
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                int slot = slotOf(id);
+                agent = slot >= 0 ? this.agents[slot] : null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return agent;
+    }
+
+    /**
+     * @param uuid UUID of the local name of an agent
+     * @return The agent registered with the UUID, or null if there is none
+     */
+    public Agent get(UUID uuid) {
+        if (uuid == null) return null;
+        long msb = uuid.getMostSignificantBits(), lsb = uuid.getLeastSignificantBits();
+        long stamp = this.lock.tryOptimisticRead();
+        Agent agent = null;
+        try {
+            int slot = this.uuidIndex.get(msb, lsb);
+            if (slot >= 0) agent = this.agents[slot];
+        } catch (RuntimeException e) {
+            // Inconsistent state due to a concurrent modification, the lookup is repeated below
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                int slot = this.uuidIndex.get(msb, lsb);
+                agent = slot >= 0 ? this.agents[slot] : null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return agent;
+    }
+
+    /**
+     * @param localName Local name of an agent, i.e. the user info of its ID
+     * @return The agent registered with the local name, or null if there is none
+     */
+    public Agent get(String localName) {
+        return localName == null ? null : get(uuidOf(localName));
+    }
+
+    /** @return True iff an agent is registered with the ID */
+    public boolean contains(AgentID id) {
+        return get(id) != null;
+    }
+
+    /** @return The number of registered agents */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param index Index between 0 and the size of the registry
+     * @return The ID of the agent at the given index, or null if the index is no longer in use
+     */
+    public AgentID getID(int index) {
+        long stamp = this.lock.tryOptimisticRead();
+        AgentID id = null;
+        AgentID[] ids = this.ids;
+        if (index < this.size && index < ids.length) id = ids[index];
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                id = index < this.size ? this.ids[index] : null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * @param index Index between 0 and the size of the registry
+     * @return The agent at the given index, or null if the index is no longer in use
+     */
+    public Agent getAgent(int index) {
+        long stamp = this.lock.tryOptimisticRead();
+        Agent agent = null;
+        Agent[] agents = this.agents;
+        if (index < this.size && index < agents.length) agent = agents[index];
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                agent = index < this.size ? this.agents[index] : null;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return agent;
+    }
+
+    /** @return An unmodifiable snapshot of the IDs of the registered agents, in the order of their slots */
+    public List<AgentID> getIDs() {
+        return new IDList(snapshot());
+    }
+
+    /** @return An unmodifiable snapshot of the IDs of the registered agents */
+    public Set<AgentID> getIDSet() {
+        return new IDSet(snapshot());
+    }
+
+    /** @return An unmodifiable snapshot of the registered agents by their ID */
+    public Map<AgentID, Agent> asMap() {
+        return new AgentMap(snapshot());
+    }
+
+    /** Wrap the arrays with the registered agents under the read lock, so the snapshot is consistent */
+    private Snapshot snapshot() {
+        long stamp = this.lock.readLock();
+        try {
+            this.shared = true;
+            return new Snapshot(this, this.ids, this.agents, this.size);
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @param snapshot A snapshot of this registry
+     * @param key      An ID
+     * @return The agent with the ID in the snapshot, or null if it is not in the snapshot
+     */
+    private Agent find(Snapshot snapshot, Object key) {
+        if (!(key instanceof AgentID)) return null;
+        AgentID id = (AgentID) key;
+        long stamp = this.lock.tryOptimisticRead();
+        int slot = -1;
+        boolean current = false;
+        try {
+            current = this.ids == snapshot.ids;
+            if (current) slot = slotOf(id);
+        } catch (RuntimeException e) {
+            // Inconsistent state due to a concurrent modification, the lookup is repeated below
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                current = this.ids == snapshot.ids;
+                slot = current ? slotOf(id) : -1;
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        if (current) {
+            // The slots below the size of the snapshot have not changed since it was taken
+            return slot >= 0 && slot < snapshot.size ? snapshot.agents[slot] : null;
+        }
+        // An agent was removed since the snapshot was taken, so the indexes no longer match it
+        for (int i = 0; i < snapshot.size; i++) {
+            if (snapshot.ids[i].equals(id)) return snapshot.agents[i];
+        }
+        return null;
+    }
+
+    /** Find the slot of an ID, first by its handle and otherwise by its UUID. Returns -1 if it is not registered. */
+    private int slotOf(AgentID id) {
+        int handle = id.getHandle();
+        if (handle > 0) {
+            int slot = this.handleIndex.get(handle);
+            // Handles are only unique per platform, so verify the ID belongs to this registry
+            if (slot >= 0 && (this.ids[slot] == id || this.ids[slot].equals(id))) return slot;
+        }
+        UUID uuid = uuidOf(id.getUuID());
+        return this.uuidIndex.get(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Remove the agent in the slot, by moving the agent in the last slot to it. If a snapshot wraps the arrays, they
+     * are copied first. Requires the write lock.
+     */
+    private void removeSlot(int slot) {
+        if (this.shared) {
+            this.ids = Arrays.copyOf(this.ids, this.ids.length);
+            this.agents = Arrays.copyOf(this.agents, this.agents.length);
+            this.shared = false;
+        }
+        int last = this.size - 1;
+        this.handleIndex.remove(this.handles[slot]);
+        this.uuidIndex.remove(this.uuidMsbs[slot], this.uuidLsbs[slot]);
+        if (slot != last) {
+            this.ids[slot] = this.ids[last];
+            this.agents[slot] = this.agents[last];
+            this.handles[slot] = this.handles[last];
+            this.uuidMsbs[slot] = this.uuidMsbs[last];
+            this.uuidLsbs[slot] = this.uuidLsbs[last];
+            this.handleIndex.put(this.handles[slot], slot);
+            this.uuidIndex.put(this.uuidMsbs[slot], this.uuidLsbs[slot], slot);
+        }
+        this.ids[last] = null;
+        this.agents[last] = null;
+        this.size = last;
+    }
+
+    /** Double the capacity of the dense arrays. Requires the write lock. */
+    private void grow() {
+        int capacity = this.ids.length * 2;
+        this.ids = Arrays.copyOf(this.ids, capacity);
+        this.agents = Arrays.copyOf(this.agents, capacity);
+        this.shared = false;
+        this.handles = Arrays.copyOf(this.handles, capacity);
+        this.uuidMsbs = Arrays.copyOf(this.uuidMsbs, capacity);
+        this.uuidLsbs = Arrays.copyOf(this.uuidLsbs, capacity);
+    }
+
+    /**
+     * The UUID under which a local name is indexed. Local names that are not a UUID, such as nicknames, are
+     * indexed under a name-based UUID, i.e. the (type 3) MD5 hash of the name. The same name therefore always maps to
+     * the same UUID, in every run and on every JVM, and two different names only map to the same UUID in case of an
+     * MD5 collision.
+     */
+    private static UUID uuidOf(String localName) {
+        if (localName.length() == 36) {
+            try {
+                return UUID.fromString(localName);
+            } catch (IllegalArgumentException e) {
+                // Not a UUID
+            }
+        }
+        return UUID.nameUUIDFromBytes(localName.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Smallest power of two that keeps the load factor of an index table at most one half */
+    private static int tableCapacity(int entries) {
+        return Integer.highestOneBit(Math.max(8, entries) * 2 - 1) * 2;
+    }
+
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Open-addressing table with linear probing from handles to slots. Entries are removed by shifting the entries
+     * that follow them backwards, so no tombstones are needed. A value of 0 marks an empty entry, so slots are
+     * stored incremented by one.
+     */
+    private static final class HandleTable {
+        private final int[] keys, values;
+
+        HandleTable(int capacity) {
+            this.keys = new int[capacity];
+            this.values = new int[capacity];
+        }
+
+        boolean isFull(int entries) {
+            return entries * 2 > this.keys.length;
+        }
+
+        HandleTable resize(int[] handles, int entries) {
+            HandleTable table = new HandleTable(tableCapacity(entries));
+            for (int slot = 0; slot < entries - 1; slot++) table.put(handles[slot], slot);
+            return table;
+        }
+
+        int get(int handle) {
+            int mask = this.keys.length - 1;
+            for (int i = mix(handle) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                if (this.values[i] == 0) return -1;
+                if (this.keys[i] == handle) return this.values[i] - 1;
+            }
+            return -1;
+        }
+
+        void put(int handle, int slot) {
+            int mask = this.keys.length - 1;
+            int i = mix(handle) & mask;
+            while (this.values[i] != 0 && this.keys[i] != handle) i = (i + 1) & mask;
+            this.keys[i] = handle;
+            this.values[i] = slot + 1;
+        }
+
+        void remove(int handle) {
+            int mask = this.keys.length - 1;
+            int i = mix(handle) & mask;
+            while (this.values[i] != 0 && this.keys[i] != handle) i = (i + 1) & mask;
+            if (this.values[i] == 0) return;
+            for (int j = (i + 1) & mask; this.values[j] != 0; j = (j + 1) & mask) {
+                int home = mix(this.keys[j]) & mask;
+                // Move the entry back if its home position is not cyclically in (i, j]
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    this.keys[i] = this.keys[j];
+                    this.values[i] = this.values[j];
+                    i = j;
+                }
+            }
+            this.keys[i] = 0;
+            this.values[i] = 0;
+        }
+    }
+
+    /** Same as the handle table, but keyed on the two longs of a UUID. */
+    private static final class UuidTable {
+        private final long[] msbs, lsbs;
+        private final int[] values;
+
+        UuidTable(int capacity) {
+            this.msbs = new long[capacity];
+            this.lsbs = new long[capacity];
+            this.values = new int[capacity];
+        }
+
+        boolean isFull(int entries) {
+            return entries * 2 > this.values.length;
+        }
+
+        UuidTable resize(long[] msbs, long[] lsbs, int entries) {
+            UuidTable table = new UuidTable(tableCapacity(entries));
+            for (int slot = 0; slot < entries - 1; slot++) table.put(msbs[slot], lsbs[slot], slot);
+            return table;
+        }
+
+        private static int hash(long msb, long lsb) {
+            return mix(Long.hashCode(msb * 31 + lsb));
+        }
+
+        int get(long msb, long lsb) {
+            int mask = this.values.length - 1;
+            for (int i = hash(msb, lsb) & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                if (this.values[i] == 0) return -1;
+                if (this.msbs[i] == msb && this.lsbs[i] == lsb) return this.values[i] - 1;
+            }
+            return -1;
+        }
+
+        void put(long msb, long lsb, int slot) {
+            int mask = this.values.length - 1;
+            int i = hash(msb, lsb) & mask;
+            while (this.values[i] != 0 && (this.msbs[i] != msb || this.lsbs[i] != lsb)) i = (i + 1) & mask;
+            this.msbs[i] = msb;
+            this.lsbs[i] = lsb;
+            this.values[i] = slot + 1;
+        }
+
+        void remove(long msb, long lsb) {
+            int mask = this.values.length - 1;
+            int i = hash(msb, lsb) & mask;
+            while (this.values[i] != 0 && (this.msbs[i] != msb || this.lsbs[i] != lsb)) i = (i + 1) & mask;
+            if (this.values[i] == 0) return;
+            for (int j = (i + 1) & mask; this.values[j] != 0; j = (j + 1) & mask) {
+                int home = hash(this.msbs[j], this.lsbs[j]) & mask;
+                if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                    this.msbs[i] = this.msbs[j];
+                    this.lsbs[i] = this.lsbs[j];
+                    this.values[i] = this.values[j];
+                    i = j;
+                }
+            }
+            this.msbs[i] = 0;
+            this.lsbs[i] = 0;
+            this.values[i] = 0;
+        }
+    }
+
+    /**
+     * The registered agents at one point in time, which backs the collections returned by the registry. The slots
+     * below its size are not changed by the registry while the snapshot wraps its arrays.
+     */
+    private static final class Snapshot {
+        private final AgentRegistry registry;
+        private final AgentID[] ids;
+        private final Agent[] agents;
+        private final int size;
+
+        Snapshot(AgentRegistry registry, AgentID[] ids, Agent[] agents, int size) {
+            this.registry = registry;
+            this.ids = ids;
+            this.agents = agents;
+            this.size = size;
+        }
+
+        Agent get(Object key) {
+            return this.registry.find(this, key);
+        }
+    }
+
+    private static final class IDList extends AbstractList<AgentID> implements RandomAccess {
+        private final Snapshot snapshot;
+
+        IDList(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public AgentID get(int index) {
+            return this.snapshot.ids[Objects.checkIndex(index, this.snapshot.size)];
+        }
+
+        @Override
+        public int size() {
+            return this.snapshot.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.snapshot.get(o) != null;
+        }
+    }
+
+    private static final class IDSet extends AbstractSet<AgentID> {
+        private final Snapshot snapshot;
+
+        IDSet(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int size() {
+            return this.snapshot.size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return this.snapshot.get(o) != null;
+        }
+
+        @Override
+        public Iterator<AgentID> iterator() {
+            return Arrays.asList(this.snapshot.ids).subList(0, this.snapshot.size).iterator();
+        }
+    }
+
+    private static final class AgentMap extends AbstractMap<AgentID, Agent> {
+        private final Snapshot snapshot;
+
+        AgentMap(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public int size() {
+            return this.snapshot.size;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return this.snapshot.get(key) != null;
+        }
+
+        @Override
+        public Agent get(Object key) {
+            return this.snapshot.get(key);
+        }
+
+        @Override
+        public Set<AgentID> keySet() {
+            return new IDSet(this.snapshot);
+        }
+
+        @Override
+        public Set<Entry<AgentID, Agent>> entrySet() {
+            return new AbstractSet<Entry<AgentID, Agent>>() {
+                @Override
+                public int size() {
+                    return AgentMap.this.snapshot.size;
+                }
+
+                @Override
+                public Iterator<Entry<AgentID, Agent>> iterator() {
+                    return new Iterator<Entry<AgentID, Agent>>() {
+                        private int index = 0;
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.index < AgentMap.this.snapshot.size;
+                        }
+
+                        @Override
+                        public Entry<AgentID, Agent> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int i = this.index++;
+                            return new AbstractMap.SimpleImmutableEntry<>(AgentMap.this.snapshot.ids[i], AgentMap.this.snapshot.agents[i]);
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package nl.uu.cs.iss.ga.sim2apl.core.platform;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.net.URISyntaxException;
-import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.logging.Level;
 
 import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.MessageReceiverNotFoundException;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.FIPAMessenger;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.MessageInterface;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLCodec;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.BinaryACLCodec;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.LightweightMessage;
 import nl.uu.cs.iss.ga.sim2apl.core.messaging.Messenger;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
@@ -23,6 +39,13 @@ import nl.uu.cs.iss.ga.sim2apl.core.logging.Loggable;
 /**
  * Prototype/Ad-Hoc/Hack solution for multiple platforms, in preparation for a
  * robust system.
+ *
+ * Each NetNode keeps one long-lived connection per other platform, which is
+ * opened when the first message is sent to that platform and is used in both
+ * directions. All connections are served by a single selector thread. Sending
+ * threads append their messages to the buffers of the connection, and the
+ * selector thread writes all messages that were appended since its previous
+ * write at once. See {@link PeerConnection} for the format of the frames.
  */
 public class NetNode<X, T extends MessageInterface> implements Messenger<T, X>, Runnable {
 
@@ -32,10 +55,16 @@ public class NetNode<X, T extends MessageInterface> implements Messenger<T, X>,
 	protected String host;
 	protected int port;
 	protected Messenger<T, X> innerMessenger;
-	protected boolean listening = true;
+	protected volatile boolean listening = true;
 
 	protected nl.uu.cs.iss.ga.sim2apl.core.fipa.ams.DirectoryFacilitator yellowPages;
-	
+
+	private final Selector selector;
+	/** Connections to other platforms, by the host:port of their NetNode. */
+	private final ConcurrentHashMap<String, PeerConnection> peers = new ConcurrentHashMap<>();
+	/** Connections with frames that the selector thread has not yet written. */
+	private final ConcurrentLinkedQueue<PeerConnection> scheduled = new ConcurrentLinkedQueue<>();
+
 	public NetNode(Messenger<T, X> localMessenger, String host, int port) {
 		this.host = host;
 		this.port = port;
@@ -46,100 +75,276 @@ public class NetNode<X, T extends MessageInterface> implements Messenger<T, X>,
 		}
 
 		yellowPages = null;
-		
+
+		try {
+			this.selector = Selector.open();
+		} catch (IOException ex) {
+			throw new UncheckedIOException("NET2APL NetNode can't open a selector", ex);
+		}
+
 		THREAD_SERVICE.submit(this);
 	}
 
 	@Override
 	public void run() {
-		try (ServerSocket serverSocket = new ServerSocket(port)) {
-			
-			logger.log(getClass(), Level.INFO, "Started server on port " + port + " | " + serverSocket.getInetAddress().getHostAddress());
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(port));
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+
+			logger.log(getClass(), Level.INFO, "Started server on port " + port + " | " + server.socket().getInetAddress().getHostAddress());
 
 			while (listening) {
-				
-				try(Socket servSocket = serverSocket.accept()) {
-					
-					try (DataInputStream dis = new DataInputStream(servSocket.getInputStream())){						
-						int numBytes = dis.readInt();
-						switch(numBytes) {
-						case -1: // Got a request (from another Platform) for DF ('Yellow Pages') ID, with the remote Yellow Pages ID embedded into the request.
-							if (yellowPages == null) {
-								// TODO: Give back some error(code) or start waiting until there _is_ a DF.
-								break;
-							}
-							
-							String remoteHost = dis.readUTF();
-							int remotePort = dis.readInt();
-							
-							try (Socket clientSocket = new Socket(remoteHost, remotePort)) { //InetAddress.getByAddress(remoteHost), remotePort)) {
-								try(DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream())) {
-									dos.writeInt(-2); // See 'case -2' below.
-									dos.writeUTF(yellowPages.getAID().toString());
-								}
-
-							} catch (UnknownHostException ex) {
-								logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't read remote Yellow Pages address error: " + ex.getMessage());
-							} catch (IOException ex) {
-								logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't send to remote Yellow Pages error: " + ex.getMessage());
-							}
-							//NOTE: Intentional fallthrough!
-							
-						case -2: // Got a reply with the ID of a DF on another Platform. 
-							try {
-								nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID remoteYellowPages = new nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID(dis.readUTF());
-								yellowPages.addExternalTrigger(new ReceiveRemoteAddress(remoteYellowPages));
-							} catch (URISyntaxException ex) {
-								logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't read remote Yellow Pages AgentID error: " + ex.getMessage());
-							}							
-							break;
-							
-						default: // Got a 'normal' message.
-							byte[] data = new byte[numBytes];
-							dis.readNBytes(data, 0, numBytes);
-													
-							this.deliverMessage(this.decodeMessage(data));
-							break;
+				selector.select();
+				flushScheduled();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable()) {
+						accept(server);
+						continue;
+					}
+
+					PeerConnection connection = (PeerConnection) key.attachment();
+					try {
+						if (key.isConnectable() && connection.channel.finishConnect()) {
+							logger.log(getClass(), Level.INFO, "NET2APL NetNode connected to " + connection);
+							flush(connection);
+						}
+						if (key.isValid() && key.isReadable() && !connection.read(this)) {
+							close(connection, "closed by remote platform");
+							continue;
+						}
+						if (key.isValid() && key.isWritable()) {
+							flush(connection);
 						}
+					} catch (IOException | RuntimeException ex) {
+						close(connection, ex.getMessage());
 					}
 				}
 			}
-			
+
 			logger.log(getClass(), Level.INFO, "NET2APL Netnode server stopped");
-			
+
 		} catch (IOException ex) {
 			// TODO: logging/ error-handling
 			logger.log(getClass(), Level.SEVERE, "NET2APL NetNode server error: " + ex.getMessage());
-		} catch (MessageReceiverNotFoundException ex) {
-			// TODO: logging/ error-handling
-			logger.log(getClass(), Level.SEVERE, "NET2APL NetNode internal error: " + ex.getMessage());
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if (key.attachment() instanceof PeerConnection) ((PeerConnection) key.attachment()).close();
+			}
+			try {
+				selector.close();
+			} catch (IOException ex) {
+				logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't close selector: " + ex.getMessage());
+			}
 		}
 	}
-	
+
 	public void stop() {
 		this.listening = false;
+		this.selector.wakeup();
 	}
 
 	public void requestRemoteID(String remoteHost, int remotePort) {
 		if (yellowPages == null) {
 			// TODO: Give back some error(code) or start waiting until there _is_ a DF.
 		}
-		
-		try (Socket clientSocket = new Socket(remoteHost, remotePort)) { //InetAddress.getByAddress(remoteHost), remotePort)) {
-			try(DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream())) {
-				dos.writeInt(-1);
-				dos.writeUTF(host);
-				dos.writeInt(port);
-				dos.writeUTF(yellowPages.getAID().toString());
-			}
 
-		} catch (UnknownHostException ex) {
-			logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't read remote Yellow Pages address error: " + ex.getMessage());
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream dos = new DataOutputStream(bytes);
+			dos.writeUTF(host);
+			dos.writeInt(port);
+			dos.writeUTF(yellowPages.getAID().toString());
+			PeerConnection connection = connection(remoteHost, remotePort);
+			connection.append(PeerConnection.DF_REQUEST, bytes.toByteArray());
+			schedule(connection);
 		} catch (IOException ex) {
 			logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't send to remote Yellow Pages error: " + ex.getMessage());
 		}
 	}
-	
+
+	/** @return The connection with the platform with the given address, which is opened when it is flushed */
+	private PeerConnection connection(String remoteHost, int remotePort) {
+		String address = remoteHost + ":" + remotePort;
+		PeerConnection connection = peers.get(address);
+		if (connection == null) {
+			connection = peers.computeIfAbsent(address, a -> new PeerConnection(remoteHost, remotePort));
+		}
+		return connection;
+	}
+
+	/** Have the selector thread write the frames that were appended to the connection. */
+	private void schedule(PeerConnection connection) {
+		if (connection.scheduled.compareAndSet(false, true)) {
+			scheduled.add(connection);
+			selector.wakeup();
+		}
+	}
+
+	/** Open or flush the connections to which frames were appended. Only called by the selector thread. */
+	private void flushScheduled() {
+		PeerConnection connection;
+		while ((connection = scheduled.poll()) != null) {
+			connection.scheduled.set(false);
+			try {
+				if (connection.channel == null) {
+					connect(connection);
+				} else if (connection.channel.isConnected()) {
+					flush(connection);
+				}
+				// Otherwise the frames are written once the connection is established
+			} catch (IOException | RuntimeException ex) {
+				close(connection, ex.getMessage());
+			}
+		}
+	}
+
+	private void connect(PeerConnection connection) throws IOException {
+		SocketChannel channel = SocketChannel.open();
+		connection.channel = channel;
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		connection.prepend(PeerConnection.HELLO, helloPayload());
+		if (channel.connect(new InetSocketAddress(connection.host, connection.port))) {
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			flush(connection);
+		} else {
+			connection.key = channel.register(selector, SelectionKey.OP_CONNECT, connection);
+		}
+	}
+
+	private void accept(ServerSocketChannel server) {
+		try {
+			SocketChannel channel = server.accept();
+			if (channel == null) return;
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			PeerConnection connection = new PeerConnection(null, -1);
+			connection.channel = channel;
+			connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		} catch (IOException ex) {
+			logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't accept connection: " + ex.getMessage());
+		}
+	}
+
+	private void flush(PeerConnection connection) throws IOException {
+		boolean flushed = connection.flush();
+		// Frames that are read may be answered on this connection, so it is not read from while its queue is full
+		int read = connection.isOverCapacity() ? 0 : SelectionKey.OP_READ;
+		connection.key.interestOps(flushed ? read : read | SelectionKey.OP_WRITE);
+	}
+
+	private void close(PeerConnection connection, String reason) {
+		int dropped = connection.close();
+		logger.log(getClass(), Level.WARNING, "NET2APL NetNode connection to " + connection + " closed: " + reason
+				+ (dropped > 0 ? " (dropped " + dropped + " unsent buffers)" : ""));
+	}
+
+	private byte[] helloPayload() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream dos = new DataOutputStream(bytes);
+		dos.writeUTF(host);
+		dos.writeInt(port);
+		return bytes.toByteArray();
+	}
+
+	/** Handle a frame that was received from another platform. Only called by the selector thread. */
+	void receiveFrame(PeerConnection connection, byte kind, ByteBuffer payload) throws IOException {
+		switch (kind) {
+		case PeerConnection.MESSAGE: // A message encoded by the messenger, for the receiver that precedes it.
+		case PeerConnection.ACL_MESSAGE: // An ACL message in the binary ACL representation, for the receiver that precedes it.
+			AgentID receiver;
+			T message;
+			try {
+				receiver = connection.decoder.readAgentID(payload);
+				message = kind == PeerConnection.ACL_MESSAGE ? decodeACLMessage(connection, payload) : null;
+			} catch (ACLCodec.CodecException ex) {
+				// The AgentIDs that are interned for the connection can no longer be trusted
+				throw new IOException(ex.getMessage(), ex);
+			}
+			try {
+				if (message == null) {
+					byte[] data = new byte[payload.remaining()];
+					payload.get(data);
+					message = this.decodeMessage(data);
+				}
+				innerMessenger.deliverMessage(receiver, message);
+			} catch (MessageReceiverNotFoundException | RuntimeException ex) {
+				logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't deliver message from " + connection + ": " + ex.getMessage());
+			}
+			break;
+
+		case PeerConnection.DF_REQUEST: // Got a request (from another Platform) for DF ('Yellow Pages') ID, with the remote Yellow Pages ID embedded into the request.
+			if (yellowPages == null) {
+				// TODO: Give back some error(code) or start waiting until there _is_ a DF.
+				break;
+			}
+
+			DataInputStream request = input(payload);
+			String remoteHost = request.readUTF();
+			int remotePort = request.readInt();
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			new DataOutputStream(bytes).writeUTF(yellowPages.getAID().toString());
+			PeerConnection peer = connection(remoteHost, remotePort);
+			try {
+				peer.append(PeerConnection.DF_REPLY, bytes.toByteArray());
+				schedule(peer);
+			} catch (IllegalStateException ex) {
+				logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't reply to remote Yellow Pages: " + ex.getMessage());
+			}
+
+			addRemoteYellowPages(request.readUTF());
+			break;
+
+		case PeerConnection.DF_REPLY: // Got a reply with the ID of a DF on another Platform.
+			if (yellowPages != null) {
+				addRemoteYellowPages(input(payload).readUTF());
+			}
+			break;
+
+		case PeerConnection.HELLO: // The other platform opened the connection, and can be reached through it.
+			DataInputStream hello = input(payload);
+			String peerHost = hello.readUTF();
+			int peerPort = hello.readInt();
+			if (peers.putIfAbsent(peerHost + ":" + peerPort, connection) == null) {
+				connection.host = peerHost;
+				connection.port = peerPort;
+			}
+			break;
+
+		default:
+			throw new IOException("Unknown frame kind " + kind);
+		}
+	}
+
+	/** ACL messages are only sent by the binary ACL codec if T is ACLMessage or one of its supertypes. */
+	@SuppressWarnings("unchecked")
+	private T decodeACLMessage(PeerConnection connection, ByteBuffer payload) throws ACLCodec.CodecException {
+		return (T) connection.decoder.readMessage(payload);
+	}
+
+	private void addRemoteYellowPages(String aid) {
+		try {
+			nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID remoteYellowPages = new nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID(aid);
+			yellowPages.addExternalTrigger(new ReceiveRemoteAddress(remoteYellowPages));
+		} catch (URISyntaxException ex) {
+			logger.log(getClass(), Level.WARNING, "NET2APL NetNode can't read remote Yellow Pages AgentID error: " + ex.getMessage());
+		}
+	}
+
+	private static DataInputStream input(ByteBuffer payload) {
+		byte[] bytes = new byte[payload.remaining()];
+		payload.get(bytes);
+		return new DataInputStream(new ByteArrayInputStream(bytes));
+	}
+
 	@Override
 	public void agentDied(nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID agentID) {
 		innerMessenger.agentDied(agentID);
@@ -153,31 +358,56 @@ public class NetNode<X, T extends MessageInterface> implements Messenger<T, X>,
 		innerMessenger.register(agent);
 	}
 
+	@Override
+	public void registerAll(Collection<? extends Agent<X>> agents) {
+		for (Agent<X> agent : agents) {
+			if (agent instanceof nl.uu.cs.iss.ga.sim2apl.core.fipa.ams.DirectoryFacilitator) {
+				yellowPages = (DirectoryFacilitator) agent;
+			}
+		}
+		innerMessenger.registerAll(agents);
+	}
+
 	@Override
 	public void deregister(nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID agentID) {
 		innerMessenger.deregister(agentID);
 	}
 
+	/**
+	 * Deliver the message to a local receiver directly, or append it to the
+	 * connection with the platform of the receiver. Messages to another platform
+	 * are delivered there asynchronously, so a receiver that does not exist on
+	 * the other platform is logged there instead of reported here. ACL messages
+	 * are written with the {@link BinaryACLCodec}, other messages as encoded by
+	 * the inner messenger. A message to a platform whose connection already has
+	 * {@link PeerConnection#MAX_QUEUED_BYTES} unsent bytes is logged and dropped.
+	 */
 	@Override
 	public void deliverMessage(nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID receiver, T message) throws MessageReceiverNotFoundException {
 		String remoteHost = receiver.getHost();
 		int remotePort = receiver.getPort();
 
 		if (host.equals(remoteHost) && port == remotePort) {
-			innerMessenger.deliverMessage(receiver, message);
+			if (message instanceof LightweightMessage && innerMessenger instanceof FIPAMessenger) {
+				// The FIPA messenger only delivers ACL messages
+				((FIPAMessenger<?>) innerMessenger).deliverMessage(receiver, ((LightweightMessage) message).toACLMessage());
+			} else {
+				innerMessenger.deliverMessage(receiver, message);
+			}
 		} else {
-			try (Socket clientSocket = new Socket(remoteHost, remotePort)) {
-				byte[] asbytes = this.encodeMessage(message);
-								
-				try(DataOutputStream dos = new DataOutputStream(clientSocket.getOutputStream())) {
-					dos.writeInt(asbytes.length);
-					dos.write(asbytes);
+			PeerConnection connection = connection(remoteHost, remotePort);
+			try {
+				if (message instanceof LightweightMessage) {
+					// Lightweight messages stay on the platform, so other platforms receive them as ACL messages
+					connection.append(receiver, ((LightweightMessage) message).toACLMessage(), null);
+				} else if (message instanceof ACLMessage) {
+					connection.append(receiver, (ACLMessage) message, null);
+				} else {
+					connection.append(receiver, null, this.encodeMessage(message));
 				}
-
-			} catch (UnknownHostException ex) {
+				schedule(connection);
+			} catch (IllegalArgumentException | IllegalStateException ex) {
 				logger.log(getClass(), Level.SEVERE, "NET2APL NetNode send error: " + ex.getMessage());
-			} catch (IOException ex) {
-				logger.log(getClass(), Level.SEVERE, "NET2APL NetNode server error: " + ex.getMessage());
 			}
 		}
 	}
@@ -0,0 +1,310 @@
+package nl.uu.cs.iss.ga.sim2apl.core.platform;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.ACLMessage;
+import nl.uu.cs.iss.ga.sim2apl.core.fipa.acl.BinaryACLCodec;
+
+/**
+ * A long-lived connection of a NetNode to the NetNode of another platform. Frames that are sent to the other platform
+ * are appended to pooled direct buffers by the sending threads, and are written by the selector thread of the NetNode
+ * in a single gathering write, so many frames are sent per write. A frame has the form
+ * {@code [int length][byte kind][payload]}, in which the length counts the kind and the payload.
+ *
+ * Frames that are sent while the connection is being established are kept until it is. The connection is used in
+ * both directions: the platform that opens it first sends a HELLO frame with its own address, after which the other
+ * platform uses it to send frames back.
+ *
+ * A message frame starts with the receiver of the message. ACL messages are written by a {@link BinaryACLCodec}
+ * directly into the buffers of the connection, other messages are written as encoded by the messenger. The
+ * AgentIDs in message frames are interned per connection, so the encoder of the connection is only used while
+ * holding its lock, and the encoder and decoder are reset whenever the connection is closed.
+ *
+ * At most {@link #MAX_QUEUED_BYTES} are queued per connection. Once that many bytes wait to be written, frames are
+ * rejected, and the NetNode stops reading from the connection until the queue has drained below the cap.
+ */
+final class PeerConnection {
+    static final byte MESSAGE = 0;
+    static final byte DF_REQUEST = 1;
+    static final byte DF_REPLY = 2;
+    static final byte HELLO = 3;
+    static final byte ACL_MESSAGE = 4;
+
+    static final int HEADER_SIZE = 5;
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    static final long MAX_QUEUED_BYTES = 16 * 1024 * 1024;
+
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final ConcurrentLinkedQueue<ByteBuffer> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
+
+    /** Address of the NetNode of the other platform, or null for an accepted connection that did not say HELLO */
+    String host;
+    int port;
+
+    /** True while the connection is queued to be flushed by the selector thread */
+    final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Only accessed by the selector thread
+    final BinaryACLCodec.Decoder decoder = new BinaryACLCodec.Decoder();
+    SocketChannel channel;
+    SelectionKey key;
+    private ByteBuffer in = acquire();
+    private final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+    private ByteBuffer[] gather = new ByteBuffer[16];
+
+    // Guarded by this
+    private final BinaryACLCodec.Encoder encoder = new BinaryACLCodec.Encoder();
+    private ByteBuffer current;
+    private final ArrayDeque<ByteBuffer> filled = new ArrayDeque<>();
+    /** Bytes appended to the connection that have not yet been written */
+    private long queued;
+
+    PeerConnection(final String host, final int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    /** Append a frame to the buffers that are written by the next flush. */
+    synchronized void append(final byte kind, final byte[] payload) {
+        int length = 1 + payload.length;
+        if (length > MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Frame of " + length + " bytes exceeds the maximum frame size of " + MAX_FRAME_SIZE);
+        }
+        checkCapacity();
+        reserve(4 + length).putInt(length).put(kind).put(payload);
+        this.queued += 4 + length;
+    }
+
+    /**
+     * Append a message frame, which is encoded directly into the buffers of the connection.
+     *
+     * @param receiver The receiver of the message on the other platform
+     * @param message  An ACL message, which is written with the binary ACL codec if encoded is null
+     * @param encoded  The message as encoded by the messenger, or null
+     */
+    synchronized void append(final AgentID receiver, final ACLMessage message, final byte[] encoded) {
+        checkCapacity();
+        ByteBuffer buffer = reserve(HEADER_SIZE + 1);
+        int capacity = BUFFER_SIZE;
+        while (true) {
+            int start = buffer.position();
+            int mark = this.encoder.mark();
+            try {
+                buffer.position(start + HEADER_SIZE);
+                this.encoder.writeAgentID(receiver, buffer);
+                if (encoded == null) {
+                    this.encoder.writeMessage(message, buffer);
+                } else {
+                    buffer.put(encoded);
+                }
+                buffer.putInt(start, buffer.position() - start - 4).put(start + 4, encoded == null ? ACL_MESSAGE : MESSAGE);
+                this.queued += buffer.position() - start;
+                return;
+            } catch (BufferOverflowException ex) {
+                buffer.position(start);
+                this.encoder.reset(mark);
+                if (start == 0) {
+                    // Does not fit in an empty buffer
+                    capacity *= 2;
+                    if (capacity > MAX_FRAME_SIZE) {
+                        throw new IllegalArgumentException("Frame exceeds the maximum frame size of " + MAX_FRAME_SIZE);
+                    }
+                }
+                buffer = next(capacity);
+            }
+        }
+    }
+
+    /** Reject the next frame if the bytes queued on this connection have reached the cap. */
+    private void checkCapacity() {
+        if (this.queued >= MAX_QUEUED_BYTES) {
+            throw new IllegalStateException("Connection to " + this + " has " + this.queued + " unsent bytes queued");
+        }
+    }
+
+    /** @return True if the bytes queued on this connection have reached the cap, so it should not be read from */
+    synchronized boolean isOverCapacity() {
+        return this.queued >= MAX_QUEUED_BYTES;
+    }
+
+    /** @return A buffer with at least size bytes remaining, to which the next frame is appended */
+    private ByteBuffer reserve(final int size) {
+        if (this.current == null || this.current.remaining() < size) {
+            next(size);
+        }
+        return this.current;
+    }
+
+    /** Queue the current buffer to be written, and continue with an empty buffer of at least the given size. */
+    private ByteBuffer next(final int size) {
+        if (this.current != null) {
+            this.current.flip();
+            if (this.current.hasRemaining()) {
+                this.filled.add(this.current);
+            } else {
+                release(this.current);
+            }
+        }
+        this.current = size <= BUFFER_SIZE ? acquire() : ByteBuffer.allocate(size);
+        return this.current;
+    }
+
+    /**
+     * Make the given frame the first frame that is written, before all frames that were appended before. Only called
+     * by the selector thread, before the first flush.
+     */
+    void prepend(final byte kind, final byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(1 + payload.length).put(kind).put(payload).flip();
+        this.writing.addFirst(buffer);
+    }
+
+    /**
+     * Write as many of the appended frames to the channel as it accepts without blocking. Only called by the selector
+     * thread.
+     *
+     * @return True if all frames were written, false if the channel did not accept all of them
+     */
+    boolean flush() throws IOException {
+        synchronized (this) {
+            if (this.current != null && this.current.position() > 0) {
+                this.current.flip();
+                this.filled.add(this.current);
+                this.current = null;
+            }
+            this.writing.addAll(this.filled);
+            this.filled.clear();
+        }
+        while (!this.writing.isEmpty()) {
+            int count = Math.min(this.writing.size(), this.gather.length);
+            Iterator<ByteBuffer> buffers = this.writing.iterator();
+            for (int i = 0; i < count; i++) {
+                this.gather[i] = buffers.next();
+            }
+            long written = this.channel.write(this.gather, 0, count);
+            synchronized (this) {
+                this.queued = Math.max(0, this.queued - written);
+            }
+            while (!this.writing.isEmpty() && !this.writing.peekFirst().hasRemaining()) {
+                release(this.writing.pollFirst());
+            }
+            if (!this.writing.isEmpty() && this.writing.peekFirst() == this.gather[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the frames that arrived on the channel, and pass every complete frame to the NetNode. Only called by the
+     * selector thread.
+     *
+     * @return False if the other platform closed the connection
+     */
+    boolean read(final NetNode<?, ?> node) throws IOException {
+        int read = this.channel.read(this.in);
+        this.in.flip();
+        while (this.in.remaining() >= 4) {
+            int start = this.in.position();
+            int length = this.in.getInt(start);
+            if (length < 1 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            if (this.in.remaining() < 4 + length) {
+                if (this.in.capacity() < 4 + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(4 + length);
+                    larger.put(this.in);
+                    release(this.in);
+                    this.in = larger;
+                    return read >= 0;
+                }
+                break;
+            }
+            byte kind = this.in.get(start + 4);
+            ByteBuffer payload = this.in.duplicate();
+            payload.position(start + HEADER_SIZE).limit(start + 4 + length);
+            this.in.position(start + 4 + length);
+            node.receiveFrame(this, kind, payload.slice());
+        }
+        this.in.compact();
+        if (!this.in.isDirect() && this.in.position() <= BUFFER_SIZE) {
+            // Return to a pooled buffer once the large frame for which this buffer was grown has been read
+            ByteBuffer smaller = acquire();
+            this.in.flip();
+            smaller.put(this.in);
+            this.in = smaller;
+        }
+        return read >= 0;
+    }
+
+    /**
+     * Close the channel and drop all frames that were not yet written. A connection to a known platform can be opened
+     * again afterwards. Only called by the selector thread.
+     *
+     * @return The number of buffers with frames that were dropped
+     */
+    int close() {
+        int dropped;
+        synchronized (this) {
+            if (this.current != null) {
+                release(this.current);
+                this.current = null;
+            }
+            dropped = this.writing.size() + this.filled.size();
+            this.filled.forEach(PeerConnection::release);
+            this.filled.clear();
+            this.queued = 0;
+            this.encoder.reset();
+        }
+        this.decoder.reset();
+        this.writing.forEach(PeerConnection::release);
+        this.writing.clear();
+        if (this.in.isDirect()) {
+            this.in.clear();
+        } else {
+            this.in = acquire();
+        }
+        if (this.key != null) this.key.cancel();
+        try {
+            if (this.channel != null) this.channel.close();
+        } catch (IOException ex) {
+            // Nothing left to do with the channel
+        }
+        this.channel = null;
+        this.key = null;
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        return this.host == null ? String.valueOf(this.channel) : this.host + ":" + this.port;
+    }
+
+    private static ByteBuffer acquire() {
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    private static void release(final ByteBuffer buffer) {
+        if (buffer.isDirect() && buffer.capacity() == BUFFER_SIZE && pooled.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            POOL.offer(buffer);
+        } else if (buffer.isDirect() && buffer.capacity() == BUFFER_SIZE) {
+            pooled.decrementAndGet();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package nl.uu.cs.iss.ga.sim2apl.core.platform;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.Agent;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentCreationFailedException;
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentFactory;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentKillSwitch;
 import nl.uu.cs.iss.ga.sim2apl.core.defaults.messenger.DefaultMessenger;
@@ -9,7 +10,11 @@ import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
 import nl.uu.cs.iss.ga.sim2apl.core.fipa.ams.DirectoryFacilitator;
 import nl.uu.cs.iss.ga.sim2apl.core.logging.ConsoleLogger;
 import nl.uu.cs.iss.ga.sim2apl.core.logging.Loggable;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.DefaultMessageIDGenerator;
+import nl.uu.cs.iss.ga.sim2apl.core.messaging.MessageIDGenerator;
 import nl.uu.cs.iss.ga.sim2apl.core.messaging.Messenger;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.MetricsCollector;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.NullMetricsCollector;
 import nl.uu.cs.iss.ga.sim2apl.core.tick.DefaultBlockingTickExecutor;
 import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
 
@@ -17,9 +22,13 @@ import java.net.InetAddress;
 import java.net.URISyntaxException;
 import java.net.UnknownHostException;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 /**
@@ -32,6 +41,8 @@ import java.util.logging.Level;
 public final class Platform {
 
     private static final int defaultPort = 44444;
+    /** Number of agents that are created by a single task when agents are created in bulk. */
+    private static final int agentCreationBatchSize = 4096;
     private static Loggable logger = new ConsoleLogger();
 
     public static Loggable getLogger() {
@@ -42,6 +53,16 @@ public final class Platform {
         Platform.logger = logger;
     }
 
+    private static MetricsCollector metrics = new NullMetricsCollector();
+
+    public static MetricsCollector getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsCollector metrics) {
+        Platform.metrics = metrics;
+    }
+
     private static String GetInitialLocalHost() {
         String result = "";
         try {
@@ -62,19 +83,14 @@ public final class Platform {
      */
     private final TickExecutor tickExecutor;
     /** The factories that can produce components from which agents are made. */
-    /**
-     * Kill switches that can force an agent to stop executing the next time it wants to deliberate.
-     */
-    private final ConcurrentMap<AgentID, AgentKillSwitch> agentKillSwitches;
     /**
      * The messenger that is used for direct communication between agents.
      */
     private final Messenger messenger;
     /**
-     * The Registered Agents
+     * The Registered Agents, indexed by the handle and the UUID of their ID
      */
-    private final ConcurrentMap<AgentID, Agent> registeredAgents;
-    private final ConcurrentMap<String, AgentID> test;
+    private final AgentRegistry registeredAgents;
     /**
      * Local(!) DirectoryFacilitator(s)
      */
@@ -85,21 +101,46 @@ public final class Platform {
     private final Set<AgentID> remoteDfs;
     private final ArrayList<String> remoteHosts;
     private final ArrayList<Integer> remotePorts;
+    /**
+     * Agents that are created by the current thread during bulk creation, and whose registration is deferred
+     * until all agents have been created. Null if the current thread is not creating agents in bulk.
+     */
+    private final ThreadLocal<List<Agent>> deferredRegistrations = new ThreadLocal<>();
+    /**
+     * The lowest handle that has never been assigned. Handles start at 1, so 0 can indicate that no handle is
+     * assigned. Guarded by <code>freeHandles</code>.
+     */
+    private int nextHandle = 1;
+    /**
+     * Handles of agents that were removed from the platform, which are assigned again before new handles, lowest
+     * first. This keeps handles dense when agents come and go, and as deterministic as the order of registration.
+     */
+    private final BitSet freeHandles = new BitSet();
+    /** No handle below this one is free. Guarded by <code>freeHandles</code>. */
+    private int lowestFreeHandle = 1;
+    /**
+     * Number of platforms created in this JVM, which distinguishes the default platform IDs of platforms in the same
+     * JVM that have the same host and port.
+     */
+    private static final AtomicInteger platformCount = new AtomicInteger();
+    /**
+     * Generates the IDs of the messages sent by the agents on this platform. Set once the host and port are known.
+     */
+    private volatile MessageIDGenerator messageIDGenerator;
 
     /**
      * Sets the threadpool to a new FixedThreadPool with the given amount of execution threads.
      *
-     * @param executor  A TickExecutor service, that will perform the ticks to advance the simulation
-     * @param messenger Messenger that agents will use to communicate.
+     * @param executor       A TickExecutor service, that will perform the ticks to advance the simulation
+     * @param messenger      Messenger that agents will use to communicate.
+     * @param expectedAgents Number of agents the platform is expected to host, used to size its maps
      */
-    private Platform(TickExecutor executor, final Messenger messenger) {
+    private Platform(TickExecutor executor, final Messenger messenger, final int expectedAgents) {
         this.tickExecutor = executor;
         this.messenger = messenger;
-        this.agentKillSwitches = new ConcurrentHashMap<>();
-        this.registeredAgents = new ConcurrentHashMap<>();
+        this.registeredAgents = new AgentRegistry(expectedAgents);
         this.directoryFacilitators = new ConcurrentHashMap<>();
         this.remoteDfs = ConcurrentHashMap.newKeySet();
-        this.test = new ConcurrentHashMap<>();
         this.remoteHosts = new ArrayList<>();
         this.remotePorts = new ArrayList<>();
     }
@@ -114,6 +155,19 @@ public final class Platform {
      * @return An interface to control the platform.
      */
     public final static Platform newPlatform(TickExecutor executor, final Messenger messenger, String host, int port, ArrayList<String> otherHosts, ArrayList<Integer> otherPorts) {
+        return newPlatform(executor, messenger, host, port, otherHosts, otherPorts, 16);
+    }
+
+    /**
+     * Create a new <code>Platform</code> that is sized to host the expected number of agents, so its maps
+     * do not have to grow while the agents are registered.
+     *
+     * @param executor       A TickExecutor service, that will perform the ticks to advance the simulation
+     * @param messenger      Messenger for agent to agent communication. Will be the default messenger in case the argument is null.
+     * @param expectedAgents Number of agents the platform is expected to host
+     * @return An interface to control the platform.
+     */
+    public final static Platform newPlatform(TickExecutor executor, final Messenger messenger, String host, int port, ArrayList<String> otherHosts, ArrayList<Integer> otherPorts, int expectedAgents) {
         if (host == null || host == "") {
             host = GetInitialLocalHost();
         }
@@ -122,14 +176,15 @@ public final class Platform {
         }
         Platform platform;
         if (messenger == null) {
-            platform = new Platform(executor, new DefaultMessenger());
+            platform = new Platform(executor, new DefaultMessenger(expectedAgents), expectedAgents);
         } else if (!messenger.implementsEncoding()) {
-            platform = new Platform(executor, messenger);
+            platform = new Platform(executor, messenger, expectedAgents);
         } else {
-            platform = new Platform(executor, new NetNode<>(messenger, host, port));
+            platform = new Platform(executor, new NetNode<>(messenger, host, port), expectedAgents);
         }
         platform.host = host;
         platform.port = port;
+        platform.messageIDGenerator = new DefaultMessageIDGenerator(defaultPlatformID(host, port));
         platform.setLogger(logger);
 
         if (otherHosts != null && otherPorts != null) {
@@ -158,6 +213,10 @@ public final class Platform {
         return newPlatform(executor, messenger, GetInitialLocalHost(), defaultPort);
     }
 
+    public final static Platform newPlatform(final TickExecutor executor, final Messenger messenger, final int expectedAgents) {
+        return newPlatform(executor, messenger, GetInitialLocalHost(), defaultPort, null, null, expectedAgents);
+    }
+
     public final String getHost() {
         return host;
     }
@@ -171,15 +230,20 @@ public final class Platform {
     //////////////////////////
 
     public void register(Agent agent) {
+        List<Agent> deferred = this.deferredRegistrations.get();
+        if (deferred != null) {
+            // The agent is created in bulk, and will be registered once all agents have been created
+            agent.setPlatform(this);
+            deferred.add(agent);
+            return;
+        }
         getLogger().log(getClass(), Level.FINEST, "Registering agent " + agent.getAID().getUuID());
 
+        agent.getAID().setHandle(allocateHandle());
         DeliberationRunnable deliberationRunnable = new DeliberationRunnable(agent, this);
-        AgentKillSwitch killSwitch = new AgentKillSwitch(agent);
-        this.agentKillSwitches.put(agent.getAID(), killSwitch);
 
         //Register the agent to the platform
-        this.registeredAgents.put(agent.getAID(), agent);
-        this.test.put(agent.getAID().getUuID(), agent.getAID());
+        this.registeredAgents.register(agent);
         agent.setPlatform(this);
 
         //Add to platform's messenger
@@ -188,34 +252,143 @@ public final class Platform {
         agent.invoke();
     }
 
+    /**
+     * Create a number of agents in parallel, using the threads of the tick executor. The agents are created in
+     * batches, and the registration of each agent with the platform is deferred until all agents have been created.
+     * Agents are then registered in the order of their index, so the registration order does not depend on the
+     * scheduling of the batches. If any agent could not be created, none of the created agents are registered.
+     *
+     * @param count   Number of agents to create
+     * @param factory Factory that creates a single agent on this platform. Called concurrently from multiple threads
+     * @param <A>     Type of the created agents
+     * @return The created agents, ordered by their index
+     * @throws AgentCreationFailedException If an agent could not be created
+     */
+    public <A extends Agent<?>> List<A> createAgents(final int count, final AgentFactory<A> factory) throws AgentCreationFailedException {
+        List<Callable<List<Agent>>> tasks = new ArrayList<>();
+        List<List<A>> created = new ArrayList<>();
+        for (int start = 0; start < count; start += agentCreationBatchSize) {
+            final int from = start, to = Math.min(count, start + agentCreationBatchSize);
+            final List<A> batch = new ArrayList<>(to - from);
+            created.add(batch);
+            tasks.add(() -> createAgentBatch(factory, from, to, batch));
+        }
+
+        TickExecutor<?> executor = this.tickExecutor;
+        List<List<Agent>> registrations = new ArrayList<>(tasks.size());
+        try {
+            for (Future<List<Agent>> future : executor.useExecutorForTasks(tasks)) {
+                registrations.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AgentCreationFailedException("Interrupted while creating agents", e);
+        } catch (ExecutionException e) {
+            throw new AgentCreationFailedException("Failed to create agents", e.getCause());
+        }
+
+        List<A> agents = new ArrayList<>(count);
+        List<Agent> deferred = new ArrayList<>(count);
+        for (int i = 0; i < registrations.size(); i++) {
+            deferred.addAll(registrations.get(i));
+            agents.addAll(created.get(i));
+        }
+        registerAll(deferred);
+        return agents;
+    }
+
+    /**
+     * Register agents whose registration was deferred, in the order of the list. The agents are added to the
+     * registry and the messenger in one batch each, and are then scheduled and invoked as with <code>register</code>.
+     */
+    private void registerAll(final List<Agent> agents) {
+        getLogger().log(getClass(), Level.FINEST, "Registering " + agents.size() + " agents");
+
+        List<DeliberationRunnable> runnables = new ArrayList<>(agents.size());
+        for (Agent agent : agents) {
+            agent.getAID().setHandle(allocateHandle());
+            runnables.add(new DeliberationRunnable(agent, this));
+        }
+
+        this.registeredAgents.registerAll(agents);
+        this.messenger.registerAll(agents);
+        for (int i = 0; i < agents.size(); i++) {
+            scheduleForExecution(runnables.get(i));
+            agents.get(i).invoke();
+        }
+    }
+
+    /**
+     * Create the agents with an index in the given range on the current thread, deferring their registration.
+     * @return All agents whose registration was deferred, in order of creation
+     */
+    private <A extends Agent<?>> List<Agent> createAgentBatch(final AgentFactory<A> factory, final int from, final int to, final List<A> batch) throws Exception {
+        List<Agent> deferred = new ArrayList<>(to - from);
+        this.deferredRegistrations.set(deferred);
+        try {
+            for (int i = from; i < to; i++) {
+                batch.add(factory.createAgent(this, i));
+            }
+        } finally {
+            this.deferredRegistrations.remove();
+        }
+        return deferred;
+    }
+
     public void deregister(Agent agent) {
         getLogger().log(getClass(), Level.FINEST, "Deregistering agent " + agent.getAID().getUuID());
 
-        this.agentKillSwitches.remove(agent.getAID());
-        this.registeredAgents.remove(agent.getAID());
+        releaseHandle(this.registeredAgents.remove(agent.getAID()));
         this.messenger.deregister(agent.getAID());
-        this.test.remove(agent.getAID().getUuID());
         this.directoryFacilitators.remove(agent.getAID()); // <- Just in case it was a DF.
     }
 
     public void modify(AgentID oldID, Agent agent) {
         getLogger().log(getClass(), Level.FINEST, "Modifying agent " + agent.getAID().getUuID());
 
-        AgentKillSwitch killSwitch = this.agentKillSwitches.remove(oldID);
-        this.agentKillSwitches.put(agent.getAID(), killSwitch);
-
-        this.registeredAgents.remove(oldID);
-        this.registeredAgents.put(agent.getAID(), agent);
+        releaseHandle(this.registeredAgents.remove(oldID));
+        this.messenger.deregister(oldID);
+        agent.getAID().setHandle(allocateHandle());
+        this.registeredAgents.register(agent);
 
         if (directoryFacilitators.containsKey(oldID)) {
             this.directoryFacilitators.remove(oldID);
             this.directoryFacilitators.put(agent.getAID(), agent);
         }
 
-        this.messenger.deregister(oldID);
         this.messenger.register(agent);
     }
 
+    /** @return The lowest free handle, or a new handle if no handle is free */
+    private int allocateHandle() {
+        synchronized (this.freeHandles) {
+            int handle = this.freeHandles.nextSetBit(this.lowestFreeHandle);
+            if (handle < 0) {
+                this.lowestFreeHandle = this.nextHandle + 1;
+                return this.nextHandle++;
+            }
+            this.freeHandles.clear(handle);
+            this.lowestFreeHandle = handle + 1;
+            return handle;
+        }
+    }
+
+    /**
+     * Make the handle of an agent that was removed from the registry available again. IDs that still carry the
+     * handle are not affected, as lookups by handle verify the ID they find.
+     *
+     * @param removed The agent that was removed, or null if no agent was removed
+     */
+    private void releaseHandle(Agent removed) {
+        if (removed == null) return;
+        int handle = removed.getAID().getHandle();
+        if (handle <= 0) return;
+        synchronized (this.freeHandles) {
+            this.freeHandles.set(handle);
+            this.lowestFreeHandle = Math.min(this.lowestFreeHandle, handle);
+        }
+    }
+
     public void updateNickName(AgentID agentID) {
         Agent agent = registeredAgents.get(agentID);
         agent.setAID(agentID);
@@ -282,6 +455,26 @@ public final class Platform {
         this.tickExecutor.scheduleForNextTick(deliberationRunnable);
     }
 
+    /**
+     * Will schedule the deliberation runnable of a sleeping agent to be woken up at the given tick.
+     *
+     * @param deliberationRunnable Deliberation cycle of a sleeping agent
+     * @param tick                 The tick in which the agent should deliberate again
+     */
+    public final void scheduleForExecutionAt(final DeliberationRunnable deliberationRunnable, final long tick) {
+        this.tickExecutor.scheduleForTick(deliberationRunnable, tick);
+    }
+
+    /**
+     * Informs the tick executor that the deliberation runnable of an agent that died will not be executed again,
+     * unless it is already scheduled for the next tick.
+     *
+     * @param deliberationRunnable Deliberation cycle of the agent that died
+     */
+    public final void descheduleFromExecution(final DeliberationRunnable deliberationRunnable) {
+        this.tickExecutor.unschedule(deliberationRunnable);
+    }
+
     /**
      * Removes the agent's references in the platform and notifies the agent so that it will
      * stop executing after the current/next deliberation cycle.
@@ -289,12 +482,11 @@ public final class Platform {
      * @param agentID ID of the agent to be killed.
      */
     public final void killAgent(final AgentID agentID) {
-        AgentKillSwitch killSwitch;
-        killSwitch = this.agentKillSwitches.remove(agentID);
-        if (killSwitch != null) {// It's okay if the switch is null. In that case the agent was already killed in the past.
-            killSwitch.killAgent();
+        Agent agent = this.registeredAgents.remove(agentID);
+        if (agent != null) {// It's okay if the agent is not registered. In that case the agent was already killed in the past.
+            releaseHandle(agent);
+            new AgentKillSwitch(agent).killAgent();
         }
-        this.registeredAgents.remove(agentID);
     }
 
     /**
@@ -311,24 +503,40 @@ public final class Platform {
         }
     }
 
+    /**
+     * @return An unmodifiable snapshot of the IDs of the local agents, which does not reflect later (de)registrations
+     */
     public List<AgentID> getLocalAgentsList() {
-        return new ArrayList<>(this.registeredAgents.keySet()); //return new ArrayList<>(this.registeredAgents.values());
+        return this.registeredAgents.getIDs();
     }
 
+    /**
+     * @return An unmodifiable snapshot of the IDs of the local agents, which does not reflect later (de)registrations
+     */
     public Set<AgentID> getLocalAgentsSet() {
-        return new HashSet<>(this.registeredAgents.keySet()); //return new ArrayList<>(this.registeredAgents.values());
+        return this.registeredAgents.getIDSet();
     }
 
+    /**
+     * @return An unmodifiable snapshot of the local agents by their ID, which does not reflect later (de)registrations
+     */
     public Map<AgentID, Agent> getAgents() {
-        return this.registeredAgents;
+        return this.registeredAgents.asMap();
+    }
+
+    /**
+     * @return The number of local agents, without copying them
+     */
+    public int getNofLocalAgents() {
+        return this.registeredAgents.size();
     }
 
     public Agent getLocalAgent(String localname) throws URISyntaxException {
-        return this.registeredAgents.get(this.test.get(localname));
+        return this.registeredAgents.get(localname);
     }
 
     public Agent getLocalAgent(UUID localname) {
-        return this.registeredAgents.get(this.test.get(localname.toString()));
+        return this.registeredAgents.get(localname);
     }
 
     public Agent getLocalAgent(AgentID aid) throws URISyntaxException {
@@ -340,6 +548,32 @@ public final class Platform {
         return messenger;
     }
 
+    /**
+     * The platform ID of the default message ID generator, derived from the address of the platform, so platforms in
+     * different JVMs that communicate over the network (and hence listen on different addresses) get different IDs,
+     * and the same ID in every run. Platforms in the same JVM are told apart by the order in which they are created.
+     * As the ID only has 16 bits, two addresses may still give the same ID; set a generator with explicitly assigned
+     * platform IDs if messages of many platforms are mixed.
+     */
+    private static int defaultPlatformID(String host, int port) {
+        int hash = (host + ":" + port).hashCode();
+        return (hash ^ (hash >>> 16)) + platformCount.getAndIncrement();
+    }
+
+    public MessageIDGenerator getMessageIDGenerator() {
+        return messageIDGenerator;
+    }
+
+    /**
+     * Replace the generator of the IDs of the messages sent by agents on this platform, e.g. to give platforms
+     * explicitly assigned platform IDs.
+     *
+     * @param messageIDGenerator Generator of message IDs
+     */
+    public void setMessageIDGenerator(MessageIDGenerator messageIDGenerator) {
+        this.messageIDGenerator = messageIDGenerator;
+    }
+
     public <T> TickExecutor<T> getTickExecutor() {
         return this.tickExecutor;
     }
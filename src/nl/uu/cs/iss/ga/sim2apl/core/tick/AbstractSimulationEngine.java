@@ -2,6 +2,7 @@ package nl.uu.cs.iss.ga.sim2apl.core.tick;
 
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.MetricsCollector;
 import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 
 import java.util.ArrayList;
@@ -23,14 +24,23 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
     protected int nIterations;
     protected final Platform platform;
 
+    /**
+     * The messenger of the platform if it needs to be notified of ticks, e.g. to deliver messages in between ticks.
+     * Its hooks run after those of all other TickHookProcessors. Null if the messenger is not a TickHookProcessor
+     */
+    private final TickHookProcessor<T> messengerHookProcessor;
+
     /**
      * Instantiate this class with only a platform
      * @param platform  Platform
      */
+    @SuppressWarnings("unchecked")
     public AbstractSimulationEngine(Platform platform) {
         this.tickHookProcessorList = new ArrayList<>();
         this.platform = platform;
         this.nIterations = -1;
+        Object messenger = platform.getMessenger();
+        this.messengerHookProcessor = messenger instanceof TickHookProcessor ? (TickHookProcessor<T>) messenger : null;
     }
 
     /**
@@ -41,6 +51,8 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
     public AbstractSimulationEngine(Platform platform, TickHookProcessor<T>... processors) {
         this(platform);
         this.tickHookProcessorList.addAll(Arrays.asList(processors));
+        // The messenger is notified separately, after all other processors
+        this.tickHookProcessorList.remove(this.messengerHookProcessor);
     }
 
     /**
@@ -72,7 +84,11 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
      * @param startingTick  The tick that will be started
      */
     protected void processTickPreHooks(int startingTick) {
+        MetricsCollector metrics = Platform.getMetrics();
+        long startTime = metrics.isEnabled() ? System.nanoTime() : 0;
         this.tickHookProcessorList.forEach(tph -> tph.tickPreHook(startingTick));
+        if(this.messengerHookProcessor != null) this.messengerHookProcessor.tickPreHook(startingTick);
+        if(metrics.isEnabled()) metrics.recordPreHooks(startingTick, System.nanoTime() - startTime);
     }
 
     /**
@@ -85,7 +101,15 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
      *                          an execution exception occurred in the deliberation cycle of the corresponding agent.
      */
     protected void processTickPostHook(int finishedTick, int lastTickDuration, List<Future<DeliberationResult<T>>> actions) {
+        MetricsCollector metrics = Platform.getMetrics();
+        long startTime = metrics.isEnabled() ? System.nanoTime() : 0;
         this.tickHookProcessorList.forEach(tph -> tph.tickPostHook(finishedTick, lastTickDuration, actions));
+        if(this.messengerHookProcessor != null) this.messengerHookProcessor.tickPostHook(finishedTick, lastTickDuration, actions);
+        if(metrics.isEnabled()) {
+            metrics.recordPostHooks(finishedTick, System.nanoTime() - startTime);
+            metrics.recordRegisteredAgents(finishedTick, this.platform.getNofLocalAgents());
+            metrics.tickFinished(finishedTick);
+        }
     }
 
     /**
@@ -96,6 +120,8 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
      */
     protected void processSimulationFinishedHook(int lastTick, int lastTickDuration) {
         this.tickHookProcessorList.forEach(thp -> thp.simulationFinishedHook(lastTick, lastTickDuration));
+        if(this.messengerHookProcessor != null) this.messengerHookProcessor.simulationFinishedHook(lastTick, lastTickDuration);
+        Platform.getMetrics().simulationFinished();
     }
 
     /**
@@ -103,7 +129,7 @@ public abstract class AbstractSimulationEngine<T> implements SimulationEngine<T>
      */
     @Override
     public void registerTickHookProcessor(TickHookProcessor<T> processor) {
-        if(!this.tickHookProcessorList.contains(processor)) {
+        if(processor != this.messengerHookProcessor && !this.tickHookProcessorList.contains(processor)) {
             this.tickHookProcessorList.add(processor);
         }
     }
@@ -0,0 +1,197 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A scheduler-side index of the agents that are active, i.e. scheduled for the next tick.
+ *
+ * Each deliberation runnable is assigned a dense slot index the first time it is scheduled. Whether a runnable is
+ * scheduled is stored as a single bit in an atomic bitset, so scheduling an agent (either because it stays active
+ * after its deliberation cycle, or because it is woken up by a message or external trigger) does not enqueue
+ * anything, and scheduling an agent that is already scheduled is a no-op. Sleeping agents cost nothing until they
+ * are woken up.
+ *
+ * Taking the set of scheduled agents for a tick clears the bits, and visits 64 agents per machine word, so the cost
+ * of building the set of agents for a tick mainly depends on the number of active agents.
+ *
+ * Slots are released when the agent of a runnable dies, and reused for new agents. Scheduling and releasing a runnable
+ * both hold the monitor of that runnable, so a slot cannot be released and given to another agent between reading the
+ * slot of a runnable and setting its bit. Runnables of different agents do not contend.
+ */
+public final class ActiveAgentIndex<T> {
+
+    /** Bitsets and slot arrays are allocated in pages, so they can grow without blocking concurrent schedulers **/
+    private static final int PAGE_SHIFT = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    /** Runnables by slot index. Entries are only written while holding the lock of this index **/
+    private volatile DeliberationRunnable<T>[][] slotPages;
+
+    /** One bit per slot, indicating whether the runnable in that slot is scheduled for the next tick **/
+    private volatile AtomicLongArray[] bitPages;
+
+    /** Number of scheduled runnables **/
+    private final LongAdder nScheduled = new LongAdder();
+
+    /** Slot allocation, guarded by the lock of this index **/
+    private int nextSlot = 0;
+    private int[] freeSlots = new int[16];
+    private int nFreeSlots = 0;
+
+    @SuppressWarnings("unchecked")
+    public ActiveAgentIndex() {
+        this.slotPages = new DeliberationRunnable[0][];
+        this.bitPages = new AtomicLongArray[0];
+    }
+
+    /**
+     * Mark the runnable as scheduled for the next tick. A slot is assigned to the runnable if it does not have one yet.
+     *
+     * @param runnable  Deliberation cycle to schedule
+     * @return          False if the runnable was already scheduled, true otherwise
+     */
+    public boolean schedule(DeliberationRunnable<T> runnable) {
+        synchronized(runnable) {
+            int slot = runnable.getSchedulerIndex();
+            if(slot < 0) slot = assignSlot(runnable);
+
+            AtomicLongArray page = this.bitPages[slot >>> PAGE_SHIFT];
+            int word = (slot & PAGE_MASK) >>> 6;
+            long mask = 1L << slot;
+            long bits;
+            do {
+                bits = page.get(word);
+                if((bits & mask) != 0) return false;
+            } while(!page.compareAndSet(word, bits, bits | mask));
+        }
+
+        this.nScheduled.increment();
+        return true;
+    }
+
+    /**
+     * Obtain all scheduled runnables, and mark them as no longer scheduled. Runnables are returned in the order
+     * of their slot index.
+     *
+     * @return  The runnables that were scheduled for the next tick
+     */
+    @SuppressWarnings("unchecked")
+    public DeliberationRunnable<T>[] takeScheduled() {
+        DeliberationRunnable<T>[][] slots = this.slotPages;
+        AtomicLongArray[] bits = this.bitPages;
+        DeliberationRunnable<T>[] scheduled = new DeliberationRunnable[(int) Math.max(0, this.nScheduled.sum())];
+        int n = 0;
+
+        for(int p = 0; p < bits.length; p++) {
+            AtomicLongArray page = bits[p];
+            for(int w = 0; w < page.length(); w++) {
+                if(page.get(w) == 0) continue;
+                long word = page.getAndSet(w, 0);
+                this.nScheduled.add(-Long.bitCount(word));
+                while(word != 0) {
+                    int slot = (p << PAGE_SHIFT) | (w << 6) | Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    DeliberationRunnable<T> runnable = slots[p][slot & PAGE_MASK];
+                    if(runnable == null) continue; // The agent died after it was scheduled
+                    if(n == scheduled.length) scheduled = Arrays.copyOf(scheduled, n * 2 + 16);
+                    scheduled[n++] = runnable;
+                }
+            }
+        }
+        return n == scheduled.length ? scheduled : Arrays.copyOf(scheduled, n);
+    }
+
+    /**
+     * Release the slot of a runnable whose agent has died, so it can be reused by another agent. If the runnable is
+     * still scheduled, the slot is kept, so the agent can perform its shutdown in the next tick.
+     *
+     * @param runnable  Deliberation cycle of an agent that died
+     */
+    public void release(DeliberationRunnable<T> runnable) {
+        synchronized(runnable) {
+            int slot = runnable.getSchedulerIndex();
+            if(slot < 0 || isScheduled(slot)) return;
+
+            runnable.setSchedulerIndex(-1);
+            freeSlot(slot);
+        }
+    }
+
+    /**
+     * @return  The number of runnables currently scheduled for the next tick
+     */
+    public int getNofScheduled() {
+        return (int) this.nScheduled.sum();
+    }
+
+    /**
+     * @return  The number of runnables that currently hold a slot, i.e. both active and sleeping agents
+     */
+    public synchronized int getNofSlots() {
+        return this.nextSlot - this.nFreeSlots;
+    }
+
+    /**
+     * @return  The IDs of the agents currently scheduled for the next tick, without changing the schedule
+     */
+    public List<AgentID> getScheduledAgents() {
+        DeliberationRunnable<T>[][] slots = this.slotPages;
+        AtomicLongArray[] bits = this.bitPages;
+        List<AgentID> agents = new ArrayList<>(getNofScheduled());
+        for(int p = 0; p < bits.length; p++) {
+            for(int w = 0; w < bits[p].length(); w++) {
+                long word = bits[p].get(w);
+                while(word != 0) {
+                    DeliberationRunnable<T> runnable = slots[p][(w << 6) | Long.numberOfTrailingZeros(word)];
+                    word &= word - 1;
+                    if(runnable != null) agents.add(runnable.getAgentID());
+                }
+            }
+        }
+        return agents;
+    }
+
+    private boolean isScheduled(int slot) {
+        return (this.bitPages[slot >>> PAGE_SHIFT].get((slot & PAGE_MASK) >>> 6) & (1L << slot)) != 0;
+    }
+
+    private synchronized void freeSlot(int slot) {
+        this.slotPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = null;
+        if(this.nFreeSlots == this.freeSlots.length) this.freeSlots = Arrays.copyOf(this.freeSlots, this.nFreeSlots * 2);
+        this.freeSlots[this.nFreeSlots++] = slot;
+    }
+
+    /** Assign a free slot to the runnable, growing the index if required. Called while holding the monitor of the runnable. */
+    private synchronized int assignSlot(DeliberationRunnable<T> runnable) {
+        int slot;
+        if(this.nFreeSlots > 0) {
+            slot = this.freeSlots[--this.nFreeSlots];
+        } else {
+            slot = this.nextSlot++;
+            if((slot >>> PAGE_SHIFT) == this.bitPages.length) addPage();
+        }
+        this.slotPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = runnable;
+        runnable.setSchedulerIndex(slot);
+        return slot;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addPage() {
+        int nPages = this.bitPages.length;
+        DeliberationRunnable<T>[][] slots = Arrays.copyOf(this.slotPages, nPages + 1);
+        slots[nPages] = new DeliberationRunnable[PAGE_SIZE];
+        AtomicLongArray[] bits = Arrays.copyOf(this.bitPages, nPages + 1);
+        bits[nPages] = new AtomicLongArray(PAGE_SIZE >>> 6);
+
+        this.slotPages = slots;
+        this.bitPages = bits;
+    }
+}
@@ -3,6 +3,8 @@ package nl.uu.cs.iss.ga.sim2apl.core.tick;
 import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.MetricsCollector;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -29,6 +31,9 @@ public class DefaultBlockingTickExecutor<T> implements TickExecutor<T> {
     /** The list of agents scheduled for the next tick **/
     private Queue<DeliberationRunnable<T>> scheduledRunnables;
 
+    /** The agents that sleep until a specific tick **/
+    private final TimerWheel<T> timers = new TimerWheel<>();
+
     /**
      * Default constructor
      * @param nThreads Number of threads to use to execute the agent's sense-reason-act cycles.
@@ -42,9 +47,13 @@ public class DefaultBlockingTickExecutor<T> implements TickExecutor<T> {
      * Constructor that allows setting a (seeded) random, for ordering deliberation cycles
      * before each tick.
      *
-     * <b>NOTICE:</b> when the number of threads is larger then 1, some variation in order of
-     * agent execution may still occur. If agents use the same random object for selecting actions,
-     * the nextInt they receive may no longer be deterministic
+     * The scheduled agents are sorted on their handle and shuffled with the random object before the tick is
+     * executed, and the deliberation results of the tick are returned in that order. The order of the results
+     * therefore only depends on the seed of the random object and the set of agents, not on the number of threads.
+     *
+     * <b>NOTICE:</b> the agents themselves are still executed in parallel, so agents that share a random object
+     * for selecting actions will still draw numbers in an order that depends on thread timing.
+     *
      * @param nThreads  Number of threads to use to execute the agent's sense-reason-act cycles.
      * @param random    A (seeded) random object
      */
@@ -67,24 +76,34 @@ public class DefaultBlockingTickExecutor<T> implements TickExecutor<T> {
         return true;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimerWheel<T> getTimerWheel() {
+        return this.timers;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<Future<DeliberationResult<T>>> doTick() {
+        this.timers.expire(this.tick);
 
-        Queue<DeliberationRunnable<T>> runnables = this.scheduledRunnables;
+        Queue<DeliberationRunnable<T>> queue = this.scheduledRunnables;
         this.scheduledRunnables = new ConcurrentLinkedQueue<>();
 
-        // TODO sorting now becomes an issue. Does it make sense to sort _before_ execution? WOuld it not make more sense to sort action results, since agents are synchronous anyway?
-//        if(this.random != null) {
-//            runnables.sort(Comparator.comparing(deliberationRunnable -> deliberationRunnable.getAgentID().getUuID()));
-//            Collections.shuffle(runnables, this.random);
-//        }
+        // invokeAll returns the futures in the order of the given tasks, so ordering the runnables before
+        // execution orders the results, without forcing agents to be executed sequentially.
+        List<DeliberationRunnable<T>> runnables = new ArrayList<>(queue);
+        if(this.random != null) {
+            DeterministicOrdering.permute(runnables, this.random);
+        }
 
         List<Future<DeliberationResult<T>>> currentAgentFutures = null;
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         try {
             currentAgentFutures = this.executor.invokeAll(runnables);
         } catch (InterruptedException e) {
@@ -94,7 +113,14 @@ public class DefaultBlockingTickExecutor<T> implements TickExecutor<T> {
 //                DeliberationResult<T> result = resultFuture.get();
 //                agentPlanActions.put(result.getAgentID(), result.getActions().stream().filter(Objects::nonNull).collect(Collectors.toList()));
 //            }
-        this.stepDuration = (int) (System.currentTimeMillis() - startTime);
+        long duration = System.nanoTime() - startTime;
+        this.stepDuration = (int) (duration / 1000000);
+
+        MetricsCollector metrics = Platform.getMetrics();
+        if(metrics.isEnabled()) {
+            metrics.recordDeliberation(this.tick, duration);
+            metrics.recordActiveAgents(this.tick, runnables.size());
+        }
 
         tick++;
         return currentAgentFutures;
@@ -0,0 +1,38 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Puts scheduled deliberation cycles in a reproducible order before a tick is executed.
+ *
+ * The order in which deliberation cycles are scheduled depends on thread timing, so the runnables are first
+ * sorted on the handle of their agent, after which the sorted list is shuffled with a (seeded) random object.
+ * Handles are assigned by the platform in order of registration (reusing the lowest free handle), so unlike the
+ * UUID of an agent, which is random by default, they are the same in every run that registers and removes the same
+ * agents in the same order. Since the tick executors return the results of a tick in the same order as the
+ * runnables they executed, the resulting order of deliberation results only depends on the seed of the random object and the set
+ * of agents, regardless of how many threads are used to run the agents.
+ */
+final class DeterministicOrdering {
+
+    private DeterministicOrdering() {}
+
+    /**
+     * Sort the runnables on the handle of their agent, and shuffle the result using the given random object.
+     * The list is modified in place.
+     *
+     * @param runnables Deliberation cycles scheduled for the next tick
+     * @param random    A (seeded) random object
+     */
+    static <T> void permute(List<DeliberationRunnable<T>> runnables, Random random) {
+        // Agents that are not registered have no handle, those are ordered on their name instead
+        runnables.sort(Comparator.<DeliberationRunnable<T>>comparingInt(r -> r.getAgentID().getHandle())
+                .thenComparing(r -> r.getAgentID().getName().toString()));
+        Collections.shuffle(runnables, random);
+    }
+}
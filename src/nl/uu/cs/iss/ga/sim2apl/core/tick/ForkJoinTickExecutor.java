@@ -0,0 +1,452 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+import nl.uu.cs.iss.ga.sim2apl.core.metrics.MetricsCollector;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Level;
+
+/**
+ * A time step executor that partitions the scheduled agents into chunks and executes these chunks on a
+ * work-stealing ForkJoinPool.
+ *
+ * Contrary to the DefaultBlockingTickExecutor, this executor does not create a task (and future) for each
+ * individual agent. The scheduled deliberation cycles are split recursively until a chunk is small enough,
+ * and each worker thread executes the agents in a chunk sequentially. Idle workers steal chunks from busy
+ * workers, so agents with expensive deliberation cycles do not leave other cores idle. A tick ends when the
+ * root task completes, which acts as a single barrier for all agents.
+ *
+ * The results are stored in a plain array. The list of futures returned by doTick() is a view on that array,
+ * so the (completed) futures are only created when the environment asks for them. Alternatively, the results
+ * can be streamed to a TickResultSink as soon as each agent finishes, using doTick(TickResultSink).
+ *
+ * Scheduled agents are kept in an ActiveAgentIndex rather than a queue. An agent that stays active, or that is
+ * woken up by a message or external trigger, only sets a bit in that index, and sleeping agents are not visited
+ * when the set of agents for the next tick is built.
+ *
+ * This executor also allows executing the sense-reason and act parts of a tick in separate phases, which is
+ * used by the PipelinedSimulationEngine.
+ */
+public class ForkJoinTickExecutor<T> implements StreamingTickExecutor<T>, PipelinedTickExecutor<T> {
+
+    /** Number of chunks per worker thread. Having more chunks than threads allows idle workers to steal work **/
+    private static final int CHUNKS_PER_THREAD = 8;
+
+    /** Internal counters **/
+    private int tick = 0;
+    private int stepDuration;
+
+    /**
+     * A random object, which is used to order the results of a tick in a deterministic manner
+     */
+    private Random random;
+
+    /** The pool that executes the chunks of deliberation cycles **/
+    private final ForkJoinPool pool;
+
+    /** The agents scheduled for the next tick **/
+    private final ActiveAgentIndex<T> activeAgents = new ActiveAgentIndex<>();
+
+    /** The agents that sleep until a specific tick **/
+    private final TimerWheel<T> timers = new TimerWheel<>();
+
+    /** The agents of which the sense-reason phase has been executed, but the act phase has not **/
+    private DeliberationRunnable<T>[] preparedRunnables;
+    private boolean[] preparedToAct;
+    private TickResults<T> preparedResults;
+    private long senseReasonDuration;
+
+    /**
+     * Default constructor
+     * @param nThreads Number of threads to use to execute the agent's sense-reason-act cycles.
+     */
+    public ForkJoinTickExecutor(int nThreads) {
+        this(new ForkJoinPool(nThreads));
+    }
+
+    /**
+     * Constructor that allows setting a (seeded) random, for ordering the results of each tick.
+     *
+     * The scheduled agents are sorted on their handle and shuffled with the random object before the tick is
+     * executed. The results of the tick are returned in that order, so the output of a tick is reproducible
+     * for any number of threads, while the agents themselves are still executed in parallel.
+     *
+     * <b>NOTICE:</b> Agents that share a random object for selecting actions will still draw numbers in an
+     * order that depends on thread timing.
+     *
+     * @param nThreads  Number of threads to use to execute the agent's sense-reason-act cycles.
+     * @param random    A (seeded) random object
+     */
+    public ForkJoinTickExecutor(int nThreads, Random random) {
+        this(nThreads);
+        this.random = random;
+    }
+
+    /**
+     * Constructor that allows providing an existing ForkJoinPool
+     * @param pool  The pool to use to execute the agent's sense-reason-act cycles
+     */
+    public ForkJoinTickExecutor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public <X> List<Future<X>> useExecutorForTasks(Collection<? extends Callable<X>> tasks) throws InterruptedException {
+        return this.pool.invokeAll(tasks);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean scheduleForNextTick(DeliberationRunnable<T> agentDeliberationRunnable) {
+        return this.activeAgents.schedule(agentDeliberationRunnable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimerWheel<T> getTimerWheel() {
+        return this.timers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void unschedule(DeliberationRunnable<T> agentDeliberationRunnable) {
+        this.activeAgents.release(agentDeliberationRunnable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Future<DeliberationResult<T>>> doTick() {
+        DeliberationRunnable<T>[] runnables = takeScheduledRunnables();
+        TickResults<T> results = new TickResults<>(runnables.length);
+
+        long startTime = System.nanoTime();
+        try {
+            runChunked(Phase.FULL, runnables, null, results, null);
+        } finally {
+            finishTick(runnables.length, System.nanoTime() - startTime);
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void doSenseReasonPhase() {
+        if(this.preparedRunnables != null) {
+            throw new IllegalStateException("The act phase of the previously prepared tick has not been executed yet");
+        }
+        DeliberationRunnable<T>[] runnables = takeScheduledRunnables();
+        boolean[] toAct = new boolean[runnables.length];
+        TickResults<T> results = new TickResults<>(runnables.length);
+
+        long startTime = System.nanoTime();
+        runChunked(Phase.SENSE_REASON, runnables, toAct, results, null);
+        this.senseReasonDuration = System.nanoTime() - startTime;
+
+        this.preparedRunnables = runnables;
+        this.preparedToAct = toAct;
+        this.preparedResults = results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Future<DeliberationResult<T>>> doActPhase() {
+        if(this.preparedRunnables == null) {
+            throw new IllegalStateException("The sense-reason phase has to be executed before the act phase");
+        }
+        TickResults<T> results = this.preparedResults;
+        int nAgents = this.preparedRunnables.length;
+
+        long startTime = System.nanoTime();
+        try {
+            runChunked(Phase.ACT, this.preparedRunnables, this.preparedToAct, results, null);
+        } finally {
+            this.preparedRunnables = null;
+            this.preparedToAct = null;
+            this.preparedResults = null;
+            finishTick(nAgents, this.senseReasonDuration + System.nanoTime() - startTime);
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Results are passed to the sink in the order in which agents finish, which is not deterministic, even
+     * if a (seeded) random object was provided to this executor. The position passed with each result is the
+     * position of the agent in the (deterministic) order of the tick.
+     */
+    @Override
+    public void doTick(TickResultSink<T> sink) {
+        DeliberationRunnable<T>[] runnables = takeScheduledRunnables();
+
+        long startTime = System.nanoTime();
+        try {
+            sink.tickStarted(runnables.length);
+            runChunked(Phase.FULL, runnables, null, null, sink);
+        } finally {
+            finishTick(runnables.length, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Store the duration of the tick that has been executed, and move to the next tick
+     *
+     * @param nAgents   Number of agents executed during the tick
+     * @param duration  Time it took to execute the deliberation cycles of all agents, in nanoseconds
+     */
+    private void finishTick(int nAgents, long duration) {
+        this.stepDuration = (int) (duration / 1000000);
+
+        MetricsCollector metrics = Platform.getMetrics();
+        if(metrics.isEnabled()) {
+            metrics.recordDeliberation(this.tick, duration);
+            metrics.recordActiveAgents(this.tick, nAgents);
+        }
+        tick++;
+    }
+
+    /**
+     * Wake up the agents that sleep until this tick, obtain the deliberation cycles scheduled for this tick, and
+     * start collecting the deliberation cycles for the next tick
+     *
+     * @return  Deliberation cycles to execute during this tick
+     */
+    private DeliberationRunnable<T>[] takeScheduledRunnables() {
+        this.timers.expire(this.tick);
+        DeliberationRunnable<T>[] runnables = this.activeAgents.takeScheduled();
+        if(this.random != null) {
+            DeterministicOrdering.permute(Arrays.asList(runnables), this.random);
+        }
+        return runnables;
+    }
+
+    /**
+     * Execute (a phase of) all deliberation cycles in the array on the pool, and block until all of them have finished
+     *
+     * @param phase     The part of the deliberation cycles to execute
+     * @param runnables Deliberation cycles to execute
+     * @param toAct     For the sense-reason and act phases, whether the act part should be executed for each runnable
+     * @param results   If not null, the results are stored in the same order as the runnables
+     * @param sink      If not null, each result is passed to this sink as soon as it is produced
+     */
+    private void runChunked(Phase phase, DeliberationRunnable<T>[] runnables, boolean[] toAct, TickResults<T> results, TickResultSink<T> sink) {
+        if(runnables.length > 0) {
+            int threshold = Math.max(1, runnables.length / (this.pool.getParallelism() * CHUNKS_PER_THREAD));
+            this.pool.invoke(new DeliberationChunk<>(phase, runnables, toAct, results, sink, 0, runnables.length, threshold));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCurrentTick() {
+        return this.tick;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isRunning() {
+        return this.pool.getActiveThreadCount() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getLastTickDuration() {
+        return this.stepDuration;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<AgentID> getScheduledAgents() {
+        return this.activeAgents.getScheduledAgents();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNofScheduledAgents() {
+        return this.activeAgents.getNofScheduled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /** The part of the deliberation cycle that is executed by a chunk **/
+    private enum Phase { FULL, SENSE_REASON, ACT }
+
+    /**
+     * A chunk of deliberation cycles. If the chunk is larger than the threshold, it is split in two halves
+     * which are forked, otherwise the deliberation cycles are executed sequentially by the current worker.
+     */
+    private static final class DeliberationChunk<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Phase phase;
+        private final DeliberationRunnable<T>[] runnables;
+        private final boolean[] toAct;
+        private final TickResults<T> results;
+        private final TickResultSink<T> sink;
+        private final int from, to, threshold;
+
+        DeliberationChunk(Phase phase, DeliberationRunnable<T>[] runnables, boolean[] toAct, TickResults<T> results,
+                          TickResultSink<T> sink, int from, int to, int threshold) {
+            this.phase = phase;
+            this.runnables = runnables;
+            this.toAct = toAct;
+            this.results = results;
+            this.sink = sink;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from <= this.threshold) {
+                for(int i = this.from; i < this.to; i++) {
+                    if(this.phase == Phase.SENSE_REASON) {
+                        try {
+                            this.toAct[i] = this.runnables[i].senseReason();
+                        } catch (Throwable e) {
+                            this.results.errors[i] = e;
+                        }
+                        continue;
+                    }
+
+                    DeliberationResult<T> result;
+                    try {
+                        if(this.phase == Phase.FULL) {
+                            result = this.runnables[i].call();
+                        } else if(this.toAct[i]) {
+                            result = this.runnables[i].act();
+                        } else if(this.results.errors[i] == null) {
+                            // An agent that shuts down will no longer perform actions
+                            result = new DeliberationResult<>(this.runnables[i].getAgentID(), Collections.emptyList());
+                        } else {
+                            continue; // The sense-reason phase already failed for this agent
+                        }
+                    } catch (Throwable e) {
+                        if(this.results != null) this.results.errors[i] = e;
+                        if(this.sink != null) notifyFailed(i, e);
+                        continue;
+                    }
+                    if(this.results != null) this.results.results[i] = result;
+                    if(this.sink != null) {
+                        try {
+                            this.sink.accept(i, result);
+                        } catch (Throwable e) {
+                            // A failing sink should not prevent the remaining agents of the chunk from being executed
+                            Platform.getLogger().log(ForkJoinTickExecutor.class, Level.SEVERE, e);
+                        }
+                    }
+                }
+            } else {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(
+                        new DeliberationChunk<>(this.phase, this.runnables, this.toAct, this.results, this.sink, this.from, middle, this.threshold),
+                        new DeliberationChunk<>(this.phase, this.runnables, this.toAct, this.results, this.sink, middle, this.to, this.threshold));
+            }
+        }
+
+        private void notifyFailed(int position, Throwable exception) {
+            try {
+                this.sink.failed(position, exception);
+            } catch (Throwable e) {
+                Platform.getLogger().log(ForkJoinTickExecutor.class, Level.SEVERE, e);
+            }
+        }
+    }
+
+    /**
+     * Array backed storage of the results of one tick, which exposes the results as a list of completed futures
+     * in order to comply with the TickExecutor interface. Futures are only created when they are requested.
+     */
+    private static final class TickResults<T> extends AbstractList<Future<DeliberationResult<T>>> implements RandomAccess {
+        private final DeliberationResult<T>[] results;
+        private final Throwable[] errors;
+
+        @SuppressWarnings("unchecked")
+        TickResults(int size) {
+            this.results = new DeliberationResult[size];
+            this.errors = new Throwable[size];
+        }
+
+        @Override
+        public Future<DeliberationResult<T>> get(int index) {
+            return new CompletedFuture<>(this.results[index], this.errors[index]);
+        }
+
+        @Override
+        public int size() {
+            return this.results.length;
+        }
+    }
+
+    /**
+     * A future that has already finished calculation, either with a result or with an exception
+     */
+    private static final class CompletedFuture<V> implements Future<V> {
+        private final V result;
+        private final Throwable error;
+
+        CompletedFuture(V result, Throwable error) {
+            this.result = result;
+            this.error = error;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return true;
+        }
+
+        @Override
+        public V get() throws ExecutionException {
+            if(this.error != null) throw new ExecutionException(this.error);
+            return this.result;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A simulation engine that overlaps the processing of the results of one tick by the environment with the
+ * sense-reason phase of the next tick. This engine requires the platform to use a PipelinedTickExecutor.
+ *
+ * Each tick N is executed as follows:
+ * <ol>
+ *     <li>The act phase of tick N is executed, which produces the actions of the agents</li>
+ *     <li>The post-tick hooks of tick N are executed, while concurrently the sense-reason phase of tick N + 1
+ *     is executed for all agents that are scheduled at that point</li>
+ *     <li>Once both have finished, swapBuffers is called on all PipelinedTickHookProcessors</li>
+ *     <li>The pre-tick hooks of tick N + 1 are executed, after which the engine continues with the act phase
+ *     of tick N + 1</li>
+ * </ol>
+ *
+ * Determinism is kept by design: during the sense-reason phase of tick N + 1, agents only observe the state
+ * that was published by the environment before the post-tick hooks of tick N started. The changes made by
+ * the post-tick hooks of tick N become visible when the buffers are swapped, at which point no agent is
+ * executing, and are observed by the agents during tick N + 2. This requires all registered tick hook processors
+ * to follow the contract of the PipelinedTickHookProcessor, i.e. to not modify anything agents can observe during
+ * the post-tick hook. Regular TickHookProcessors can still be registered if they do not interact with agents.
+ */
+public class PipelinedSimulationEngine<T> extends AbstractSimulationEngine<T> {
+
+    /** The TickExecutor is obtained from the platform, and must support executing ticks in two phases */
+    private final PipelinedTickExecutor<T> executor;
+
+    /**
+     * {@inheritDoc}
+     */
+    public PipelinedSimulationEngine(Platform platform, int nIterations, TickHookProcessor<T>... hookProcessors) {
+        super(platform, nIterations, hookProcessors);
+        this.executor = getPipelinedTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PipelinedSimulationEngine(Platform platform) {
+        super(platform);
+        this.executor = getPipelinedTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PipelinedSimulationEngine(Platform platform, TickHookProcessor<T>... processors) {
+        super(platform, processors);
+        this.executor = getPipelinedTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PipelinedSimulationEngine(Platform platform, int iterations) {
+        super(platform, iterations);
+        this.executor = getPipelinedTickExecutor(platform);
+    }
+
+    private static <T> PipelinedTickExecutor<T> getPipelinedTickExecutor(Platform platform) {
+        TickExecutor<T> executor = platform.getTickExecutor();
+        if(!(executor instanceof PipelinedTickExecutor)) {
+            throw new IllegalArgumentException("The PipelinedSimulationEngine requires a PipelinedTickExecutor, but the platform uses " +
+                    executor.getClass().getName());
+        }
+        return (PipelinedTickExecutor<T>) executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean start() {
+        // The sense-reason phase of the next tick is started from a separate thread, so the calling thread can
+        // run the post-tick hooks in the meantime
+        ExecutorService pipelineThread = Executors.newSingleThreadExecutor();
+        try {
+            int tick = this.executor.getCurrentTick();
+            this.processTickPreHooks(tick);
+            this.executor.doSenseReasonPhase();
+
+            for (int i = 0; this.nIterations <= 0 || i < this.nIterations; i++) {
+                boolean lastTick = this.nIterations > 0 && i == this.nIterations - 1;
+                tick = doTick(tick, lastTick ? null : pipelineThread);
+            }
+        } finally {
+            pipelineThread.shutdown();
+        }
+        this.processSimulationFinishedHook(this.nIterations, executor.getLastTickDuration());
+        this.executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Performs the act phase of a tick, and processes the results of that tick while the sense-reason phase of
+     * the next tick is executed.
+     *
+     * @param tick              The tick of which the sense-reason phase has been executed
+     * @param pipelineThread    The thread to start the sense-reason phase of the next tick on, or null if this is
+     *                          the last tick of the simulation
+     * @return                  The next tick
+     */
+    private int doTick(int tick, ExecutorService pipelineThread) {
+        List<Future<DeliberationResult<T>>> agentActions = this.executor.doActPhase();
+        int tickDuration = this.executor.getLastTickDuration();
+
+        Future<?> nextSenseReasonPhase = pipelineThread == null ? null : pipelineThread.submit(this.executor::doSenseReasonPhase);
+        this.processTickPostHook(tick, tickDuration, agentActions);
+
+        if(nextSenseReasonPhase != null) {
+            try {
+                nextSenseReasonPhase.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IllegalStateException("Sense-reason phase of tick " + (tick + 1) + " failed", e);
+            }
+        }
+        processSwapBuffers(tick);
+
+        int nextTick = this.executor.getCurrentTick();
+        if(nextSenseReasonPhase != null) {
+            this.processTickPreHooks(nextTick);
+        }
+        return nextTick;
+    }
+
+    /**
+     * Run the swapBuffers method of all registered PipelinedTickHookProcessors in a blocking manner
+     *
+     * @param finishedTick  The tick whose post-tick hooks have finished
+     */
+    private void processSwapBuffers(int finishedTick) {
+        for(TickHookProcessor<T> processor : this.tickHookProcessorList) {
+            if(processor instanceof PipelinedTickHookProcessor) {
+                ((PipelinedTickHookProcessor<T>) processor).swapBuffers(finishedTick);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+/**
+ * A tick executor that can execute a tick in two separate phases: first the sense-reason part of the
+ * deliberation cycle of all scheduled agents, and then the act part. This allows a simulation engine to
+ * execute the sense-reason phase of the next tick while the environment is still processing the results
+ * of the previous tick.
+ *
+ * Calling doSenseReasonPhase() followed by doActPhase() is equivalent to calling doTick().
+ */
+public interface PipelinedTickExecutor<T> extends TickExecutor<T> {
+
+    /**
+     * Takes the agents that have been scheduled thus far, and executes the sense-reason part of their
+     * deliberation cycles. Agents that are scheduled after this method is called are scheduled for the tick
+     * after the one that is being prepared. Blocks until all sense-reason cycles have finished.
+     *
+     * Should not be called again before doActPhase() has been called.
+     */
+    void doSenseReasonPhase();
+
+    /**
+     * Executes the act part of the deliberation cycles of the agents prepared by the last call of
+     * doSenseReasonPhase(), and finishes the tick. Blocks until all act cycles have finished.
+     *
+     * @return  A list of futures of the deliberation results, similar to the result of doTick()
+     */
+    List<Future<DeliberationResult<T>>> doActPhase();
+}
@@ -0,0 +1,25 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+/**
+ * A tick hook processor that keeps a double-buffered view of the environment state, so it can be used with
+ * the PipelinedSimulationEngine.
+ *
+ * The pipelined engine runs the post-tick hook of tick N concurrently with the sense-reason phase of tick N + 1.
+ * During the post-tick hook, the processor should therefore only write to its back buffer, and should not
+ * modify anything that agents may read during the sense-reason phase. This includes adding external triggers
+ * or sending messages to agents. Such changes should be collected in the back buffer as well.
+ *
+ * Once both the post-tick hook and the sense-reason phase have finished, and before any agent acts, the engine
+ * calls swapBuffers(). At that point no agent is executing, so the processor can publish the back buffer and
+ * deliver the collected triggers. Agents observe these changes in the sense-reason phase of tick N + 2.
+ */
+public interface PipelinedTickHookProcessor<T> extends TickHookProcessor<T> {
+
+    /**
+     * Publish the state that was written to the back buffer during the post-tick hook of the given tick. This
+     * method is called while no agent is executing.
+     *
+     * @param finishedTick  The tick whose post-tick hook wrote the back buffer
+     */
+    void swapBuffers(long finishedTick);
+}
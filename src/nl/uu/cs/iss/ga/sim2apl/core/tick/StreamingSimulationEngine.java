@@ -0,0 +1,159 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * A simulation engine that streams the result of each agent to the registered StreamingTickHookProcessors
+ * as soon as that agent has finished its sense-reason-act cycle. This allows the environment to overlap
+ * effecting actions with the deliberation of agents that have not yet finished.
+ *
+ * This engine requires the platform to use a StreamingTickExecutor.
+ *
+ * The pre-tick hook and the post-tick hook are still executed in a blocking manner, so the next tick only
+ * starts after all agents have finished and all hook processors have processed the tick. Regular
+ * TickHookProcessors receive the list of all results in the post-tick hook, as with the
+ * DefaultSimulationEngine. Those results are only collected if at least one regular TickHookProcessor
+ * is registered; otherwise, the post-tick hook receives an empty list.
+ */
+public class StreamingSimulationEngine<T> extends AbstractSimulationEngine<T> {
+
+    /** The TickExecutor is obtained from the platform, and must support streaming of results */
+    private final StreamingTickExecutor<T> executor;
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingSimulationEngine(Platform platform, int nIterations, TickHookProcessor<T>... hookProcessors) {
+        super(platform, nIterations, hookProcessors);
+        this.executor = getStreamingTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingSimulationEngine(Platform platform) {
+        super(platform);
+        this.executor = getStreamingTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingSimulationEngine(Platform platform, TickHookProcessor<T>... processors) {
+        super(platform, processors);
+        this.executor = getStreamingTickExecutor(platform);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public StreamingSimulationEngine(Platform platform, int iterations) {
+        super(platform, iterations);
+        this.executor = getStreamingTickExecutor(platform);
+    }
+
+    private static <T> StreamingTickExecutor<T> getStreamingTickExecutor(Platform platform) {
+        TickExecutor<T> executor = platform.getTickExecutor();
+        if(!(executor instanceof StreamingTickExecutor)) {
+            throw new IllegalArgumentException("The StreamingSimulationEngine requires a StreamingTickExecutor, but the platform uses " +
+                    executor.getClass().getName());
+        }
+        return (StreamingTickExecutor<T>) executor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean start() {
+        if(this.nIterations <= 0) {
+            // Run until actively interrupted
+            while(true) doTick();
+        } else {
+            // Run for fixed number of ticks
+            for (int i = 0; i < this.nIterations; i++) doTick();
+        }
+        this.processSimulationFinishedHook(this.nIterations, executor.getLastTickDuration());
+        this.executor.shutdown();
+        return true;
+    }
+
+    /**
+     * Performs a single tick. Each result is passed to the streaming hook processors as soon as it is produced,
+     * and the post-tick hook of all processors is called after all agents have finished.
+     */
+    private void doTick() {
+        int tick = this.executor.getCurrentTick();
+        this.processTickPreHooks(tick);
+
+        List<StreamingTickHookProcessor<T>> streamingProcessors = new ArrayList<>();
+        boolean collectResults = false;
+        for(TickHookProcessor<T> processor : this.tickHookProcessorList) {
+            if(processor instanceof StreamingTickHookProcessor) {
+                streamingProcessors.add((StreamingTickHookProcessor<T>) processor);
+            } else {
+                collectResults = true;
+            }
+        }
+
+        TickSink<T> sink = new TickSink<>(tick, streamingProcessors, collectResults);
+        this.executor.doTick(sink);
+        this.processTickPostHook(tick, executor.getLastTickDuration(), sink.getCollected());
+    }
+
+    /**
+     * Passes each result to the streaming hook processors, and if needed, collects the results for the post-tick hook.
+     * Results are stored at the position of their agent, so the post-tick hook receives them in the (deterministic)
+     * order of the tick rather than in the order in which the agents finished.
+     */
+    private static final class TickSink<T> implements TickResultSink<T> {
+        private final int tick;
+        private final List<StreamingTickHookProcessor<T>> processors;
+        private final boolean collect;
+        private Future<DeliberationResult<T>>[] collected;
+
+        TickSink(int tick, List<StreamingTickHookProcessor<T>> processors, boolean collect) {
+            this.tick = tick;
+            this.processors = processors;
+            this.collect = collect;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void tickStarted(int nAgents) {
+            if(this.collect) this.collected = new Future[nAgents];
+        }
+
+        @Override
+        public void accept(DeliberationResult<T> result) {
+            for(StreamingTickHookProcessor<T> processor : this.processors) {
+                processor.agentFinishedHook(this.tick, result);
+            }
+        }
+
+        @Override
+        public void accept(int position, DeliberationResult<T> result) {
+            if(this.collected != null) this.collected[position] = CompletableFuture.completedFuture(result);
+            accept(result);
+        }
+
+        @Override
+        public void failed(int position, Throwable exception) {
+            if(this.collected != null) this.collected[position] = CompletableFuture.failedFuture(exception);
+            else failed(exception);
+        }
+
+        /** @return The collected results in the order of the tick, or an empty list if results are not collected */
+        List<Future<DeliberationResult<T>>> getCollected() {
+            // Every agent either produced a result or failed, so each position is filled once the tick has finished
+            return this.collected == null ? Collections.emptyList() : Arrays.asList(this.collected);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+/**
+ * A tick executor that, in addition to collecting all results of a tick, can push the result of each
+ * agent to a TickResultSink as soon as that agent has finished its sense-reason-act cycle.
+ *
+ * This allows the environment to start effecting the actions of agents while other agents are still
+ * deliberating, and removes the need to keep a future for every agent until the tick has finished.
+ */
+public interface StreamingTickExecutor<T> extends TickExecutor<T> {
+
+    /**
+     * Performs one tick, executing the sense-reason-act cycles of all agents scheduled for that tick.
+     * The result of each agent is passed to the sink as soon as that agent is finished. This method
+     * blocks until all agents have finished and all results have been passed to the sink.
+     *
+     * @param sink  The sink that receives the deliberation results. Called concurrently from multiple threads.
+     */
+    void doTick(TickResultSink<T> sink);
+}
@@ -0,0 +1,21 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+
+/**
+ * A tick hook processor that can process the results of agents while the tick is still running. When
+ * registered with a StreamingSimulationEngine, the agentFinishedHook is called for each agent as soon as
+ * that agent has finished its act cycle.
+ *
+ * The agentFinishedHook is called from the threads that execute the agents, so it must be thread safe.
+ */
+public interface StreamingTickHookProcessor<T> extends TickHookProcessor<T> {
+
+    /**
+     * Called for each agent as soon as that agent has finished its deliberation cycle
+     *
+     * @param tick      The tick that is currently being executed
+     * @param result    The deliberation result of the agent
+     */
+    void agentFinishedHook(long tick, DeliberationResult<T> result);
+}
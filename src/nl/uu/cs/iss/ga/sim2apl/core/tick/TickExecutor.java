@@ -26,6 +26,49 @@ public interface TickExecutor<T> {
      */
     boolean scheduleForNextTick(DeliberationRunnable<T> agentDeliberationRunnable);
 
+    /**
+     * Schedules the deliberation cycle of a sleeping agent to be woken up at a specific tick. When that tick is
+     * reached, the deliberation cycle is notified through its <code>timerExpired</code> method, after which the
+     * agent reschedules itself if it was still sleeping until that tick.
+     *
+     * By default, the timer is kept in the timer wheel of this executor. Executors that do not have a timer wheel
+     * wake the agent up immediately, so it deliberates again in the next tick instead of sleeping forever.
+     *
+     * @param agentDeliberationRunnable Deliberation cycle of a sleeping agent
+     * @param tick                      The tick in which the agent should deliberate again. If this tick is not
+     *                                  after the next tick, the agent is woken up immediately
+     * @return True if the deliberation cycle could be scheduled
+     */
+    default boolean scheduleForTick(DeliberationRunnable<T> agentDeliberationRunnable, long tick) {
+        TimerWheel<T> timers = getTimerWheel();
+        if(timers == null || tick <= getCurrentTick() + 1) {
+            agentDeliberationRunnable.timerExpired(tick);
+        } else {
+            timers.add(agentDeliberationRunnable, tick);
+        }
+        return true;
+    }
+
+    /**
+     * Get the timer wheel in which this executor keeps the agents that sleep until a specific tick. The executor
+     * expires the timers of each tick before it takes the agents scheduled for that tick. By default, an executor
+     * has no timer wheel.
+     *
+     * @return The timer wheel of this executor, or null if it does not keep timers
+     */
+    default TimerWheel<T> getTimerWheel() {
+        return null;
+    }
+
+    /**
+     * Informs the executor that the agent of a deliberation cycle has died, so any resources the executor holds
+     * for that deliberation cycle can be released. A deliberation cycle that is already scheduled for the next
+     * tick is still executed, so the agent can perform its shutdown. By default, this does nothing.
+     *
+     * @param agentDeliberationRunnable Deliberation cycle of the agent that died
+     */
+    default void unschedule(DeliberationRunnable<T> agentDeliberationRunnable) { }
+
     /**
      * Performs one tick, executing the sense-reason-act cycles of all agents
      * scheduled for that tick. It collects all the actions produced by the
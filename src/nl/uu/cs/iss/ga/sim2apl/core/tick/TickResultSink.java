@@ -0,0 +1,71 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
+import nl.uu.cs.iss.ga.sim2apl.core.platform.Platform;
+
+import java.util.logging.Level;
+
+/**
+ * A tick result sink receives the result of an agent's deliberation cycle as soon as that agent
+ * has finished its act cycle, instead of after all agents scheduled for the tick have finished.
+ *
+ * Results are pushed from the threads that execute the agents, so implementations of this interface
+ * must be thread safe. Results arrive in no particular order, but each result comes with the position
+ * of its agent in the order of the tick, which is deterministic if the executor was given a (seeded)
+ * random object. Sinks that need reproducible output can store results at that position.
+ */
+@FunctionalInterface
+public interface TickResultSink<T> {
+
+    /**
+     * Called before any agent is executed, with the number of agents scheduled for the tick. Positions
+     * passed to the other methods range from 0 up to this number.
+     *
+     * @param nAgents   Number of agents that will be executed during the tick
+     */
+    default void tickStarted(int nAgents) {}
+
+    /**
+     * Called once for each agent that finished its deliberation cycle during the current tick
+     *
+     * @param result    The deliberation result of the agent
+     */
+    void accept(DeliberationResult<T> result);
+
+    /**
+     * Called once for each agent that finished its deliberation cycle during the current tick. By default,
+     * the position is ignored and the result is passed to {@link #accept(DeliberationResult)}.
+     *
+     * @param position  The position of the agent in the order of the tick
+     * @param result    The deliberation result of the agent
+     */
+    default void accept(int position, DeliberationResult<T> result) {
+        accept(result);
+    }
+
+    /**
+     * Called when the deliberation cycle of an agent ended with an exception or error, in which case no
+     * result is produced for that agent. By default, the exception is logged, and the other agents of
+     * the tick continue.
+     *
+     * @param exception The exception that occurred during the deliberation cycle
+     */
+    default void failed(Throwable exception) {
+        if(exception instanceof Exception) {
+            Platform.getLogger().log(TickResultSink.class, (Exception) exception);
+        } else {
+            Platform.getLogger().log(TickResultSink.class, Level.SEVERE, exception);
+        }
+    }
+
+    /**
+     * Called when the deliberation cycle of an agent ended with an exception or error. By default, the
+     * position is ignored and the exception is passed to {@link #failed(Throwable)}.
+     *
+     * @param position  The position of the agent in the order of the tick
+     * @param exception The exception that occurred during the deliberation cycle
+     */
+    default void failed(int position, Throwable exception) {
+        failed(exception);
+    }
+}
@@ -0,0 +1,104 @@
+package nl.uu.cs.iss.ga.sim2apl.core.tick;
+
+import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
+
+import java.util.Arrays;
+
+/**
+ * A hashed timer wheel that keeps the deliberation cycles of agents that sleep until a specific tick.
+ *
+ * Each tick maps to one bucket of the wheel, so expiring the timers of a tick only visits the agents in that bucket,
+ * instead of all sleeping agents. Agents that sleep for more ticks than the wheel has buckets stay in their bucket
+ * for the rotations in between.
+ *
+ * The wheel does not keep track of whether an agent was woken up early, e.g. because it received a message. When a
+ * timer expires, the deliberation cycle is notified with the tick it requested, and the agent ignores the wakeup if
+ * it no longer sleeps until that tick.
+ */
+public final class TimerWheel<T> {
+
+    /** Default number of buckets **/
+    private static final int DEFAULT_SIZE = 512;
+
+    private final Bucket<T>[] buckets;
+    private final int mask;
+
+    public TimerWheel() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size  Minimum number of buckets of the wheel, which is rounded up to a power of two
+     */
+    @SuppressWarnings("unchecked")
+    public TimerWheel(int size) {
+        int nBuckets = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.buckets = new Bucket[nBuckets];
+        for(int i = 0; i < nBuckets; i++) this.buckets[i] = new Bucket<>();
+        this.mask = nBuckets - 1;
+    }
+
+    /**
+     * Add a timer for a deliberation cycle. This method can be called concurrently by multiple agents.
+     *
+     * @param runnable  Deliberation cycle to wake up
+     * @param tick      The tick in which the deliberation cycle should be executed again
+     */
+    public void add(DeliberationRunnable<T> runnable, long tick) {
+        Bucket<T> bucket = this.buckets[(int) (tick & this.mask)];
+        synchronized (bucket) {
+            bucket.add(runnable, tick);
+        }
+    }
+
+    /**
+     * Remove all timers that expire at (or before) the given tick from the bucket of that tick, and wake up their
+     * deliberation cycles.
+     *
+     * @param tick  The tick that is about to be executed
+     */
+    public void expire(long tick) {
+        Bucket<T> expired = new Bucket<>();
+
+        Bucket<T> bucket = this.buckets[(int) (tick & this.mask)];
+        synchronized (bucket) {
+            int kept = 0;
+            for(int i = 0; i < bucket.size; i++) {
+                if(bucket.ticks[i] <= tick) {
+                    expired.add(bucket.runnables[i], bucket.ticks[i]);
+                } else {
+                    bucket.runnables[kept] = bucket.runnables[i];
+                    bucket.ticks[kept++] = bucket.ticks[i];
+                }
+            }
+            for(int i = kept; i < bucket.size; i++) bucket.runnables[i] = null;
+            bucket.size = kept;
+        }
+
+        // Waking up reschedules the deliberation cycles, which should not happen while holding the lock of the bucket
+        for(int i = 0; i < expired.size; i++) {
+            expired.runnables[i].timerExpired(expired.ticks[i]);
+        }
+    }
+
+    /** Parallel arrays of the deliberation cycles in one bucket, and the ticks at which they should be woken up */
+    private static final class Bucket<T> {
+        private DeliberationRunnable<T>[] runnables;
+        private long[] ticks = new long[4];
+        private int size = 0;
+
+        @SuppressWarnings("unchecked")
+        Bucket() {
+            this.runnables = new DeliberationRunnable[4];
+        }
+
+        void add(DeliberationRunnable<T> runnable, long tick) {
+            if(this.size == this.ticks.length) {
+                this.runnables = Arrays.copyOf(this.runnables, this.size * 2);
+                this.ticks = Arrays.copyOf(this.ticks, this.size * 2);
+            }
+            this.runnables[this.size] = runnable;
+            this.ticks[this.size++] = tick;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import nl.uu.cs.iss.ga.sim2apl.core.agent.AgentID;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationResult;
 import nl.uu.cs.iss.ga.sim2apl.core.deliberation.DeliberationRunnable;
 import nl.uu.cs.iss.ga.sim2apl.core.tick.TickExecutor;
+import nl.uu.cs.iss.ga.sim2apl.core.tick.TimerWheel;
 
 import java.util.*;
 import java.util.concurrent.*;
@@ -33,6 +34,9 @@ public class MatrixTickExecutor<T> implements TickExecutor<T> {
 
     /** The list of agents scheduled for the next tick **/
     private final ArrayList<DeliberationRunnable<T>> scheduledRunnables;
+
+    /** The agents that sleep until a specific tick **/
+    private final TimerWheel<T> timers = new TimerWheel<>();
     
     private final MatrixAgentThread<T> agentThread;
     private final MatrixStoreThread<T> storeThread;
@@ -77,6 +81,14 @@ public class MatrixTickExecutor<T> implements TickExecutor<T> {
         return false;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public TimerWheel<T> getTimerWheel() {
+        return this.timers;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -87,6 +99,8 @@ public class MatrixTickExecutor<T> implements TickExecutor<T> {
             throw new RuntimeException("Simulation already finished");
         }
         
+        this.timers.expire(this.tick);
+
         ArrayList<DeliberationRunnable<T>> runnables;
         // TODO make sure running can only happen once with some sort of mutex? How to verify if a tick is currently being executed?
         synchronized (this.scheduledRunnables) {